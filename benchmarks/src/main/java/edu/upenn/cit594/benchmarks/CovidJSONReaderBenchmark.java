@@ -0,0 +1,104 @@
+package edu.upenn.cit594.benchmarks;
+
+import edu.upenn.cit594.datamanagement.CovidJSONReader;
+import edu.upenn.cit594.util.CovidColumns;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.function.Supplier;
+
+/**
+ * Compares the streaming {@link CovidJSONReader} with parsing the whole document
+ * into a json-simple tree first (the reader's previous approach), on a synthetic
+ * COVID JSON file. Reports wall-clock time and peak heap for each.
+ *
+ * Usage: {@code CovidJSONReaderBenchmark [rows] [file]}; defaults to 1,000,000 rows
+ * in a temporary file. Run with a fixed heap (e.g. -Xmx4g) for comparable numbers.
+ */
+public class CovidJSONReaderBenchmark {
+    private static final int ROUNDS = 3;
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path file = args.length > 1 ? Paths.get(args[1]) : Files.createTempFile("covid-benchmark", ".json");
+        SyntheticDataGenerator.writeCovidJson(file, rows, 42);
+        System.out.printf("%d records, %d MiB%n", rows, Files.size(file) >> 20);
+
+        String filename = file.toString();
+        run("json-simple tree", () -> readWithTreeParser(filename));
+        run("streaming", () -> new CovidJSONReader(filename).readColumns());
+
+        if (args.length < 2) Files.delete(file);
+    }
+
+    private static void run(String name, Supplier<CovidColumns> reader) {
+        long bestNanos = Long.MAX_VALUE;
+        long peakBytes = 0;
+        int size = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            System.gc();
+            long baseline = heapUsed();
+            resetPeaks();
+            long start = System.nanoTime();
+            size = reader.get().size();
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+            peakBytes = Math.max(peakBytes, peakHeap() - baseline);
+        }
+        System.out.printf("%-18s %,10d records  best %,6d ms  peak heap +%,6d MiB%n",
+                name, size, bestNanos / 1_000_000, peakBytes >> 20);
+    }
+
+    // The reader's previous implementation: build the full JSONArray, then convert it.
+    private static CovidColumns readWithTreeParser(String filename) {
+        CovidColumns columns = new CovidColumns();
+        try (Reader reader = new BufferedReader(new FileReader(filename))) {
+            JSONArray array = (JSONArray) new JSONParser().parse(reader);
+            for (Object o : array) {
+                JSONObject obj = (JSONObject) o;
+                String zip = ((String) obj.get("zip_code")).trim();
+                String timestamp = ((String) obj.get("timestamp")).trim();
+                columns.add(Integer.parseInt(zip),
+                        CovidColumns.toEpochSecond(LocalDateTime.parse(timestamp, TIMESTAMP_FORMAT)),
+                        toInt(obj.get("partial_vaccinated")), toInt(obj.get("full_vaccinated")),
+                        toInt(obj.get("POS")), toInt(obj.get("NEG")), toInt(obj.get("boosters")),
+                        toInt(obj.get("hospitalized")), toInt(obj.get("deaths")));
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return columns;
+    }
+
+    private static int toInt(Object value) {
+        return value == null ? 0 : Integer.parseInt(value.toString());
+    }
+
+    private static long heapUsed() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static void resetPeaks() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+    }
+
+    // Sum of the per-pool peaks; an upper bound on the true simultaneous peak.
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,108 @@
+package edu.upenn.cit594.benchmarks;
+
+import edu.upenn.cit594.logging.Histogram;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load test for a running query server ({@code Main --serve=<port>}) on localhost.
+ * A number of clients each send one request at a time over a kept-alive connection,
+ * cycling through a mix of all endpoints with random ZIP codes and dates from the
+ * ranges written by {@link SyntheticDataGenerator}. After a warm-up the test reports
+ * throughput and latency percentiles.
+ *
+ * Usage: {@code QueryServerLoadTest <port> [clients] [seconds]}
+ */
+public class QueryServerLoadTest {
+    private static final int DEFAULT_CLIENTS = 16;
+    private static final int DEFAULT_SECONDS = 10;
+    private static final int WARMUP_SECONDS = 2;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2021, 1, 1);
+    private static final int DAYS = 365;
+
+    private QueryServerLoadTest() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: QueryServerLoadTest <port> [clients] [seconds]");
+            return;
+        }
+        String base = "http://localhost:" + Integer.parseInt(args[0]);
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CLIENTS;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_SECONDS;
+
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        Histogram latencies = new Histogram();
+        LongAdder errors = new LongAdder();
+        long warmupEnd = System.nanoTime() + Duration.ofSeconds(WARMUP_SECONDS).toNanos();
+        long end = warmupEnd + Duration.ofSeconds(seconds).toNanos();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            long seed = c;
+            Thread thread = new Thread(() -> runClient(http, base, new Random(seed), warmupEnd, end, latencies, errors),
+                    "load-client-" + c);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long requests = latencies.getCount();
+        System.out.printf("%d clients, %d s: %d requests, %d errors, %.0f requests/s%n",
+                clients, seconds, requests, errors.sum(), requests / (double) seconds);
+        System.out.printf("latency ms: mean=%.3f p50=%.3f p90=%.3f p99=%.3f p999=%.3f max=%.3f%n",
+                latencies.getMean() / 1e6, latencies.getValueAtQuantile(0.5) / 1e6,
+                latencies.getValueAtQuantile(0.9) / 1e6, latencies.getValueAtQuantile(0.99) / 1e6,
+                latencies.getValueAtQuantile(0.999) / 1e6, latencies.getMax() / 1e6);
+    }
+
+    private static void runClient(HttpClient http, String base, Random random, long warmupEnd, long end,
+                                  Histogram latencies, LongAdder errors) {
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(base + randomPath(random))).GET().build();
+            boolean ok;
+            try {
+                HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                ok = response.statusCode() == 200;
+            } catch (IOException e) {
+                ok = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (now >= warmupEnd) {
+                latencies.record(System.nanoTime() - now);
+                if (!ok) errors.increment();
+            }
+        }
+    }
+
+    private static String randomPath(Random random) {
+        String zip = String.valueOf(SyntheticDataGenerator.FIRST_ZIP + random.nextInt(SyntheticDataGenerator.DEFAULT_ZIP_COUNT));
+        LocalDate date = FIRST_DAY.plusDays(random.nextInt(DAYS));
+        switch (random.nextInt(6)) {
+            case 0: return "/population";
+            case 1: return "/vaccinations?type=" + (random.nextBoolean() ? "partial" : "full") + "&date=" + date;
+            case 2: return "/marketvalue?zip=" + zip;
+            case 3: return "/livablearea?zip=" + zip;
+            case 4: return "/marketvaluepercapita?zip=" + zip;
+            default: return "/clusters?date=" + date + "&minRate=0.5&minArea=1000&minPopulation=1000";
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package edu.upenn.cit594.benchmarks;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+/**
+ * Writes synthetic input files in the same formats as the real datasets, so the
+ * readers can be measured at arbitrary sizes. Output is deterministic for a seed.
+ *
+ * Usage: {@code SyntheticDataGenerator <dir> <rows> [zips] [seed]}, where rows may use
+ * a k or M suffix (10k, 1M, 10M). Writes covid.csv, covid.json, properties.csv and
+ * population.csv with {@code rows} records each (population has one row per ZIP).
+ */
+public class SyntheticDataGenerator {
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final LocalDateTime START = LocalDateTime.of(2021, 1, 1, 0, 0);
+    private static final int DAYS = 700;
+    private static final int BUFFER_SIZE = 1 << 16;
+    /** First generated ZIP code; the others follow consecutively. */
+    public static final int FIRST_ZIP = 19102;
+    /** Number of ZIP codes used when none is given. */
+    public static final int DEFAULT_ZIP_COUNT = 50;
+
+    private SyntheticDataGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: SyntheticDataGenerator <dir> <rows> [zips] [seed]");
+            return;
+        }
+        Path dir = Paths.get(args[0]);
+        int rows = parseCount(args[1]);
+        int zips = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_ZIP_COUNT;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+        Files.createDirectories(dir);
+        writeCovidCsv(dir.resolve("covid.csv"), rows, zips, seed);
+        writeCovidJson(dir.resolve("covid.json"), rows, zips, seed);
+        writeProperties(dir.resolve("properties.csv"), rows, zips, seed);
+        writePopulation(dir.resolve("population.csv"), zips, seed);
+    }
+
+    /**
+     * @param count a number with an optional k (thousand) or M (million) suffix
+     * @return the number
+     */
+    public static int parseCount(String count) {
+        String value = count.trim();
+        int multiplier = 1;
+        if (value.endsWith("k") || value.endsWith("K")) {
+            multiplier = 1_000;
+        } else if (value.endsWith("m") || value.endsWith("M")) {
+            multiplier = 1_000_000;
+        }
+        if (multiplier > 1) value = value.substring(0, value.length() - 1);
+        return Math.multiplyExact(Integer.parseInt(value), multiplier);
+    }
+
+    /**
+     * Writes a COVID JSON file of {@code rows} records spread over ZIP codes and days.
+     *
+     * @param path output file
+     * @param rows number of records to write
+     * @param seed random seed
+     */
+    public static void writeCovidJson(Path path, int rows, long seed) throws IOException {
+        writeCovidJson(path, rows, DEFAULT_ZIP_COUNT, seed);
+    }
+
+    /**
+     * Writes a COVID JSON file of {@code rows} records spread over {@code zips}
+     * consecutive ZIP codes and up to 700 days.
+     */
+    public static void writeCovidJson(Path path, int rows, int zips, long seed) throws IOException {
+        Random random = new Random(seed);
+        try (Writer out = newWriter(path)) {
+            out.write("[\n");
+            for (int i = 0; i < rows; i++) {
+                if (i > 0) out.write(",\n");
+                out.write("{\"zip_code\":\"" + (FIRST_ZIP + i % zips)
+                        + "\",\"timestamp\":\"" + timestamp(i, zips, random)
+                        + "\",\"partial_vaccinated\":" + random.nextInt(20_000)
+                        + ",\"full_vaccinated\":" + random.nextInt(20_000)
+                        + ",\"POS\":" + random.nextInt(5_000)
+                        + ",\"NEG\":" + random.nextInt(50_000)
+                        + ",\"boosters\":" + random.nextInt(10_000)
+                        + ",\"hospitalized\":" + random.nextInt(500)
+                        + ",\"deaths\":" + random.nextInt(100) + "}");
+            }
+            out.write("\n]\n");
+        }
+    }
+
+    /**
+     * Writes a COVID CSV file with the same records as {@link #writeCovidJson} for the
+     * same arguments. Some count fields are left empty, as in the real data.
+     */
+    public static void writeCovidCsv(Path path, int rows, int zips, long seed) throws IOException {
+        Random random = new Random(seed);
+        try (Writer out = newWriter(path)) {
+            out.write("\"zip_code\",\"etl_timestamp\",\"partially_vaccinated\",\"fully_vaccinated\","
+                    + "\"POS\",\"NEG\",\"boosted\",\"hospitalized\",\"deaths\"\n");
+            for (int i = 0; i < rows; i++) {
+                out.write("\"" + (FIRST_ZIP + i % zips) + "\",\"" + timestamp(i, zips, random) + "\","
+                        + random.nextInt(20_000) + "," + random.nextInt(20_000) + ","
+                        + random.nextInt(5_000) + "," + random.nextInt(50_000) + ","
+                        + random.nextInt(10_000) + "," + random.nextInt(500) + ","
+                        + (i % 17 == 0 ? "" : String.valueOf(random.nextInt(100))) + "\n");
+            }
+        }
+    }
+
+    /**
+     * Writes a properties CSV file of {@code rows} records with the columns the reader
+     * uses plus quoted text columns, including embedded commas and quotes.
+     */
+    public static void writeProperties(Path path, int rows, int zips, long seed) throws IOException {
+        Random random = new Random(seed);
+        String[] notes = {"plain", "\"quoted, with comma\"", "\"has \"\"escaped\"\" quotes\"", ""};
+        try (Writer out = newWriter(path)) {
+            out.write("objectid,\"building_code\",market_value,notes,total_livable_area,zip_code\n");
+            for (int i = 0; i < rows; i++) {
+                out.write(i + ",B" + (i % 7) + ","
+                        + (50_000 + random.nextInt(950_000)) + "." + random.nextInt(10) + ","
+                        + notes[i % notes.length] + ","
+                        + (400 + random.nextInt(3_600)) + ".25,"
+                        + (FIRST_ZIP + random.nextInt(zips)) + (i % 5 == 0 ? "-1234" : "") + "\n");
+            }
+        }
+    }
+
+    /**
+     * Writes a population CSV file with one row per generated ZIP code.
+     */
+    public static void writePopulation(Path path, int zips, long seed) throws IOException {
+        Random random = new Random(seed);
+        try (Writer out = newWriter(path)) {
+            out.write("zip_code,population\n");
+            for (int z = 0; z < zips; z++) {
+                out.write((FIRST_ZIP + z) + "," + (1_000 + random.nextInt(60_000)) + "\n");
+            }
+        }
+    }
+
+    // Record i belongs to ZIP i % zips on day i / zips, cycling through the days.
+    private static String timestamp(int i, int zips, Random random) {
+        LocalDateTime timestamp = START.plusDays(i / zips % DAYS).plusSeconds(random.nextInt(86_400));
+        return TIMESTAMP_FORMAT.format(timestamp);
+    }
+
+    private static Writer newWriter(Path path) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(path), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+}
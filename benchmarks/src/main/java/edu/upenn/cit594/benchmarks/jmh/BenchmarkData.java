@@ -0,0 +1,34 @@
+package edu.upenn.cit594.benchmarks.jmh;
+
+import edu.upenn.cit594.benchmarks.SyntheticDataGenerator;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Locates the synthetic input files for a benchmark size, generating them on first
+ * use. Files are kept under {@code java.io.tmpdir} (or the {@code benchmark.data}
+ * system property) so later runs at the same size skip generation.
+ */
+final class BenchmarkData {
+    static final int ZIPS = 500;
+    private static final long SEED = 42;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @param rows number of COVID and property records
+     * @return the directory holding covid.csv, covid.json, properties.csv and population.csv
+     */
+    static synchronized Path directory(int rows) throws IOException {
+        Path root = Paths.get(System.getProperty("benchmark.data", System.getProperty("java.io.tmpdir")));
+        Path dir = root.resolve("cit594-benchmark-" + rows + "-" + ZIPS + "-" + SEED);
+        if (!Files.exists(dir.resolve("population.csv"))) {
+            // population.csv is written last, so its presence means the set is complete
+            SyntheticDataGenerator.main(new String[] {dir.toString(), String.valueOf(rows), String.valueOf(ZIPS), String.valueOf(SEED)});
+        }
+        return dir;
+    }
+}
@@ -0,0 +1,85 @@
+package edu.upenn.cit594.benchmarks.jmh;
+
+import edu.upenn.cit594.benchmarks.SyntheticDataGenerator;
+import edu.upenn.cit594.datamanagement.CovidCSVReader;
+import edu.upenn.cit594.datamanagement.DataManager;
+import edu.upenn.cit594.datamanagement.PopulationCSVReader;
+import edu.upenn.cit594.datamanagement.PropertyCSVReader;
+import edu.upenn.cit594.util.CachePolicy;
+import edu.upenn.cit594.util.CovidColumns;
+import edu.upenn.cit594.util.PropertyColumns;
+import org.openjdk.jmh.annotations.*;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the DataManager queries and wellness clustering. Every invocation asks for
+ * the next date or ZIP code in a cycle, and the result caches hold a single entry,
+ * so the numbers measure computing a result rather than a cache hit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class QueryBenchmarks {
+    private static final LocalDate FIRST_DAY = LocalDate.of(2021, 1, 1);
+
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    private DataManager dataManager;
+    private LocalDate[] dates;
+    private String[] zips;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void load() throws Exception {
+        Path dir = BenchmarkData.directory(rows);
+        CovidColumns covid = new CovidCSVReader(dir.resolve("covid.csv").toString()).readColumns();
+        PropertyColumns properties = new PropertyCSVReader(dir.resolve("properties.csv").toString(), true).readColumns();
+        Map<String, Integer> population = new PopulationCSVReader(dir.resolve("population.csv").toString()).readData();
+        dataManager = new DataManager(covid, properties, population, CachePolicy.lru(1, null));
+
+        int days = Math.max(Math.min(rows / BenchmarkData.ZIPS, 700), 1);
+        dates = new LocalDate[days];
+        for (int d = 0; d < days; d++) dates[d] = FIRST_DAY.plusDays(d);
+        zips = new String[BenchmarkData.ZIPS];
+        for (int z = 0; z < zips.length; z++) zips[z] = String.valueOf(SyntheticDataGenerator.FIRST_ZIP + z);
+    }
+
+    private LocalDate nextDate() {
+        next = (next + 1) % dates.length;
+        return dates[next];
+    }
+
+    private String nextZip() {
+        next = (next + 1) % zips.length;
+        return zips[next];
+    }
+
+    @Benchmark
+    public Map<String, Double> vaccinationsPerCapita() {
+        return dataManager.getVaccinationsPerCapita("full", nextDate());
+    }
+
+    @Benchmark
+    public int averageMarketValue() {
+        return dataManager.getAverageMarketValue(nextZip());
+    }
+
+    @Benchmark
+    public int marketValuePerCapita() {
+        return dataManager.getMarketValuePerCapita(nextZip());
+    }
+
+    @Benchmark
+    public List<Set<String>> wellnessClusters() {
+        return dataManager.getWellnessClusters(nextDate(), 0.3, 1000, 2000);
+    }
+}
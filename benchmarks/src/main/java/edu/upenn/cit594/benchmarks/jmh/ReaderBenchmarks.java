@@ -0,0 +1,63 @@
+package edu.upenn.cit594.benchmarks.jmh;
+
+import edu.upenn.cit594.datamanagement.CovidCSVReader;
+import edu.upenn.cit594.datamanagement.CovidJSONReader;
+import edu.upenn.cit594.datamanagement.InputMode;
+import edu.upenn.cit594.datamanagement.PropertyCSVReader;
+import edu.upenn.cit594.util.CovidRecord;
+import edu.upenn.cit594.util.PropertyRecord;
+import org.openjdk.jmh.annotations.*;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to read each input file with {@code readData}, at 10k, 1M and 10M records.
+ * Select sizes with {@code -p rows=10000}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class ReaderBenchmarks {
+
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    @Param({"BUFFERED", "MAPPED"})
+    public InputMode inputMode;
+
+    private String covidCsv;
+    private String covidJson;
+    private String properties;
+
+    @Setup(Level.Trial)
+    public void generate() throws Exception {
+        Path dir = BenchmarkData.directory(rows);
+        covidCsv = dir.resolve("covid.csv").toString();
+        covidJson = dir.resolve("covid.json").toString();
+        properties = dir.resolve("properties.csv").toString();
+    }
+
+    @Benchmark
+    public List<PropertyRecord> propertyCsv() throws Exception {
+        return new PropertyCSVReader(properties, false, inputMode).readData();
+    }
+
+    @Benchmark
+    public List<PropertyRecord> propertyCsvParallel() throws Exception {
+        return new PropertyCSVReader(properties, true, inputMode).readData();
+    }
+
+    @Benchmark
+    public List<CovidRecord> covidCsv() throws Exception {
+        return new CovidCSVReader(covidCsv, inputMode).readData();
+    }
+
+    @Benchmark
+    public List<CovidRecord> covidJson() throws Exception {
+        return new CovidJSONReader(covidJson, inputMode).readData();
+    }
+}
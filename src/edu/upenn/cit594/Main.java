@@ -2,11 +2,25 @@ package edu.upenn.cit594;
 
 import edu.upenn.cit594.datamanagement.*;
 import edu.upenn.cit594.logging.Logger;
+import edu.upenn.cit594.logging.MetricsRegistry;
+import edu.upenn.cit594.ui.BatchRunner;
+import edu.upenn.cit594.ui.QueryServer;
 import edu.upenn.cit594.ui.UserInterface;
-import edu.upenn.cit594.util.CovidRecord;
-import edu.upenn.cit594.util.PropertyRecord;
-import java.io.File;
+import edu.upenn.cit594.util.CachePolicy;
+import edu.upenn.cit594.util.CovidColumns;
+import edu.upenn.cit594.util.PropertyColumns;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The Main class serves as the entry point for the application.
@@ -14,12 +28,19 @@ import java.util.*;
  * of the application components.
  */
 public class Main {
+    private static final int LOG_QUEUE_CAPACITY = 8192;
+    private static final long LOG_FLUSH_MILLIS = 200;
+    private static final int BATCH_OUTPUT_BUFFER_SIZE = 1 << 16;
+    // one thread per input file
+    private static final int LOADER_THREADS = 3;
 
     /**
      * The main entry point for the application.
      *
      * @param args Command-line arguments in the format --key=value.
-     *             Supported keys: covid, properties, population, log
+     *             Supported keys: covid, properties, population, log, parallel, io, cache,
+     *             cachesize, cachettl, asynclog, logflush, logoverflow, batch, output, format,
+     *             serve, refresh, lazy, warmup
      * @throws IllegalArgumentException If invalid arguments are provided
      */
     public static void main(String[] args) {
@@ -35,19 +56,293 @@ public class Main {
         if (argsMap.containsKey("log")) {
             logger.setDestination(argsMap.get("log"));
         }
+        if (Boolean.parseBoolean(argsMap.get("asynclog"))) {
+            long flushInterval = argsMap.containsKey("logflush") ? Long.parseLong(argsMap.get("logflush")) : LOG_FLUSH_MILLIS;
+            Logger.OverflowPolicy overflow = argsMap.containsKey("logoverflow")
+                    ? Logger.OverflowPolicy.valueOf(argsMap.get("logoverflow").toUpperCase())
+                    : Logger.OverflowPolicy.BLOCK;
+            logger.enableAsync(LOG_QUEUE_CAPACITY, flushInterval, overflow);
+        }
         logger.log("Program started with arguments: " + String.join(" ", args));
 
-        // 3. Read input files
-        List<CovidRecord> covidRecords = readCovidData(argsMap.get("covid"), logger);
-        List<PropertyRecord> propertyRecords = readPropertyData(argsMap.get("properties"), logger);
-        Map<String, Integer> populationData = readPopulationData(argsMap.get("population"), logger);
+        // 3. Read the snapshot of the input files if it is still current, otherwise read
+        //    the files themselves in parallel, and initialize the DataManager. In lazy mode
+        //    each file is only read when a query first needs it, or by the warm-up once
+        //    the menu is shown or the server is up. A feed
+        //    that follows the COVID file is positioned first, so no record added meanwhile
+        //    is missed.
+        CovidFeed covidFeed = argsMap.containsKey("refresh") ? createCovidFeed(argsMap, logger) : null;
+        CachePolicy cachePolicy = createCachePolicy(argsMap);
+        logger.log("Result caches: " + cachePolicy);
+        List<String> sources = Arrays.asList(argsMap.get("covid"), argsMap.get("properties"), argsMap.get("population"));
+        DatasetSnapshot snapshot = readSnapshot(argsMap.get("cache"), sources, logger);
+        DataManager dataManager;
+        if (snapshot != null) {
+            dataManager = new DataManager(snapshot.getCovidColumns(), snapshot.getPropertyColumns(),
+                    snapshot.getPopulationData(), cachePolicy);
+        } else if (Boolean.parseBoolean(argsMap.get("lazy"))) {
+            dataManager = createLazyDataManager(argsMap, cachePolicy, logger);
+        } else {
+            dataManager = loadData(argsMap, sources, cachePolicy, logger);
+            if (dataManager == null) {
+                System.err.println("Error loading data");
+                return;
+            }
+        }
+
+        if (covidFeed != null) {
+            scheduleRefresh(covidFeed, Long.parseLong(argsMap.get("refresh")), dataManager, logger);
+        }
+
+        // 4. Run the command file, serve HTTP requests, or start the UI. The warm-up
+        //    loads whatever is still pending in the background; a batch starts querying
+        //    at once, so it only loads what its queries need.
+        boolean warmup = Boolean.parseBoolean(argsMap.get("warmup"));
+        if (argsMap.containsKey("serve")) {
+            // runs until the JVM is shut down; metrics are logged then
+            serve(Integer.parseInt(argsMap.get("serve")), dataManager, warmup, logger);
+            return;
+        }
+        if (argsMap.containsKey("batch")) {
+            runBatch(argsMap, dataManager, logger);
+        } else {
+            UserInterface ui = new UserInterface(dataManager, logger, warmup);
+            ui.start();
+        }
+
+        // 5. Record where the time went
+        logMetrics(logger);
+    }
+
+    /**
+     * Reads the three input files at the same time on a small pool of loader threads.
+     * Each index is built on the pool as soon as its file has been read, so loading
+     * takes about as long as the slowest file plus the final setup. A file that cannot
+     * be read to its end is logged and leaves its dataset empty; the snapshot is only
+     * written if every file was read without an error.
+     *
+     * @param argsMap The validated arguments map
+     * @param sources The covid, properties and population file names (entries may be null)
+     * @param cachePolicy How the DataManager memoizes results
+     * @param logger Logger instance for status and error reporting
+     * @return The DataManager, or null if building it failed
+     */
+    private static DataManager loadData(Map<String, String> argsMap, List<String> sources, CachePolicy cachePolicy,
+                                        Logger logger) {
+        InputMode inputMode = "mapped".equals(argsMap.get("io")) ? InputMode.MAPPED : InputMode.BUFFERED;
+        boolean parallel = Boolean.parseBoolean(argsMap.get("parallel"));
+        long start = System.nanoTime();
+        ExecutorService loader = newLoaderPool();
+        try {
+            CompletableFuture<CovidColumns> covidColumns = CompletableFuture.supplyAsync(
+                    () -> readCovidData(argsMap.get("covid"), inputMode, logger), loader);
+            CompletableFuture<PropertyColumns> propertyColumns = CompletableFuture.supplyAsync(
+                    () -> readPropertyData(argsMap.get("properties"), parallel, inputMode, logger), loader);
+            CompletableFuture<Map<String, Integer>> populationData = CompletableFuture.supplyAsync(
+                    () -> readPopulationData(argsMap.get("population"), logger), loader);
+
+            DataManager dataManager = DataManager.buildAsync(
+                    covidColumns.thenApply(columns -> columns != null ? columns : new CovidColumns()),
+                    propertyColumns.thenApply(columns -> columns != null ? columns : new PropertyColumns()),
+                    populationData.thenApply(data -> data != null ? data : Collections.<String, Integer>emptyMap()),
+                    cachePolicy).join();
+            MetricsRegistry.getInstance().timer("startup.load").recordSince(start);
+
+            if (covidColumns.join() != null && propertyColumns.join() != null && populationData.join() != null) {
+                writeSnapshot(argsMap.get("cache"), sources,
+                        new DatasetSnapshot(covidColumns.join(), propertyColumns.join(), populationData.join()), logger);
+            }
+            return dataManager;
+        } catch (CompletionException e) {
+            logger.log("Error loading data: " + e.getCause());
+            return null;
+        } finally {
+            loader.shutdown();
+        }
+    }
+
+    /**
+     * Creates a DataManager that reads each input file when a query first needs it,
+     * on a small pool of loader threads that lives as long as the program. A file that
+     * cannot be read to its end is logged and leaves its dataset empty.
+     *
+     * @param argsMap The validated arguments map
+     * @param cachePolicy How the DataManager memoizes results
+     * @param logger Logger instance for status and error reporting
+     * @return The DataManager, with no dataset loaded yet
+     */
+    private static DataManager createLazyDataManager(Map<String, String> argsMap, CachePolicy cachePolicy, Logger logger) {
+        InputMode inputMode = "mapped".equals(argsMap.get("io")) ? InputMode.MAPPED : InputMode.BUFFERED;
+        boolean parallel = Boolean.parseBoolean(argsMap.get("parallel"));
+        ExecutorService loader = newLoaderPool();
+        return new DataManager(
+                new LazyDataset<>(DataManager.COVID, () -> {
+                    CovidColumns columns = readCovidData(argsMap.get("covid"), inputMode, logger);
+                    return columns != null ? columns : new CovidColumns();
+                }, loader),
+                new LazyDataset<>(DataManager.PROPERTIES, () -> {
+                    PropertyColumns columns = readPropertyData(argsMap.get("properties"), parallel, inputMode, logger);
+                    return columns != null ? columns : new PropertyColumns();
+                }, loader),
+                new LazyDataset<>(DataManager.POPULATION, () -> {
+                    Map<String, Integer> data = readPopulationData(argsMap.get("population"), logger);
+                    return data != null ? data : Collections.<String, Integer>emptyMap();
+                }, loader),
+                cachePolicy);
+    }
+
+    /**
+     * @return A pool of daemon threads, one per input file, for reading the files and
+     *         building their indexes
+     */
+    private static ExecutorService newLoaderPool() {
+        return Executors.newFixedThreadPool(LOADER_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "data-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates a feed positioned at the current end of the COVID file.
+     *
+     * @param argsMap The validated arguments map
+     * @param logger Logger instance for error reporting
+     * @return The feed, or null if the file cannot be read
+     */
+    private static CovidFeed createCovidFeed(Map<String, String> argsMap, Logger logger) {
+        InputMode inputMode = "mapped".equals(argsMap.get("io")) ? InputMode.MAPPED : InputMode.BUFFERED;
+        try {
+            return CovidFeed.fromEnd(argsMap.get("covid"), inputMode);
+        } catch (IOException e) {
+            logger.log("Error following COVID data: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Checks the COVID file for new records at a fixed interval, on a daemon thread,
+     * and appends them to the DataManager.
+     *
+     * @param feed Feed positioned at the end of the data already loaded
+     * @param seconds Delay between checks
+     * @param dataManager The DataManager to append to
+     * @param logger Logger instance for status and error reporting
+     */
+    private static void scheduleRefresh(CovidFeed feed, long seconds, DataManager dataManager, Logger logger) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "covid-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                CovidColumns delta = feed.readNew();
+                if (delta.size() > 0) {
+                    int days = dataManager.appendCovidData(delta).size();
+                    logger.log("Appended " + delta.size() + " COVID records on " + days + " days from "
+                            + feed.getFilename() + ", now at byte " + feed.getOffset());
+                }
+            } catch (IOException | RuntimeException e) {
+                // keep following; a later check may succeed
+                logger.log("Error refreshing COVID data: " + e.getMessage());
+            }
+        }, seconds, seconds, TimeUnit.SECONDS);
+    }
 
-        // 4. Initialize DataManager
-        DataManager dataManager = new DataManager(covidRecords, propertyRecords, populationData);
+    /**
+     * Writes every metric to the log.
+     *
+     * @param logger Logger instance to write to
+     */
+    private static void logMetrics(Logger logger) {
+        for (String line : MetricsRegistry.getInstance().dump()) {
+            logger.log("Metric " + line);
+        }
+    }
+
+    /**
+     * Starts the HTTP query server on the loopback interface. The server keeps the
+     * JVM running; on shutdown it is stopped and the metrics are logged.
+     *
+     * @param port Port to listen on, or 0 for any free port
+     * @param dataManager The loaded data to serve
+     * @param warmup Whether to load the pending datasets in the background once the server is up
+     * @param logger Logger instance for status and error reporting
+     */
+    private static void serve(int port, DataManager dataManager, boolean warmup, Logger logger) {
+        // The JDK server writes the headers and body of a response separately; with
+        // Nagle's algorithm on, a kept-alive connection waits for the client's delayed
+        // ACK (about 40 ms) before every body. The property is process-wide and read
+        // once, when the first server starts, so it is set here unless given with -D.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        QueryServer server;
+        try {
+            server = new QueryServer(dataManager, logger, port);
+        } catch (IOException e) {
+            logger.log("Error starting query server: " + e.getMessage());
+            System.err.println("Error starting query server: " + e.getMessage());
+            return;
+        }
+        // the logger runs this before it writes out its queue for the last time
+        logger.addShutdownAction(() -> {
+            server.stop();
+            logMetrics(logger);
+        });
+        server.start();
+        System.out.println("Serving on http://localhost:" + server.getPort() + "/ (Ctrl-C to stop)");
+        if (warmup) {
+            dataManager.loadAll().whenComplete((ignored, e) -> {
+                if (e != null) logger.log("Error loading data: " + e.getCause());
+            });
+        }
+    }
+
+    /**
+     * Runs the queries in the batch file and writes the results to the output file,
+     * or to standard output if none is given.
+     *
+     * @param argsMap The validated arguments map
+     * @param dataManager The loaded data to query
+     * @param logger Logger instance for status and error reporting
+     */
+    private static void runBatch(Map<String, String> argsMap, DataManager dataManager, Logger logger) {
+        BatchRunner.Format format = "jsonl".equals(argsMap.get("format")) ? BatchRunner.Format.JSON_LINES : BatchRunner.Format.CSV;
+        BatchRunner runner = new BatchRunner(dataManager, logger, format);
+        String output = argsMap.get("output");
+        try (BufferedReader commands = Files.newBufferedReader(Paths.get(argsMap.get("batch")), StandardCharsets.UTF_8)) {
+            if (output == null) {
+                Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), BATCH_OUTPUT_BUFFER_SIZE);
+                runner.run(commands, out);
+            } else {
+                try (Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(Paths.get(output)),
+                        StandardCharsets.UTF_8), BATCH_OUTPUT_BUFFER_SIZE)) {
+                    runner.run(commands, out);
+                }
+            }
+        } catch (IOException e) {
+            logger.log("Error running batch: " + e.getMessage());
+            System.err.println("Error running batch: " + e.getMessage());
+        }
+    }
 
-        // 5. Start UI
-        UserInterface ui = new UserInterface(dataManager, logger);
-        ui.start();
+    /**
+     * Builds the result cache policy from the cachesize (0 for unbounded) and
+     * cachettl (seconds) arguments. Both are range-checked by validateArguments, which
+     * also rejects a TTL for an unbounded cache.
+     *
+     * @param argsMap The validated arguments map
+     * @return The policy, or the DataManager default if neither argument is given
+     */
+    private static CachePolicy createCachePolicy(Map<String, String> argsMap) {
+        if (!argsMap.containsKey("cachesize") && !argsMap.containsKey("cachettl")) {
+            return DataManager.DEFAULT_CACHE_POLICY;
+        }
+        int size = argsMap.containsKey("cachesize") ? Integer.parseInt(argsMap.get("cachesize")) : 1024;
+        Duration ttl = argsMap.containsKey("cachettl") ? Duration.ofSeconds(Long.parseLong(argsMap.get("cachettl"))) : null;
+        return size == 0 ? CachePolicy.unbounded() : CachePolicy.lru(size, ttl);
     }
 
     /**
@@ -76,13 +371,65 @@ public class Main {
      * @return true if all arguments are valid, false otherwise
      */
     private static boolean validateArguments(Map<String, String> argsMap) {
-        Set<String> validArgs = Set.of("covid", "properties", "population", "log");
+        Set<String> validArgs = Set.of("covid", "properties", "population", "log", "parallel", "io", "cache",
+                "cachesize", "cachettl", "asynclog", "logflush", "logoverflow", "batch", "output", "format", "serve", "refresh",
+                "lazy", "warmup");
         if (!argsMap.keySet().stream().allMatch(validArgs::contains)) {
             return false;
         }
+        if (argsMap.containsKey("parallel") && !Set.of("true", "false").contains(argsMap.get("parallel"))) {
+            return false;
+        }
+        if (argsMap.containsKey("io") && !Set.of("buffered", "mapped").contains(argsMap.get("io"))) {
+            return false;
+        }
+        if (argsMap.containsKey("asynclog") && !Set.of("true", "false").contains(argsMap.get("asynclog"))) {
+            return false;
+        }
+        if (argsMap.containsKey("logflush") && !argsMap.get("logflush").matches("\\d{1,9}")) {
+            return false;
+        }
+        if (argsMap.containsKey("logoverflow") && !Set.of("block", "drop", "count").contains(argsMap.get("logoverflow"))) {
+            return false;
+        }
+        if (argsMap.containsKey("format") && !Set.of("csv", "jsonl").contains(argsMap.get("format"))) {
+            return false;
+        }
+        if ((argsMap.containsKey("output") || argsMap.containsKey("format")) && !argsMap.containsKey("batch")) {
+            return false;
+        }
+        if (argsMap.containsKey("serve") && (argsMap.containsKey("batch")
+                || !argsMap.get("serve").matches("\\d{1,5}") || Integer.parseInt(argsMap.get("serve")) > 65535)) {
+            return false;
+        }
+        if (argsMap.containsKey("refresh") && (!argsMap.containsKey("covid")
+                || !argsMap.get("refresh").matches("0*[1-9]\\d{0,8}"))) {
+            return false;
+        }
+        // a snapshot holds all datasets at once, so it cannot be loaded lazily
+        if (argsMap.containsKey("lazy") && (!Set.of("true", "false").contains(argsMap.get("lazy"))
+                || (Boolean.parseBoolean(argsMap.get("lazy")) && argsMap.containsKey("cache")))) {
+            return false;
+        }
+        // without lazy loading everything is loaded up front, and the warm-up has nothing left to do
+        if (argsMap.containsKey("warmup") && !Set.of("true", "false").contains(argsMap.get("warmup"))) {
+            return false;
+        }
+        if (argsMap.containsKey("cachesize") && !argsMap.get("cachesize").matches("\\d{1,9}")) {
+            return false;
+        }
+        if (argsMap.containsKey("cachettl") && !argsMap.get("cachettl").matches("0*[1-9]\\d{0,8}")) {
+            return false;
+        }
+        // an unbounded cache never expires its entries, so a TTL would be ignored
+        if (argsMap.containsKey("cachettl") && argsMap.containsKey("cachesize")
+                && Integer.parseInt(argsMap.get("cachesize")) == 0) {
+            return false;
+        }
 
+        Set<String> fileArgs = Set.of("covid", "properties", "population", "batch");
         return argsMap.entrySet().stream()
-                .filter(e -> !e.getKey().equals("log"))
+                .filter(e -> fileArgs.contains(e.getKey()))
                 .allMatch(e -> {
                     File f = new File(e.getValue());
                     return f.exists() && f.canRead();
@@ -93,21 +440,35 @@ public class Main {
      * Reads COVID data from either JSON or CSV file based on file extension.
      *
      * @param filename Path to the input file
+     * @param inputMode Whether to read the file through buffered or memory-mapped I/O
      * @param logger Logger instance for error reporting
-     * @return List of CovidRecord objects, or empty list if reading fails
+     * @return Columnar COVID data, empty columns if no file was given, or null if reading
+     *         fails or stops at an error
      */
-    private static List<CovidRecord> readCovidData(String filename, Logger logger) {
-        if (filename == null) return Collections.emptyList();
+    private static CovidColumns readCovidData(String filename, InputMode inputMode, Logger logger) {
+        if (filename == null) return new CovidColumns();
 
         try {
-            List<CovidRecord> records = filename.endsWith(".json")
-                    ? new CovidJSONReader(filename).readData()
-                    : new CovidCSVReader(filename).readData();
+            CovidColumns records;
+            boolean failed;
+            if (filename.endsWith(".json")) {
+                CovidJSONReader reader = new CovidJSONReader(filename, inputMode);
+                records = reader.readColumns();
+                failed = reader.hasError();
+            } else {
+                CovidCSVReader reader = new CovidCSVReader(filename, inputMode);
+                records = reader.readColumns();
+                failed = reader.hasError();
+            }
+            if (failed) {
+                logger.log("Error reading COVID data: " + filename + " could not be read to its end");
+                return null;
+            }
             logger.log("Loaded " + records.size() + " COVID records");
             return records;
         } catch (Exception e) {
             logger.log("Error reading COVID data: " + e.getMessage());
-            return Collections.emptyList();
+            return null;
         }
     }
 
@@ -115,19 +476,27 @@ public class Main {
      * Reads property data from CSV file.
      *
      * @param filename Path to the properties CSV file
+     * @param parallel Whether to parse the file in chunks on several threads
+     * @param inputMode Whether to read the file through buffered or memory-mapped I/O
      * @param logger Logger instance for error reporting
-     * @return List of PropertyRecord objects, or empty list if reading fails
+     * @return Columnar property data, empty columns if no file was given, or null if reading
+     *         fails or stops at an error
      */
-    private static List<PropertyRecord> readPropertyData(String filename, Logger logger) {
-        if (filename == null) return Collections.emptyList();
+    private static PropertyColumns readPropertyData(String filename, boolean parallel, InputMode inputMode, Logger logger) {
+        if (filename == null) return new PropertyColumns();
 
         try {
-            List<PropertyRecord> records = new PropertyCSVReader(filename).readData();
+            PropertyCSVReader reader = new PropertyCSVReader(filename, parallel, inputMode);
+            PropertyColumns records = reader.readColumns();
+            if (reader.hasError()) {
+                logger.log("Error reading property data: " + filename + " could not be read to its end");
+                return null;
+            }
             logger.log("Loaded " + records.size() + " property records");
             return records;
         } catch (Exception e) {
             logger.log("Error reading property data: " + e.getMessage());
-            return Collections.emptyList();
+            return null;
         }
     }
 
@@ -136,18 +505,69 @@ public class Main {
      *
      * @param filename Path to the population CSV file
      * @param logger Logger instance for error reporting
-     * @return Map of ZIP codes to population counts, or empty map if reading fails
+     * @return Map of ZIP codes to population counts, an empty map if no file was given,
+     *         or null if reading fails or stops at an error
      */
     private static Map<String, Integer> readPopulationData(String filename, Logger logger) {
         if (filename == null) return Collections.emptyMap();
 
         try {
-            Map<String, Integer> data = new PopulationCSVReader(filename).readData();
+            PopulationCSVReader reader = new PopulationCSVReader(filename);
+            Map<String, Integer> data = reader.readData();
+            if (reader.hasError()) {
+                logger.log("Error reading population data: " + filename + " could not be read to its end");
+                return null;
+            }
             logger.log("Loaded population data for " + data.size() + " ZIP codes");
             return data;
         } catch (Exception e) {
             logger.log("Error reading population data: " + e.getMessage());
-            return Collections.emptyMap();
+            return null;
+        }
+    }
+
+    /**
+     * Loads the dataset snapshot if caching is enabled and the snapshot was built
+     * from the same, unmodified input files.
+     *
+     * @param cacheFile Path of the snapshot file, or null if caching is disabled
+     * @param sources The covid, properties and population file names (entries may be null)
+     * @param logger Logger instance for status and error reporting
+     * @return The snapshot, or null if it is missing, stale or unreadable
+     */
+    private static DatasetSnapshot readSnapshot(String cacheFile, List<String> sources, Logger logger) {
+        if (cacheFile == null) return null;
+
+        try {
+            DatasetSnapshot snapshot = DatasetSnapshot.read(Paths.get(cacheFile), sources);
+            if (snapshot != null) {
+                logger.log("Loaded snapshot " + cacheFile + ": " + snapshot.getCovidColumns().size()
+                        + " COVID records, " + snapshot.getPropertyColumns().size() + " property records, "
+                        + snapshot.getPopulationData().size() + " ZIP codes");
+            }
+            return snapshot;
+        } catch (Exception e) {
+            logger.log("Error reading snapshot: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the dataset snapshot if caching is enabled.
+     *
+     * @param cacheFile Path of the snapshot file, or null if caching is disabled
+     * @param sources The covid, properties and population file names (entries may be null)
+     * @param snapshot The freshly parsed datasets
+     * @param logger Logger instance for status and error reporting
+     */
+    private static void writeSnapshot(String cacheFile, List<String> sources, DatasetSnapshot snapshot, Logger logger) {
+        if (cacheFile == null) return;
+
+        try {
+            snapshot.write(Paths.get(cacheFile), sources);
+            logger.log("Wrote snapshot " + cacheFile);
+        } catch (Exception e) {
+            logger.log("Error writing snapshot: " + e.getMessage());
         }
     }
 }
\ No newline at end of file
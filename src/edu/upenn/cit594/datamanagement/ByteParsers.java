@@ -0,0 +1,174 @@
+package edu.upenn.cit594.datamanagement;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Allocation-free parsers for ASCII text held in a byte array. Each method parses
+ * the range [start, end) and reports failure through a sentinel value rather than
+ * an exception. Callers are expected to trim the range first.
+ */
+final class ByteParsers {
+    /** Returned by {@link #parseInt} when the text is not an int. */
+    static final long INVALID_INT = Long.MIN_VALUE;
+    /** Returned by {@link #parseTimestamp} when the text is not a valid timestamp. */
+    static final long INVALID_TIMESTAMP = Long.MIN_VALUE;
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int TIMESTAMP_LENGTH = 19;
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private ByteParsers() {
+    }
+
+    /**
+     * @return the int code of an exactly five digit ZIP, or -1 otherwise
+     */
+    static int parseZipCode(byte[] buf, int start, int end) {
+        if (end - start != 5) return -1;
+        int code = 0;
+        for (int i = start; i < end; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) return -1;
+            code = code * 10 + digit;
+        }
+        return code;
+    }
+
+    /**
+     * Parses a decimal int with the same rules as {@link Integer#parseInt(String)}.
+     *
+     * @return the value, or {@link #INVALID_INT} if the text is not an int
+     */
+    static long parseInt(byte[] buf, int start, int end) {
+        if (start >= end) return INVALID_INT;
+        boolean negative = false;
+        int i = start;
+        if (buf[i] == '-' || buf[i] == '+') {
+            negative = buf[i] == '-';
+            if (++i == end) return INVALID_INT;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) return INVALID_INT;
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) return INVALID_INT;
+        }
+        if (negative) value = -value;
+        if (value > Integer.MAX_VALUE) return INVALID_INT;
+        return value;
+    }
+
+    /**
+     * Parses a double. Plain decimals with at most 15-16 significant digits are
+     * converted exactly in place; anything else (exponents, very long mantissas)
+     * falls back to {@link Double#parseDouble(String)}.
+     *
+     * @return the value, or NaN if the text is not a number
+     */
+    static double parseDouble(byte[] buf, int start, int end) {
+        if (start >= end) return Double.NaN;
+        int i = start;
+        boolean negative = false;
+        if (buf[i] == '-' || buf[i] == '+') {
+            negative = buf[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; i < end; i++) {
+            byte b = buf[i];
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (fractionDigits >= 0) fractionDigits++;
+                if (mantissa > MAX_EXACT_MANTISSA) break;
+            } else if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                break;
+            }
+        }
+        if (i == end && digits > 0 && fractionDigits < POWERS_OF_TEN.length) {
+            double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(new String(buf, start, end - start, StandardCharsets.ISO_8859_1));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Parses a {@code yyyy-MM-dd HH:mm:ss} timestamp into epoch seconds (the local
+     * time read as UTC). Well-formed values are decoded in place; anything else is
+     * handed to {@link LocalDateTime#parse} so edge cases resolve exactly as before.
+     *
+     * @return the epoch second, or {@link #INVALID_TIMESTAMP} if the text does not parse
+     */
+    static long parseTimestamp(byte[] buf, int start, int end) {
+        if (end - start == TIMESTAMP_LENGTH
+                && buf[start + 4] == '-' && buf[start + 7] == '-' && buf[start + 10] == ' '
+                && buf[start + 13] == ':' && buf[start + 16] == ':') {
+            int year = digits(buf, start, 4);
+            int month = digits(buf, start + 5, 2);
+            int day = digits(buf, start + 8, 2);
+            int hour = digits(buf, start + 11, 2);
+            int minute = digits(buf, start + 14, 2);
+            int second = digits(buf, start + 17, 2);
+            if (year > 0 && month >= 1 && month <= 12 && day >= 1 && day <= lengthOfMonth(year, month)
+                    && hour >= 0 && hour < 24 && minute >= 0 && minute < 60 && second >= 0 && second < 60) {
+                return epochDay(year, month, day) * 86_400L + hour * 3600L + minute * 60L + second;
+            }
+        }
+        try {
+            String text = new String(buf, start, end - start, StandardCharsets.UTF_8);
+            return LocalDateTime.parse(text, TIMESTAMP_FORMAT).toEpochSecond(ZoneOffset.UTC);
+        } catch (DateTimeParseException e) {
+            return INVALID_TIMESTAMP;
+        }
+    }
+
+    // Returns the value of a fixed-width run of digits, or -1 if any byte is not a digit.
+    private static int digits(byte[] buf, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4: case 6: case 9: case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    // Days since 1970-01-01 for a proleptic Gregorian date (same result as LocalDate.toEpochDay()).
+    static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - 719_468;
+    }
+}
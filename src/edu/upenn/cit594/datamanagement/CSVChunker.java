@@ -0,0 +1,62 @@
+package edu.upenn.cit594.datamanagement;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Splits the data section of a CSV file into byte ranges that each start at a
+ * record boundary, so the ranges can be tokenized independently.
+ *
+ * A newline only ends a record when it is outside quotes, and whether a byte is
+ * inside quotes depends on every quote before it. The chunker therefore makes one
+ * light sequential pass that tracks quote parity (no tokenizing) and cuts at the
+ * first unquoted newline after each target offset.
+ */
+final class CSVChunker {
+    private static final int SCAN_BLOCK_SIZE = 1 << 20;
+
+    private CSVChunker() {
+    }
+
+    /**
+     * @param channel the file to split
+     * @param start   offset of the first data record (just past the header)
+     * @param end     file size
+     * @param chunks  desired number of chunks
+     * @return ascending boundaries; chunk i is [bounds[i], bounds[i + 1]). There may
+     *         be fewer chunks than requested if records are long.
+     */
+    static long[] split(FileChannel channel, long start, long end, int chunks) throws IOException {
+        long[] bounds = new long[chunks + 1];
+        bounds[0] = start;
+        int count = 1;
+        long chunkSize = (end - start) / chunks;
+        long target = start + chunkSize;
+
+        ByteBuffer block = ByteBuffer.allocate(SCAN_BLOCK_SIZE);
+        byte[] bytes = block.array();
+        boolean inQuotes = false;
+        long position = start;
+        while (position < end && count < chunks) {
+            block.clear();
+            int n = channel.read(block, position);
+            if (n <= 0) break;
+            for (int i = 0; i < n && count < chunks; i++) {
+                byte b = bytes[i];
+                if (b == '"') {
+                    inQuotes = !inQuotes;
+                } else if (b == '\n' && !inQuotes && position + i >= target) {
+                    bounds[count++] = position + i + 1;
+                    target = Math.max(target + chunkSize, position + i + 1);
+                }
+            }
+            position += n;
+        }
+        if (bounds[count - 1] < end) {
+            bounds[count++] = end;
+        }
+        return Arrays.copyOf(bounds, count);
+    }
+}
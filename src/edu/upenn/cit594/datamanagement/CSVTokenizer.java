@@ -0,0 +1,251 @@
+package edu.upenn.cit594.datamanagement;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Streaming CSV tokenizer shared by the CSV readers. It reads raw bytes into a
+ * reusable buffer and, for each record, exposes the fields as offsets into that
+ * buffer instead of creating Strings. Quoted fields (with doubled quotes as
+ * escapes) are unescaped in place, so numbers, ZIP codes and timestamps can be
+ * parsed straight from the buffer without allocating.
+ *
+ * Field offsets are only valid until the next call to {@link #nextRecord()}.
+ * A newline inside a quoted field is part of the field rather than a record end.
+ */
+public class CSVTokenizer implements Closeable {
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private static final int UNQUOTED = 0;
+    private static final int QUOTED = 1;
+    private static final int QUOTE_IN_QUOTED = 2;
+
+    private final InputStream in;
+    private byte[] buf;
+    // stream offset of buf[0]
+    private long bufferOffset;
+    private int pos;
+    private int limit;
+    private int mark;
+    private boolean skipLineFeed;
+
+    private int[] fieldStarts = new int[32];
+    private int[] fieldEnds = new int[32];
+    private int fieldCount;
+
+    public CSVTokenizer(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    public CSVTokenizer(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buf = new byte[Math.max(bufferSize, 16)];
+    }
+
+    /**
+     * Advances to the next record.
+     *
+     * @return true if a record was read, false at end of input
+     * @throws IOException if the underlying stream fails
+     */
+    public boolean nextRecord() throws IOException {
+        fieldCount = 0;
+        mark = pos;
+        if (pos >= limit && !fill()) return false;
+        if (skipLineFeed) {
+            skipLineFeed = false;
+            if (buf[pos] == '\n') {
+                pos++;
+                mark = pos;
+                if (pos >= limit && !fill()) return false;
+            }
+        }
+
+        int write = pos;
+        int fieldStart = write;
+        int state = UNQUOTED;
+        while (true) {
+            if (pos >= limit) {
+                int shift = mark;
+                boolean more = fill();
+                write -= shift;
+                fieldStart -= shift;
+                for (int f = 0; f < fieldCount; f++) {
+                    fieldStarts[f] -= shift;
+                    fieldEnds[f] -= shift;
+                }
+                if (!more) {
+                    addField(fieldStart, write);
+                    return true;
+                }
+            }
+            byte b = buf[pos++];
+            if (state == QUOTED) {
+                if (b == '"') {
+                    state = QUOTE_IN_QUOTED;
+                } else {
+                    buf[write++] = b;
+                }
+            } else if (state == QUOTE_IN_QUOTED) {
+                if (b == '"') {
+                    buf[write++] = b;
+                    state = QUOTED;
+                } else {
+                    // the previous quote closed the quoted section; handle this byte as unquoted
+                    state = UNQUOTED;
+                    pos--;
+                }
+            } else if (b == '"') {
+                state = QUOTED;
+            } else if (b == ',') {
+                addField(fieldStart, write);
+                fieldStart = write;
+            } else if (b == '\n') {
+                addField(fieldStart, write);
+                return true;
+            } else if (b == '\r') {
+                addField(fieldStart, write);
+                skipLineFeed = true;
+                return true;
+            } else {
+                buf[write++] = b;
+            }
+        }
+    }
+
+    // Moves the current record to the front of the buffer and reads more input after it.
+    private boolean fill() throws IOException {
+        if (mark > 0) {
+            System.arraycopy(buf, mark, buf, 0, limit - mark);
+            bufferOffset += mark;
+            limit -= mark;
+            pos -= mark;
+            mark = 0;
+        }
+        if (limit == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        }
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n <= 0) return false;
+        limit += n;
+        return true;
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = end;
+        fieldCount++;
+    }
+
+    /**
+     * @return the number of bytes consumed from the stream, i.e. the offset just past the current record
+     */
+    public long getPosition() {
+        return bufferOffset + pos;
+    }
+
+    /**
+     * @return the number of fields in the current record
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Builds a map from lower-cased, trimmed column name to column index, using
+     * the current record as the header.
+     */
+    public Map<String, Integer> getHeaderMap() {
+        Map<String, Integer> headerMap = new HashMap<>();
+        for (int i = 0; i < fieldCount; i++) {
+            headerMap.put(getString(i).toLowerCase(), i);
+        }
+        return headerMap;
+    }
+
+    // String.trim() semantics on bytes: bytes 0x00-0x20 are whitespace.
+    private int trimmedStart(int field) {
+        int start = fieldStarts[field];
+        int end = fieldEnds[field];
+        while (start < end && (buf[start] & 0xff) <= ' ') start++;
+        return start;
+    }
+
+    // Takes the trimmed start, so a field of only whitespace trims to nothing.
+    private int trimmedEnd(int field, int start) {
+        int end = fieldEnds[field];
+        while (end > start && (buf[end - 1] & 0xff) <= ' ') end--;
+        return end;
+    }
+
+    /**
+     * @return the trimmed field decoded as UTF-8
+     */
+    public String getString(int field) {
+        int start = trimmedStart(field);
+        return new String(buf, start, trimmedEnd(field, start) - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return true if the trimmed field is empty
+     */
+    public boolean isEmpty(int field) {
+        int start = trimmedStart(field);
+        return start == trimmedEnd(field, start);
+    }
+
+    /**
+     * @return the int code of the field if it is exactly a 5-digit ZIP, or -1
+     */
+    public int getZipCode(int field) {
+        int start = trimmedStart(field);
+        return ByteParsers.parseZipCode(buf, start, trimmedEnd(field, start));
+    }
+
+    /**
+     * Reads the ZIP from the first five characters of the field, which allows
+     * ZIP+4 values such as {@code 19104-1234}.
+     *
+     * @return the int code of the leading 5-digit ZIP, or -1
+     */
+    public int getZipCodePrefix(int field) {
+        int start = trimmedStart(field);
+        if (trimmedEnd(field, start) - start < 5) return -1;
+        return ByteParsers.parseZipCode(buf, start, start + 5);
+    }
+
+    /**
+     * @return the field as an int, or {@link ByteParsers#INVALID_INT} if it is not one
+     */
+    public long getInt(int field) {
+        int start = trimmedStart(field);
+        return ByteParsers.parseInt(buf, start, trimmedEnd(field, start));
+    }
+
+    /**
+     * @return the field as a double, or NaN if it is not a number
+     */
+    public double getDouble(int field) {
+        int start = trimmedStart(field);
+        return ByteParsers.parseDouble(buf, start, trimmedEnd(field, start));
+    }
+
+    /**
+     * @return the field as a {@code yyyy-MM-dd HH:mm:ss} timestamp in epoch seconds,
+     *         or {@link ByteParsers#INVALID_TIMESTAMP}
+     */
+    public long getTimestamp(int field) {
+        int start = trimmedStart(field);
+        return ByteParsers.parseTimestamp(buf, start, trimmedEnd(field, start));
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -1,100 +1,187 @@
 package edu.upenn.cit594.datamanagement;
 
+import edu.upenn.cit594.util.CovidColumns;
 import edu.upenn.cit594.util.CovidRecord;
 import java.io.*;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 
 public class CovidCSVReader {
     private String filename;
     private List<CovidRecord> records;
-    private DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private InputMode inputMode;
+    private boolean failed;
 
     public CovidCSVReader(String filename) {
+        this(filename, InputMode.BUFFERED);
+    }
+
+    public CovidCSVReader(String filename, InputMode inputMode) {
         this.filename = filename;
         this.records = new ArrayList<>();
+        this.inputMode = inputMode;
     }
 
     public List<CovidRecord> readData() {
-        try (BufferedReader br = Files.newBufferedReader(Paths.get(filename))) {
-            String headerLine = br.readLine();
-            if (headerLine == null) return records;
-            String[] headers = parseCSVLine(headerLine);
-            Map<String, Integer> headerMap = new HashMap<>();
-            for (int i = 0; i < headers.length; i++) {
-                headerMap.put(headers[i].toLowerCase().trim(), i);
-            }
+        records.addAll(readColumns().asRecords());
+        return records;
+    }
 
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] tokens = parseCSVLine(line);
-                String zip = tokens[headerMap.get("zip_code")].trim();
-                if (zip.length() != 5 || !zip.matches("\\d{5}")) continue;
-
-                String timestampStr = tokens[headerMap.get("etl_timestamp")].trim();
-
-                LocalDateTime timestamp;
-                try {
-                    timestamp = LocalDateTime.parse(timestampStr, formatter);
-                } catch (DateTimeParseException e) {
-                    continue;
-                }
-
-                int partial = parseInteger(tokens, headerMap, "partially_vaccinated");
-                int full = parseInteger(tokens, headerMap, "fully_vaccinated");
-                int pos = parseInteger(tokens, headerMap, "POS");
-                int neg = parseInteger(tokens, headerMap, "NEG");
-                int boosters = parseInteger(tokens, headerMap, "boosted");
-                int hospitalized = parseInteger(tokens, headerMap, "hospitalized");
-                int deaths = parseInteger(tokens, headerMap, "deaths");
-
-                CovidRecord record = new CovidRecord(zip, timestamp, partial, full, pos, neg, boosters, hospitalized, deaths);
-                records.add(record);
-            }
+    /**
+     * @return true if the last read stopped at an error, so what it returned may be
+     *         incomplete
+     */
+    public boolean hasError() {
+        return failed;
+    }
+
+    // Reads the file straight into columnar storage without creating a record object per row.
+    public CovidColumns readColumns() {
+        long start = System.nanoTime();
+        ReadStats stats = new ReadStats();
+        long bytes = 0;
+        CovidColumns columns = new CovidColumns();
+        failed = false;
+        try (CSVTokenizer tokenizer = new CSVTokenizer(inputMode.open(filename))) {
+            readRows(tokenizer, columns, stats);
+            bytes = tokenizer.getPosition();
         } catch (IOException e) {
             System.err.println("Error reading file " + filename + ": " + e.getMessage());
+            failed = true;
         }
-        return records;
+        stats.publish("reader.covid.csv", bytes, start);
+        return columns;
     }
 
-    private int parseInteger(String[] tokens, Map<String, Integer> headerMap, String fieldName) {
-        int index = headerMap.getOrDefault(fieldName, -1);
-        if (index == -1 || index >= tokens.length) return 0;
-        String value = tokens[index].trim();
-        if (value.isEmpty()) return 0;
-        try {
-            return Integer.parseInt(value);
-        } catch (NumberFormatException e) {
-            return 0;
+    /**
+     * Reads the records that start at or after a byte offset, for following a file
+     * that is still being appended to. The header is taken from the start of the file.
+     * Only complete lines are read: a last line without a line break may still be
+     * being written and is left for the next call.
+     *
+     * @param offset  where to start; 0 or an offset returned by an earlier call
+     * @param columns receives the records
+     * @return the offset just past the last line read
+     * @throws IOException if the file cannot be read or is shorter than the offset
+     */
+    long readColumnsFrom(long offset, CovidColumns columns) throws IOException {
+        long start = System.nanoTime();
+        ReadStats stats = new ReadStats();
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < offset) throw new IOException("File is shorter than the offset " + offset);
+            long end = lastLineEnd(channel, offset, size);
+            if (end <= offset) return offset;
+
+            Map<String, Integer> headerMap;
+            long from;
+            try (CSVTokenizer header = new CSVTokenizer(inputMode.openRange(channel, 0, end))) {
+                if (!header.nextRecord()) return offset;
+                headerMap = header.getHeaderMap();
+                from = Math.max(offset, header.getPosition());
+            }
+            // the tokenizer stops after the \r of a \r\n line end
+            if (from < end && byteAt(channel, from) == '\n') from++;
+
+            try (CSVTokenizer tokenizer = new CSVTokenizer(inputMode.openRange(channel, from, end))) {
+                readRows(tokenizer, headerMap, columns, stats);
+            }
+            stats.publish("reader.covid.csv", end - from, start);
+            return end;
         }
     }
 
-    // Basic CSV line parser that handles quoted fields.
-    private String[] parseCSVLine(String line) {
-        List<String> tokens = new ArrayList<>();
-        boolean inQuotes = false;
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            if (c == '"') {
-                if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == '"') {
-                    sb.append('"');
-                    i++;
-                } else {
-                    inQuotes = !inQuotes;
-                }
-            } else if (c == ',' && !inQuotes) {
-                tokens.add(sb.toString());
-                sb.setLength(0);
-            } else {
-                sb.append(c);
+    /**
+     * @return the offset just past the last complete line, for starting to follow the
+     *         file from its current end
+     * @throws IOException if the file cannot be read
+     */
+    long endOffset() throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            return lastLineEnd(channel, 0, channel.size());
+        }
+    }
+
+    // Offset just past the last line break in [from, size), or from if there is none.
+    private static long lastLineEnd(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(8192);
+        long blockEnd = size;
+        while (blockEnd > from) {
+            long blockStart = Math.max(from, blockEnd - block.capacity());
+            block.clear().limit((int) (blockEnd - blockStart));
+            while (block.hasRemaining()) {
+                if (channel.read(block, blockStart + block.position()) < 0) break;
+            }
+            for (int i = block.position() - 1; i >= 0; i--) {
+                if (block.get(i) == '\n') return blockStart + i + 1;
             }
+            blockEnd = blockStart;
         }
-        tokens.add(sb.toString());
-        return tokens.toArray(new String[0]);
+        return from;
+    }
+
+    private static int byteAt(FileChannel channel, long position) throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        return channel.read(one, position) == 1 ? one.get(0) : -1;
+    }
+
+    private void readRows(CSVTokenizer tokenizer, CovidColumns columns, ReadStats stats) throws IOException {
+        if (!tokenizer.nextRecord()) return;
+        readRows(tokenizer, tokenizer.getHeaderMap(), columns, stats);
+    }
+
+    private void readRows(CSVTokenizer tokenizer, Map<String, Integer> headerMap, CovidColumns columns,
+                          ReadStats stats) throws IOException {
+        int zipColumn = headerMap.get("zip_code");
+        int timestampColumn = headerMap.get("etl_timestamp");
+        int partialColumn = headerMap.getOrDefault("partially_vaccinated", -1);
+        int fullColumn = headerMap.getOrDefault("fully_vaccinated", -1);
+        int posColumn = headerMap.getOrDefault("pos", -1);
+        int negColumn = headerMap.getOrDefault("neg", -1);
+        int boostersColumn = headerMap.getOrDefault("boosted", -1);
+        int hospitalizedColumn = headerMap.getOrDefault("hospitalized", -1);
+        int deathsColumn = headerMap.getOrDefault("deaths", -1);
+        int requiredFields = Math.max(zipColumn, timestampColumn) + 1;
+
+        while (tokenizer.nextRecord()) {
+            stats.rows++;
+            if (tokenizer.getFieldCount() < requiredFields) {
+                stats.shortRows++;
+                continue;
+            }
+            int zip = tokenizer.getZipCode(zipColumn);
+            if (zip < 0) {
+                stats.badZip++;
+                continue;
+            }
+
+            long timestamp = tokenizer.getTimestamp(timestampColumn);
+            if (timestamp == ByteParsers.INVALID_TIMESTAMP) {
+                stats.badTimestamp++;
+                continue;
+            }
+
+            int partial = parseInteger(tokenizer, partialColumn, stats);
+            int full = parseInteger(tokenizer, fullColumn, stats);
+            int pos = parseInteger(tokenizer, posColumn, stats);
+            int neg = parseInteger(tokenizer, negColumn, stats);
+            int boosters = parseInteger(tokenizer, boostersColumn, stats);
+            int hospitalized = parseInteger(tokenizer, hospitalizedColumn, stats);
+            int deaths = parseInteger(tokenizer, deathsColumn, stats);
+
+            columns.add(zip, timestamp, partial, full, pos, neg, boosters, hospitalized, deaths);
+        }
+    }
+
+    // Missing, empty or malformed counts are read as 0.
+    private int parseInteger(CSVTokenizer tokenizer, int index, ReadStats stats) {
+        if (index == -1 || index >= tokenizer.getFieldCount()) return 0;
+        long value = tokenizer.getInt(index);
+        if (value != ByteParsers.INVALID_INT) return (int) value;
+        if (!tokenizer.isEmpty(index)) stats.defaultedNumbers++;
+        return 0;
     }
 }
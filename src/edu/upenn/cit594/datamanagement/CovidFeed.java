@@ -0,0 +1,74 @@
+package edu.upenn.cit594.datamanagement;
+
+import edu.upenn.cit594.util.CovidColumns;
+import java.io.IOException;
+
+/**
+ * Follows a COVID CSV or JSON file that grows over time. The feed remembers the byte
+ * offset up to which the file has been read, and each {@link #readNew} call reads
+ * only the records added after it, so the cost of a refresh is proportional to the
+ * new data. The new rows are meant for {@link DataManager#appendCovidData}.
+ *
+ * CSV files are followed line by line. JSON files must stay a single array: the
+ * writer may rewrite the closing bracket as long as the records already in the file
+ * are not changed.
+ */
+public class CovidFeed {
+    private final String filename;
+    private final CovidCSVReader csvReader;
+    private final CovidJSONReader jsonReader;
+    private long offset;
+
+    /**
+     * @param filename  the COVID file, read as JSON if it ends in .json and as CSV otherwise
+     * @param inputMode how to read the file
+     * @param offset    byte offset to continue from: 0 to read the whole file, or a value
+     *                  from {@link #getOffset}
+     */
+    public CovidFeed(String filename, InputMode inputMode, long offset) {
+        this.filename = filename;
+        boolean json = filename.endsWith(".json");
+        this.csvReader = json ? null : new CovidCSVReader(filename, inputMode);
+        this.jsonReader = json ? new CovidJSONReader(filename, inputMode) : null;
+        this.offset = offset;
+    }
+
+    /**
+     * Creates a feed that starts at the current end of the file, so only records
+     * added from now on are read. Create it before loading the file itself: records
+     * added while the file is loading are then read again rather than missed, and
+     * reading a record twice does not change any query result.
+     */
+    public static CovidFeed fromEnd(String filename, InputMode inputMode) throws IOException {
+        CovidFeed feed = new CovidFeed(filename, inputMode, 0);
+        feed.offset = feed.csvReader != null ? feed.csvReader.endOffset() : feed.jsonReader.endOffset();
+        return feed;
+    }
+
+    /**
+     * Reads the records added since the last call and advances the offset past them.
+     *
+     * @return the new records, possibly none
+     * @throws IOException if the file cannot be read or has been truncated; the offset
+     *                     is left unchanged
+     */
+    public synchronized CovidColumns readNew() throws IOException {
+        CovidColumns columns = new CovidColumns();
+        offset = csvReader != null
+                ? csvReader.readColumnsFrom(offset, columns)
+                : jsonReader.readColumnsFrom(offset, columns);
+        return columns;
+    }
+
+    /**
+     * @return the byte offset up to which the file has been read; save it to resume
+     *         the feed in a later run
+     */
+    public synchronized long getOffset() {
+        return offset;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+}
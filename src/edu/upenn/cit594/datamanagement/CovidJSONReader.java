@@ -1,67 +1,254 @@
 package edu.upenn.cit594.datamanagement;
 
+import edu.upenn.cit594.util.CovidColumns;
 import edu.upenn.cit594.util.CovidRecord;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
+import edu.upenn.cit594.util.ZipCodes;
 import java.util.*;
+import java.util.function.Consumer;
 import java.io.*;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
+/**
+ * Reads COVID data from a JSON array of objects. The file is streamed with
+ * {@link JSONEventReader}, so each record is converted as soon as its object has
+ * been read and no document tree is ever held in memory. A file that turns out to
+ * be malformed or truncated yields no records at all, not the ones before the error.
+ */
 public class CovidJSONReader {
+    // JSON keys of the count fields, in the order RowHandler takes them
+    private static final String[] COUNT_FIELDS = {
+            "partial_vaccinated", "full_vaccinated", "POS", "NEG", "boosters", "hospitalized", "deaths"
+    };
+
     private String filename;
     private List<CovidRecord> records;
-    private DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private InputMode inputMode;
+    private boolean failed;
 
     public CovidJSONReader(String filename) {
+        this(filename, InputMode.BUFFERED);
+    }
+
+    public CovidJSONReader(String filename, InputMode inputMode) {
         this.filename = filename;
         this.records = new ArrayList<>();
+        this.inputMode = inputMode;
     }
 
     public List<CovidRecord> readData() {
-        JSONParser parser = new JSONParser();
-        try (Reader reader = new FileReader(filename)) {
-            Object obj = parser.parse(reader);
-            JSONArray array = (JSONArray) obj;
-
-            for (Object o : array) {
-                JSONObject jsonObj = (JSONObject) o;
-                String zip = ((String) jsonObj.get("zip_code")).trim();
-                if (zip.length() != 5 || !zip.matches("\\d{5}")) continue;
-                String timestampStr = ((String) jsonObj.get("timestamp")).trim();
-                LocalDateTime timestamp;
-                try {
-                    timestamp = LocalDateTime.parse(timestampStr, formatter);
-                } catch (DateTimeParseException e) {
-                    continue;
+        List<CovidRecord> read = new ArrayList<>();
+        if (read(toRecords(read::add))) records.addAll(read);
+        return records;
+    }
+
+    /**
+     * @return true if the last read stopped at an error, so what it returned may be
+     *         incomplete
+     */
+    public boolean hasError() {
+        return failed;
+    }
+
+    // Reads the file straight into columnar storage without creating a record object per row.
+    public CovidColumns readColumns() {
+        CovidColumns columns = new CovidColumns();
+        return read(columns::add) ? columns : new CovidColumns();
+    }
+
+    /**
+     * Streams the records in file order, handing each one to the consumer as soon
+     * as it has been parsed. If the file turns out to be malformed, the consumer has
+     * already received the records before the error.
+     *
+     * @param consumer receives each valid record
+     * @return false if the file could not be read to its end
+     */
+    public boolean readRecords(Consumer<CovidRecord> consumer) {
+        return read(toRecords(consumer));
+    }
+
+    private static RowHandler toRecords(Consumer<CovidRecord> consumer) {
+        return (zip, timestamp, partial, full, pos, neg, boosters, hospitalized, deaths) ->
+                consumer.accept(new CovidRecord(ZipCodes.format(zip), CovidColumns.toLocalDateTime(timestamp),
+                        partial, full, pos, neg, boosters, hospitalized, deaths));
+    }
+
+    // Receives the fields of one record as primitives.
+    private interface RowHandler {
+        void accept(int zip, long timestamp, int partial, int full, int pos, int neg,
+                    int boosters, int hospitalized, int deaths);
+    }
+
+    // Returns false if the file could not be read to its end.
+    private boolean read(RowHandler handler) {
+        long start = System.nanoTime();
+        ReadStats stats = new ReadStats();
+        long bytes = 0;
+        boolean complete = false;
+        try (JSONEventReader json = new JSONEventReader(inputMode.open(filename))) {
+            if (json.next() != JSONEventReader.Event.START_ARRAY) {
+                throw new IOException("Expected a JSON array of records");
+            }
+            JSONEventReader.Event event;
+            while ((event = json.next()) != JSONEventReader.Event.END_ARRAY) {
+                if (event == JSONEventReader.Event.START_OBJECT) {
+                    stats.rows++;
+                    readObject(json, handler, stats);
+                } else {
+                    json.skipValue(event);
                 }
-                int partial = parseIntFromJson(jsonObj, "partial_vaccinated");
-                int full = parseIntFromJson(jsonObj, "full_vaccinated");
-                int pos = parseIntFromJson(jsonObj, "POS");
-                int neg = parseIntFromJson(jsonObj, "NEG");
-                int boosters = parseIntFromJson(jsonObj, "boosters");
-                int hospitalized = parseIntFromJson(jsonObj, "hospitalized");
-                int deaths = parseIntFromJson(jsonObj, "deaths");
-
-                CovidRecord record = new CovidRecord(zip, timestamp, partial, full, pos, neg, boosters, hospitalized, deaths);
-                records.add(record);
             }
-        } catch (IOException | ParseException e) {
+            bytes = json.getPosition();
+            complete = true;
+        } catch (IOException e) {
             System.err.println("Error reading JSON file " + filename + ": " + e.getMessage());
         }
-        return records;
+        stats.publish("reader.covid.json", bytes, start);
+        failed = !complete;
+        return complete;
+    }
+
+    /**
+     * Reads the records after a byte offset, for following a file whose array is still
+     * being extended. The offset is the end of the last record read, so the writer may
+     * replace the closing bracket with more records in between calls. A record that is
+     * cut off at the end of the file may still be being written and is left for the
+     * next call.
+     *
+     * @param offset  where to start; 0 or an offset returned by an earlier call
+     * @param columns receives the records
+     * @return the offset just past the last record read
+     * @throws IOException if the file cannot be read, is malformed or is shorter than the offset
+     */
+    long readColumnsFrom(long offset, CovidColumns columns) throws IOException {
+        long start = System.nanoTime();
+        ReadStats stats = new ReadStats();
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < offset) throw new IOException("File is shorter than the offset " + offset);
+            // file offset of the first byte after the opening bracket, which is put back in front
+            long from = offset;
+            InputStream in = inputMode.openRange(channel, 0, size);
+            if (offset > 0) {
+                from = skipSeparators(channel, offset, size);
+                if (from == size || byteAt(channel, from) == ']') return offset;
+                in = new SequenceInputStream(new ByteArrayInputStream(new byte[] {'['}), inputMode.openRange(channel, from, size));
+            }
+            long base = offset > 0 ? from - 1 : 0;
+
+            long consumed = offset;
+            JSONEventReader json = new JSONEventReader(in);
+            try {
+                if (json.next() != JSONEventReader.Event.START_ARRAY) {
+                    throw new IOException("Expected a JSON array of records");
+                }
+                JSONEventReader.Event event;
+                while ((event = json.next()) != JSONEventReader.Event.END_ARRAY) {
+                    if (event == JSONEventReader.Event.START_OBJECT) {
+                        readObject(json, columns::add, stats);
+                        stats.rows++;
+                    } else {
+                        json.skipValue(event);
+                    }
+                    consumed = base + json.getPosition();
+                }
+            } catch (IOException e) {
+                // running out of input only means the writer has not finished
+                if (base + json.getPosition() < size) throw e;
+            } finally {
+                json.close();
+            }
+            stats.publish("reader.covid.json", consumed - offset, start);
+            return consumed;
+        }
+    }
+
+    /**
+     * @return the offset just past the last record in the file, for starting to follow
+     *         it from its current end
+     * @throws IOException if the file cannot be read
+     */
+    long endOffset() throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long end = channel.size();
+            while (end > 0 && isSpace(byteAt(channel, end - 1))) end--;
+            if (end > 0 && byteAt(channel, end - 1) == ']') {
+                end--;
+                while (end > 0 && isSpace(byteAt(channel, end - 1))) end--;
+            }
+            return end;
+        }
+    }
+
+    private static long skipSeparators(FileChannel channel, long position, long size) throws IOException {
+        while (position < size) {
+            int b = byteAt(channel, position);
+            if (b != ',' && !isSpace(b)) break;
+            position++;
+        }
+        return position;
+    }
+
+    private static boolean isSpace(int b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    private static int byteAt(FileChannel channel, long position) throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        return channel.read(one, position) == 1 ? one.get(0) : -1;
+    }
+
+    // Reads the fields of one object and passes it on if the ZIP code and timestamp are valid.
+    private void readObject(JSONEventReader json, RowHandler handler, ReadStats stats) throws IOException {
+        int zip = -1;
+        long timestamp = ByteParsers.INVALID_TIMESTAMP;
+        int[] counts = new int[COUNT_FIELDS.length];
+        int defaulted = 0;
+
+        while (json.next() == JSONEventReader.Event.FIELD_NAME) {
+            int field = countField(json);
+            boolean isZip = field < 0 && json.textEquals("zip_code");
+            boolean isTimestamp = field < 0 && json.textEquals("timestamp");
+            JSONEventReader.Event value = json.next();
+            boolean scalar = isScalar(value);
+            json.skipValue(value);
+
+            if (isZip) {
+                zip = scalar ? json.getZipCode() : -1;
+            } else if (isTimestamp) {
+                timestamp = scalar ? json.getTimestamp() : ByteParsers.INVALID_TIMESTAMP;
+            } else if (field >= 0) {
+                // numbers and numeric strings are accepted; anything else counts as 0
+                long count = scalar ? json.getInt() : ByteParsers.INVALID_INT;
+                counts[field] = count == ByteParsers.INVALID_INT ? 0 : (int) count;
+                if (count == ByteParsers.INVALID_INT && value != JSONEventReader.Event.NULL) defaulted++;
+            }
+        }
+
+        if (zip < 0) {
+            stats.badZip++;
+            return;
+        }
+        if (timestamp == ByteParsers.INVALID_TIMESTAMP) {
+            stats.badTimestamp++;
+            return;
+        }
+        stats.defaultedNumbers += defaulted;
+        handler.accept(zip, timestamp, counts[0], counts[1], counts[2], counts[3], counts[4], counts[5], counts[6]);
     }
 
-    private int parseIntFromJson(JSONObject obj, String key) {
-        Object val = obj.get(key);
-        if (val == null) return 0;
-        try {
-            return Integer.parseInt(val.toString());
-        } catch (NumberFormatException e) {
-            return 0;
+    // Index of the current field name in COUNT_FIELDS, or -1.
+    private static int countField(JSONEventReader json) {
+        for (int i = 0; i < COUNT_FIELDS.length; i++) {
+            if (json.textEquals(COUNT_FIELDS[i])) return i;
         }
+        return -1;
+    }
+
+    private static boolean isScalar(JSONEventReader.Event event) {
+        return event == JSONEventReader.Event.STRING || event == JSONEventReader.Event.NUMBER;
     }
 }
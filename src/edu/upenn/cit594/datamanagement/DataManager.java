@@ -1,178 +1,695 @@
 package edu.upenn.cit594.datamanagement;
 
+import edu.upenn.cit594.logging.Counter;
+import edu.upenn.cit594.logging.MetricsRegistry;
+import edu.upenn.cit594.logging.Timer;
+import edu.upenn.cit594.processor.ClusterThresholds;
+import edu.upenn.cit594.processor.CovidDateIndex;
+import edu.upenn.cit594.processor.CovidTimeSeries;
 import edu.upenn.cit594.processor.PropertyAverageCalculator;
+import edu.upenn.cit594.processor.PropertyIndex;
+import edu.upenn.cit594.processor.PropertyQuantileIndex;
+import edu.upenn.cit594.processor.TopK;
+import edu.upenn.cit594.processor.WellnessClusterFinder;
+import edu.upenn.cit594.util.CacheStats;
+import edu.upenn.cit594.util.CachePolicy;
+import edu.upenn.cit594.util.CovidColumns;
 import edu.upenn.cit594.util.CovidRecord;
+import edu.upenn.cit594.util.PropertyColumns;
 import edu.upenn.cit594.util.PropertyRecord;
+import edu.upenn.cit594.util.ResultCache;
+import edu.upenn.cit594.util.ZipDictionary;
+import edu.upenn.cit594.util.ZipValueMap;
 
 import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntToDoubleFunction;
 
+/**
+ * Answers the application's queries. Each dataset is loaded, and its indexes built,
+ * either when the DataManager is created or, for a dataset given as a
+ * {@link LazyDataset}, by the first query that needs it. Either way the indexes never
+ * change afterwards, and results are memoized in thread-safe result caches, so a
+ * single instance can be shared by any number of query threads.
+ *
+ * The one exception is new COVID data: {@link #appendCovidData} indexes the new rows
+ * and publishes the COVID columns, day index and cluster finder together as one new
+ * immutable state, so each query sees either the old or the new data and never a mix.
+ *
+ * The ZIP codes of the population and property data are each numbered by a
+ * {@link ZipDictionary} when the data is loaded, and populations, property
+ * aggregates and vaccination rates are kept in arrays indexed by ZIP ID; ZIP Strings
+ * are only looked up when a result is read. Besides the sums behind the averages, the
+ * property data is summarized per ZIP by quantile sketches for medians and percentiles.
+ *
+ * Trend queries over ranges of days run on a {@link CovidTimeSeries}, built from
+ * the COVID state by the first such query after the data is loaded or appended.
+ *
+ * Each query records its latency in a {@code query.*} timer of the
+ * {@link MetricsRegistry}, and the result caches are exposed as {@code cache.*} gauges.
+ */
 public class DataManager {
-    private final List<CovidRecord> covidRecords;
-    private final List<PropertyRecord> propertyRecords;
-    private final Map<String, Integer> populationData;
+    /** Number of days, ending on the given day, that the rolling averages cover. */
+    public static final int ROLLING_WINDOW_DAYS = 7;
 
-    private final PropertyAverageCalculator marketValueCalculator;
-    private final PropertyAverageCalculator livableAreaCalculator;
+    /** Caches used when no policy is given: up to 1024 results per query, no expiry. */
+    public static final CachePolicy DEFAULT_CACHE_POLICY = CachePolicy.lru(1024, null);
 
-    private final Map<String, Map<String, Double>> cachedVaccinationsPerCapita = new HashMap<>();
-    private final Map<String, Integer> cachedMarketValuePerCapita = new HashMap<>();
-    private Integer cachedTotalPopulation = null;
+    /** Dataset names used by {@link #getDatasetStatus}. */
+    public static final String COVID = "covid";
+    public static final String PROPERTIES = "properties";
+    public static final String POPULATION = "population";
+
+    // each dataset with the indexes built over it, loaded on first need
+    private final LazyDataset<CovidState> covidData;
+    private final LazyDataset<PropertyData> propertyData;
+    private final LazyDataset<PopulationData> populationData;
+    // the COVID state once data has been appended, replacing the loaded one
+    private volatile CovidState covid;
+
+    private final ResultCache<Long, ZipValueMap> cachedVaccinationsPerCapita;
+    private final ResultCache<String, Integer> cachedMarketValues;
+    private final ResultCache<String, Integer> cachedLivableAreas;
+
+    private final Timer totalPopulationTimer;
+    private final Timer vaccinationsTimer;
+    private final Timer marketValueTimer;
+    private final Timer livableAreaTimer;
+    private final Timer propertyQuantileTimer;
+    private final Timer marketValuePerCapitaTimer;
+    private final Timer wellnessClustersTimer;
+    private final Timer clusterSweepTimer;
+    private final Timer trendTimer;
+    private final Timer rankingTimer;
+    private final Timer appendTimer;
+    private final Counter appendedRows;
+
+    // The COVID data and everything derived from it, replaced as a whole on append.
+    private static final class CovidState {
+        final CovidColumns columns;
+        final CovidDateIndex dateIndex;
+        // true once the columns are a private copy that appends may write to
+        final boolean owned;
+
+        // built by the first query that needs them: the cluster finder needs the other
+        // two datasets, and the time series costs O(ZIPs x days), which appends would
+        // otherwise pay each time
+        private volatile WellnessClusterFinder clusterFinder;
+        private volatile CovidTimeSeries timeSeries;
+
+        CovidState(CovidColumns columns, CovidDateIndex dateIndex, WellnessClusterFinder clusterFinder, boolean owned) {
+            this.columns = columns;
+            this.dateIndex = dateIndex;
+            this.clusterFinder = clusterFinder;
+            this.owned = owned;
+        }
+
+        WellnessClusterFinder clusterFinder(PopulationData population, PropertyData properties) {
+            WellnessClusterFinder finder = clusterFinder;
+            if (finder == null) {
+                synchronized (this) {
+                    finder = clusterFinder;
+                    if (finder == null) {
+                        finder = new WellnessClusterFinder(columns, dateIndex, population.zips, population.populations,
+                                properties.index);
+                        clusterFinder = finder;
+                    }
+                }
+            }
+            return finder;
+        }
+
+        CovidTimeSeries timeSeries() {
+            CovidTimeSeries series = timeSeries;
+            if (series == null) {
+                synchronized (this) {
+                    series = timeSeries;
+                    if (series == null) {
+                        series = CovidTimeSeries.build(columns, dateIndex, ZipDictionary.empty());
+                        timeSeries = series;
+                    }
+                }
+            }
+            return series;
+        }
+    }
+
+    // The property data's aggregates, distributions and the calculators over them.
+    private static final class PropertyData {
+        final PropertyIndex index;
+        final PropertyQuantileIndex quantiles;
+        final PropertyAverageCalculator marketValueCalculator;
+        final PropertyAverageCalculator livableAreaCalculator;
+
+        PropertyData(PropertyColumns columns, ResultCache<String, Integer> marketValues,
+                     ResultCache<String, Integer> livableAreas) {
+            this.index = PropertyIndex.build(columns);
+            this.quantiles = PropertyQuantileIndex.build(columns, index.getDictionary());
+            List<PropertyRecord> records = columns.asRecords();
+            this.marketValueCalculator = PropertyAverageCalculator.createWithMarketValue(records, index, marketValues);
+            this.livableAreaCalculator = PropertyAverageCalculator.createWithLivableArea(records, index, livableAreas);
+        }
+    }
+
+    // Population by ZIP ID. The population ZIPs are the ones every per-capita result
+    // is reported for, so their IDs also key the vaccination rates.
+    private static final class PopulationData {
+        final ZipDictionary zips;
+        final int[] populations;
+        final int total;
+
+        PopulationData(Map<String, Integer> populationData) {
+            ZipDictionary.Builder builder = ZipDictionary.builder();
+            for (String zip : populationData.keySet()) {
+                builder.add(zip);
+            }
+            this.zips = builder.build();
+            this.populations = new int[zips.size()];
+            for (Map.Entry<String, Integer> entry : populationData.entrySet()) {
+                int id = zips.idOf(entry.getKey());
+                if (id >= 0) populations[id] = entry.getValue();
+            }
+            this.total = populationData.values().stream().mapToInt(Integer::intValue).sum();
+        }
+    }
 
     public DataManager(List<CovidRecord> covidRecords, List<PropertyRecord> propertyRecords, Map<String, Integer> populationData) {
-        this.covidRecords = covidRecords;
-        this.propertyRecords = propertyRecords;
-        this.populationData = populationData;
-        this.marketValueCalculator = PropertyAverageCalculator.createWithMarketValue(propertyRecords);
-        this.livableAreaCalculator = PropertyAverageCalculator.createWithLivableArea(propertyRecords);
+        this(CovidColumns.from(covidRecords), PropertyColumns.from(propertyRecords), populationData);
+    }
+
+    public DataManager(CovidColumns covidColumns, PropertyColumns propertyColumns, Map<String, Integer> populationData) {
+        this(covidColumns, propertyColumns, populationData, DEFAULT_CACHE_POLICY);
+    }
+
+    /**
+     * @param cachePolicy how vaccination rates and property averages are memoized
+     */
+    public DataManager(CovidColumns covidColumns, PropertyColumns propertyColumns, Map<String, Integer> populationData,
+                       CachePolicy cachePolicy) {
+        this(LazyDataset.loaded(COVID, covidColumns), LazyDataset.loaded(PROPERTIES, propertyColumns),
+                LazyDataset.loaded(POPULATION, populationData), cachePolicy);
+        loadAll().join();
+    }
+
+    /**
+     * Creates a DataManager over datasets that may not be loaded yet. Each dataset,
+     * and the indexes over it, is loaded by the first query that needs it, or by
+     * {@link #loadAll}; until then the DataManager holds only its loader. A query
+     * that needs several datasets starts loading all of them before it waits.
+     *
+     * @param cachePolicy how vaccination rates and property averages are memoized
+     */
+    public DataManager(LazyDataset<CovidColumns> covidColumns, LazyDataset<PropertyColumns> propertyColumns,
+                       LazyDataset<Map<String, Integer>> populationData, CachePolicy cachePolicy) {
+        this.cachedVaccinationsPerCapita = cachePolicy.newCache();
+        this.cachedMarketValues = cachePolicy.newCache();
+        this.cachedLivableAreas = cachePolicy.newCache();
+        this.covidData = covidColumns.map(columns -> new CovidState(columns, CovidDateIndex.build(columns), null, false));
+        this.propertyData = propertyColumns.map(columns -> new PropertyData(columns, cachedMarketValues, cachedLivableAreas));
+        this.populationData = populationData.map(PopulationData::new);
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        this.totalPopulationTimer = metrics.timer("query.totalPopulation");
+        this.vaccinationsTimer = metrics.timer("query.vaccinationsPerCapita");
+        this.marketValueTimer = metrics.timer("query.averageMarketValue");
+        this.livableAreaTimer = metrics.timer("query.averageLivableArea");
+        this.propertyQuantileTimer = metrics.timer("query.propertyQuantile");
+        this.marketValuePerCapitaTimer = metrics.timer("query.marketValuePerCapita");
+        this.wellnessClustersTimer = metrics.timer("query.wellnessClusters");
+        this.clusterSweepTimer = metrics.timer("query.wellnessClusterSweep");
+        this.trendTimer = metrics.timer("query.trend");
+        this.rankingTimer = metrics.timer("query.topZips");
+        this.appendTimer = metrics.timer("covid.append");
+        this.appendedRows = metrics.counter("covid.appended.rows");
+        registerCacheGauges(metrics, "vaccinationsPerCapita", cachedVaccinationsPerCapita);
+        registerCacheGauges(metrics, "averageMarketValue", cachedMarketValues);
+        registerCacheGauges(metrics, "averageLivableArea", cachedLivableAreas);
+    }
+
+    /**
+     * Builds a DataManager from datasets that are still being read. The indexes over
+     * each dataset are built as soon as it arrives, on the thread that read it, while
+     * the others are still loading.
+     *
+     * @return the DataManager once every dataset and index is ready, completed
+     *         exceptionally if one of them failed
+     */
+    public static CompletableFuture<DataManager> buildAsync(CompletableFuture<CovidColumns> covidColumns,
+                                                            CompletableFuture<PropertyColumns> propertyColumns,
+                                                            CompletableFuture<Map<String, Integer>> populationData,
+                                                            CachePolicy cachePolicy) {
+        DataManager dataManager = new DataManager(LazyDataset.loading(COVID, covidColumns),
+                LazyDataset.loading(PROPERTIES, propertyColumns), LazyDataset.loading(POPULATION, populationData),
+                cachePolicy);
+        return dataManager.loadAll().thenApply(ignored -> dataManager);
+    }
+
+    /**
+     * Starts loading every dataset that is not loaded yet, in the background.
+     *
+     * @return completes when all datasets are loaded, or exceptionally if one failed
+     */
+    public CompletableFuture<Void> loadAll() {
+        return CompletableFuture.allOf(covidData.load(), propertyData.load(), populationData.load());
+    }
+
+    /**
+     * @return the load status of each dataset, by name
+     */
+    public Map<String, LazyDataset.Status> getDatasetStatus() {
+        Map<String, LazyDataset.Status> status = new LinkedHashMap<>();
+        status.put(covidData.getName(), covidData.getStatus());
+        status.put(propertyData.getName(), propertyData.getStatus());
+        status.put(populationData.getName(), populationData.getStatus());
+        return status;
+    }
+
+    // the cluster finder over the current COVID state, which needs all three datasets
+    private WellnessClusterFinder clusterFinder() {
+        propertyData.load();
+        populationData.load();
+        return covidState().clusterFinder(populationData.get(), propertyData.get());
+    }
+
+    // the current COVID state, loading the COVID data if necessary
+    private CovidState covidState() {
+        CovidState state = covid;
+        return state != null ? state : covidData.get();
+    }
+
+    private static void registerCacheGauges(MetricsRegistry metrics, String name, ResultCache<?, ?> cache) {
+        metrics.gauge("cache." + name + ".hits", () -> cache.getStats().getHits());
+        metrics.gauge("cache." + name + ".misses", () -> cache.getStats().getMisses());
+        metrics.gauge("cache." + name + ".evictions", () -> cache.getStats().getEvictions());
+        metrics.gauge("cache." + name + ".size", cache::size);
+    }
+
+    /**
+     * Adds new COVID rows, such as the records appended to the feed since it was
+     * loaded or the contents of a delta file. Only the days the new rows fall on are
+     * re-indexed, and only the cached vaccination rates of those days are dropped;
+     * all other cached results stay valid. Apart from a one-time copy of the initial
+     * columns, the cost is proportional to the new rows, the existing entries of their
+     * days and the number of days.
+     *
+     * Queries may run while data is appended. Appends are applied one at a time.
+     *
+     * @param delta the new rows
+     * @return the days that received new rows, in ascending order
+     */
+    public synchronized SortedSet<LocalDate> appendCovidData(CovidColumns delta) {
+        SortedSet<LocalDate> days = new TreeSet<>();
+        if (delta.size() == 0) return days;
+        long start = System.nanoTime();
+
+        CovidState current = covidState();
+        CovidColumns columns = current.columns;
+        int fromRow = columns.size();
+        int needed = fromRow + delta.size();
+        // Rows past the published size are never read through the current state, so
+        // they can be written in place as long as the arrays need not be reallocated.
+        if (!current.owned || needed > columns.capacity()) {
+            columns = columns.copy(Math.max(needed, 2 * columns.capacity()));
+        }
+        columns.addAll(delta);
+        CovidDateIndex dateIndex = current.dateIndex.append(columns, fromRow);
+        WellnessClusterFinder clusterFinder = current.clusterFinder;
+        covid = new CovidState(columns, dateIndex,
+                clusterFinder == null ? null : clusterFinder.withCovidData(columns, dateIndex), true);
+
+        // drop the affected days only after the new state is visible, so a recomputed
+        // entry can never come from the old state
+        for (int row = 0; row < delta.size(); row++) {
+            days.add(LocalDate.ofEpochDay(delta.getEpochDay(row)));
+        }
+        for (LocalDate day : days) {
+            cachedVaccinationsPerCapita.invalidate(vaccinationsKey(true, day.toEpochDay()));
+            cachedVaccinationsPerCapita.invalidate(vaccinationsKey(false, day.toEpochDay()));
+        }
+        appendedRows.add(delta.size());
+        appendTimer.recordSince(start);
+        return days;
+    }
+
+    /**
+     * @return the counters of each result cache, by query name
+     */
+    public Map<String, CacheStats> getCacheStats() {
+        Map<String, CacheStats> stats = new LinkedHashMap<>();
+        stats.put("vaccinationsPerCapita", cachedVaccinationsPerCapita.getStats());
+        stats.put("averageMarketValue", cachedMarketValues.getStats());
+        stats.put("averageLivableArea", cachedLivableAreas.getStats());
+        return stats;
     }
 
     public int getTotalPopulation() {
-        if (cachedTotalPopulation != null) return cachedTotalPopulation;
-        cachedTotalPopulation = populationData.values().stream().mapToInt(Integer::intValue).sum();
-        return cachedTotalPopulation;
+        long start = System.nanoTime();
+        int result = populationData.get().total;
+        totalPopulationTimer.recordSince(start);
+        return result;
     }
 
+    /**
+     * @return the rates per ZIP code; the map is shared between callers and cannot be modified
+     */
     public Map<String, Double> getVaccinationsPerCapita(String type, LocalDate date) {
-        String key = type.toLowerCase() + "_" + date;
-        if (cachedVaccinationsPerCapita.containsKey(key)) return cachedVaccinationsPerCapita.get(key);
-
-        Map<String, CovidRecord> latestPerZip = new HashMap<>();
-        for (CovidRecord record : covidRecords) {
-            if (record.getTimestamp().toLocalDate().equals(date)) {
-                String zip = record.getZipCode();
-                latestPerZip.merge(zip, record, (r1, r2) -> r2.getTimestamp().isAfter(r1.getTimestamp()) ? r2 : r1);
+        boolean partial = type.equalsIgnoreCase("partial");
+        return vaccinationsTimer.time(() -> vaccinationRates(partial, date));
+    }
+
+    private ZipValueMap vaccinationRates(boolean partial, LocalDate date) {
+        Long key = vaccinationsKey(partial, date.toEpochDay());
+        return cachedVaccinationsPerCapita.get(key, k -> computeVaccinationsPerCapita(partial, date));
+    }
+
+    // any type other than "partial" means full vaccination
+    private static Long vaccinationsKey(boolean partial, long epochDay) {
+        return epochDay * 2 + (partial ? 1 : 0);
+    }
+
+    private ZipValueMap computeVaccinationsPerCapita(boolean partial, LocalDate date) {
+        populationData.load();
+        // read the state here rather than in the caller, so a result cached after an
+        // append always comes from the new data
+        CovidState state = covidState();
+        CovidDateIndex dateIndex = state.dateIndex;
+        CovidColumns columns = state.columns;
+        PopulationData population = populationData.get();
+        // rates by population ZIP ID, NaN for ZIPs without a rate
+        double[] rates = new double[population.populations.length];
+        Arrays.fill(rates, Double.NaN);
+        int day = dateIndex.indexOf(date.toEpochDay());
+        if (day >= 0) {
+            // the index already holds the latest record per ZIP code for the day
+            for (int e = 0; e < dateIndex.getEntryCount(day); e++) {
+                int id = population.zips.idOf(dateIndex.getZipCode(day, e));
+                if (id < 0 || population.populations[id] == 0) continue;
+                int row = dateIndex.getRow(day, e);
+                int vaccinated = partial ? columns.getPartialVaccinated(row) : columns.getFullVaccinated(row);
+
+                if (vaccinated != 0) {
+                    double perCapita = (double) vaccinated / population.populations[id];
+                    rates[id] = Math.round(perCapita * 10000.0) / 10000.0;
+                }
             }
         }
 
-        Map<String, Double> result = new HashMap<>();
-        for (Map.Entry<String, CovidRecord> entry : latestPerZip.entrySet()) {
-            String zip = entry.getKey();
-            CovidRecord rec = entry.getValue();
-            int population = populationData.getOrDefault(zip, 0);
-            if (population == 0) continue;
-            int vaccinated = type.equalsIgnoreCase("partial") ? rec.getPartialVaccinated() : rec.getFullVaccinated();
-
-            if (vaccinated != 0) {
-                double perCapita = (double) vaccinated / population;
-                result.put(zip, Math.round(perCapita * 10000.0) / 10000.0);
-            }
+        return new ZipValueMap(population.zips, rates);
+    }
+
+    /**
+     * Returns the per-capita vaccination rates for every day in [from, to] that has
+     * COVID data, using the same rules as {@link #getVaccinationsPerCapita}.
+     *
+     * @param type "partial" or "full"
+     * @param from first day, inclusive
+     * @param to   last day, inclusive
+     * @return rates per ZIP code, keyed by day in ascending order
+     */
+    public SortedMap<LocalDate, Map<String, Double>> getVaccinationsPerCapitaBetween(String type, LocalDate from, LocalDate to) {
+        SortedMap<LocalDate, Map<String, Double>> series = new TreeMap<>();
+        CovidDateIndex dateIndex = covidState().dateIndex;
+        int end = dateIndex.lowerBound(to.toEpochDay() + 1);
+        for (int day = dateIndex.lowerBound(from.toEpochDay()); day < end; day++) {
+            LocalDate date = LocalDate.ofEpochDay(dateIndex.getDay(day));
+            series.put(date, getVaccinationsPerCapita(type, date));
         }
+        return series;
+    }
 
-        cachedVaccinationsPerCapita.put(key, result);
-        return result;
+    /**
+     * Returns a ZIP's daily values of a COVID field over a range of days: the value
+     * of its latest record on each day in [from, to] that has a record.
+     *
+     * @return the values by day, in ascending order
+     */
+    public SortedMap<LocalDate, Integer> getTrajectory(String zip, CovidTimeSeries.Metric metric,
+                                                       LocalDate from, LocalDate to) {
+        return trendTimer.time(() -> {
+            CovidTimeSeries series = covidState().timeSeries();
+            int id = series.getDictionary().idOf(zip);
+            SortedMap<LocalDate, Integer> trajectory = new TreeMap<>();
+            for (long day = Math.max(from.toEpochDay(), series.getFirstDay()); day <= to.toEpochDay()
+                    && day < series.getFirstDay() + series.getDayCount(); day++) {
+                if (series.hasRecord(id, day)) trajectory.put(LocalDate.ofEpochDay(day), series.getValue(id, metric, day));
+            }
+            return trajectory;
+        });
     }
 
-    public int getAverageMarketValue(String zip) {
-        return marketValueCalculator.calculate(zip);
+    /**
+     * Returns a ZIP's {@value #ROLLING_WINDOW_DAYS}-day rolling average of a COVID field
+     * for each day in [from, to]: the mean of its daily values over the window ending
+     * on that day, leaving out days without a record.
+     *
+     * @return the averages by day in ascending order; days whose window has no
+     *         record are left out
+     */
+    public SortedMap<LocalDate, Double> getRollingAverages(String zip, CovidTimeSeries.Metric metric,
+                                                           LocalDate from, LocalDate to) {
+        return trendTimer.time(() -> {
+            CovidTimeSeries series = covidState().timeSeries();
+            int id = series.getDictionary().idOf(zip);
+            SortedMap<LocalDate, Double> averages = new TreeMap<>();
+            long lastDay = series.getFirstDay() + series.getDayCount() + ROLLING_WINDOW_DAYS - 1;
+            for (long day = Math.max(from.toEpochDay(), series.getFirstDay()); day <= to.toEpochDay()
+                    && day < lastDay; day++) {
+                double average = series.getRollingAverage(id, metric, day, ROLLING_WINDOW_DAYS);
+                if (!Double.isNaN(average)) averages.put(LocalDate.ofEpochDay(day), average);
+            }
+            return averages;
+        });
     }
 
-    public int getAverageLivableArea(String zip) {
-        return livableAreaCalculator.calculate(zip);
+    /**
+     * Returns every ZIP's {@value #ROLLING_WINDOW_DAYS}-day rolling average of a COVID
+     * field on the given day, as for {@link #getRollingAverages(String, CovidTimeSeries.Metric, LocalDate, LocalDate)}.
+     *
+     * @return the averages by ZIP code, in ascending ZIP order; ZIPs without a record
+     *         in the window are left out
+     */
+    public Map<String, Double> getRollingAverages(CovidTimeSeries.Metric metric, LocalDate date) {
+        return trendTimer.time(() -> {
+            CovidTimeSeries series = covidState().timeSeries();
+            double[] averages = new double[series.getDictionary().size()];
+            for (int id = 0; id < averages.length; id++) {
+                averages[id] = series.getRollingAverage(id, metric, date.toEpochDay(), ROLLING_WINDOW_DAYS);
+            }
+            return new ZipValueMap(series.getDictionary(), averages);
+        });
     }
 
-    public int getMarketValuePerCapita(String zip) {
-        if (cachedMarketValuePerCapita.containsKey(zip)) return cachedMarketValuePerCapita.get(zip);
+    /**
+     * Returns how much a COVID field changed per ZIP between two days: the value of the
+     * ZIP's latest record on or before {@code to} minus that of its latest record on
+     * or before {@code from}, which counts as 0 if there is none.
+     *
+     * @return the changes by ZIP code, in ascending ZIP order; ZIPs without a record
+     *         on or before {@code to} are left out
+     */
+    public Map<String, Integer> getDeltas(CovidTimeSeries.Metric metric, LocalDate from, LocalDate to) {
+        return trendTimer.time(() -> {
+            CovidTimeSeries series = covidState().timeSeries();
+            ZipDictionary zips = series.getDictionary();
+            Map<String, Integer> deltas = new LinkedHashMap<>();
+            for (int i = 0; i < zips.size(); i++) {
+                int id = zips.getIdInZipOrder(i);
+                if (series.getLatestRecordDay(id, to.toEpochDay()) == Long.MIN_VALUE) continue;
+                deltas.put(zips.getZip(id), delta(series, id, metric, from, to));
+            }
+            return deltas;
+        });
+    }
 
-        List<PropertyRecord> records = propertyRecords.stream()
-                .filter(r -> r.getZipCode().equals(zip))
-                .collect(Collectors.toList());
+    /**
+     * Returns how much each COVID field changed for one ZIP between two days, as for
+     * {@link #getDeltas(CovidTimeSeries.Metric, LocalDate, LocalDate)}.
+     *
+     * @return the changes by field, or an empty map if the ZIP has no record on or
+     *         before {@code to}
+     */
+    public Map<CovidTimeSeries.Metric, Integer> getDeltas(String zip, LocalDate from, LocalDate to) {
+        return trendTimer.time(() -> {
+            CovidTimeSeries series = covidState().timeSeries();
+            int id = series.getDictionary().idOf(zip);
+            Map<CovidTimeSeries.Metric, Integer> deltas = new EnumMap<>(CovidTimeSeries.Metric.class);
+            if (series.getLatestRecordDay(id, to.toEpochDay()) == Long.MIN_VALUE) return deltas;
+            for (CovidTimeSeries.Metric metric : CovidTimeSeries.Metric.values()) {
+                deltas.put(metric, delta(series, id, metric, from, to));
+            }
+            return deltas;
+        });
+    }
 
-        if (records.isEmpty()) {
-            cachedMarketValuePerCapita.put(zip, 0);
-            return 0;
-        }
+    private static int delta(CovidTimeSeries series, int id, CovidTimeSeries.Metric metric, LocalDate from, LocalDate to) {
+        return series.getValueAsOf(id, metric, to.toEpochDay()) - series.getValueAsOf(id, metric, from.toEpochDay());
+    }
 
-        double totalMarketValue = records.stream().mapToDouble(PropertyRecord::getMarketValue).sum();
-        int population = populationData.getOrDefault(zip, 0);
-        if (population == 0) {
-            cachedMarketValuePerCapita.put(zip, 0);
-            return 0;
+    /**
+     * The per-ZIP values that ZIP codes can be ranked by.
+     */
+    public enum Ranking {
+        AVERAGE_MARKET_VALUE,
+        AVERAGE_LIVABLE_AREA,
+        MARKET_VALUE_PER_CAPITA,
+        PARTIAL_VACCINATION_RATE,
+        FULL_VACCINATION_RATE
+    }
+
+    /**
+     * Ranks the ZIP codes by one of their values, computed as by the query for a single
+     * ZIP, and returns the first k. The values are read from the per-ZIP arrays and
+     * the best k kept in a bounded heap, so a ranking takes O(n log k) for n ZIPs.
+     *
+     * @param ranking the value to rank by
+     * @param date    day of the vaccination data; not used for the property values
+     * @param k       how many ZIP codes to return
+     * @param highest true for the highest values, false for the lowest
+     * @return up to k ZIP codes with their values, best first, equal values in ZIP
+     *         order; ZIPs without a value (no properties, population or rate) are left out
+     */
+    public Map<String, Double> getTopZips(Ranking ranking, LocalDate date, int k, boolean highest) {
+        return rankingTimer.time(() -> {
+            switch (ranking) {
+                case AVERAGE_MARKET_VALUE:
+                    return topPropertyAverages(PropertyIndex.Metric.MARKET_VALUE, k, highest);
+                case AVERAGE_LIVABLE_AREA:
+                    return topPropertyAverages(PropertyIndex.Metric.LIVABLE_AREA, k, highest);
+                case MARKET_VALUE_PER_CAPITA:
+                    return topMarketValuesPerCapita(k, highest);
+                default:
+                    ZipValueMap rates = vaccinationRates(ranking == Ranking.PARTIAL_VACCINATION_RATE, date);
+                    return top(rates.getDictionary(), rates::getValue, k, highest);
+            }
+        });
+    }
+
+    private Map<String, Double> topPropertyAverages(PropertyIndex.Metric metric, int k, boolean highest) {
+        PropertyIndex index = propertyData.get().index;
+        return top(index.getDictionary(),
+                id -> index.getCountById(id) == 0 ? Double.NaN : index.getAverageById(id, metric), k, highest);
+    }
+
+    private Map<String, Double> topMarketValuesPerCapita(int k, boolean highest) {
+        populationData.load();
+        PropertyIndex index = propertyData.get().index;
+        PopulationData population = populationData.get();
+        ZipDictionary propertyZips = index.getDictionary();
+        return top(population.zips, id -> {
+            int propertyId = propertyZips.idOf(population.zips.getCode(id));
+            if (population.populations[id] == 0 || index.getCountById(propertyId) == 0) return Double.NaN;
+            return (int) (index.getSumById(propertyId, PropertyIndex.Metric.MARKET_VALUE) / population.populations[id]);
+        }, k, highest);
+    }
+
+    private static Map<String, Double> top(ZipDictionary zips, IntToDoubleFunction values, int k, boolean highest) {
+        Map<String, Double> top = new LinkedHashMap<>();
+        for (int id : TopK.select(zips.size(), values, k, highest)) {
+            top.put(zips.getZip(id), values.applyAsDouble(id));
         }
+        return top;
+    }
+
+    public int getAverageMarketValue(String zip) {
+        long start = System.nanoTime();
+        int result = propertyData.get().marketValueCalculator.calculate(zip);
+        marketValueTimer.recordSince(start);
+        return result;
+    }
+
+    public int getAverageLivableArea(String zip) {
+        long start = System.nanoTime();
+        int result = propertyData.get().livableAreaCalculator.calculate(zip);
+        livableAreaTimer.recordSince(start);
+        return result;
+    }
+
+    /**
+     * Returns a quantile of a property metric over the ZIP's properties, such as the
+     * median market value. The value comes from a {@link edu.upenn.cit594.processor.KllQuantileSketch}
+     * built when the property data was loaded, so its rank is within about
+     * {@link edu.upenn.cit594.processor.KllQuantileSketch#getNormalizedRankError} of
+     * the requested one.
+     *
+     * @param quantile between 0 and 1, such as 0.5 for the median
+     * @return the truncated value, or 0 if the ZIP has no properties
+     * @throws IllegalArgumentException if the quantile is not between 0 and 1
+     */
+    public int getPropertyQuantile(String zip, PropertyIndex.Metric metric, double quantile) {
+        long start = System.nanoTime();
+        double value = propertyData.get().quantiles.getQuantile(zip, metric, quantile);
+        propertyQuantileTimer.recordSince(start);
+        return Double.isNaN(value) ? 0 : (int) value;
+    }
+
+    public int getMarketValuePerCapita(String zip) {
+        long start = System.nanoTime();
+        int result = computeMarketValuePerCapita(zip);
+        marketValuePerCapitaTimer.recordSince(start);
+        return result;
+    }
+
+    private int computeMarketValuePerCapita(String zip) {
+        populationData.load();
+        PropertyIndex propertyIndex = propertyData.get().index;
+        int propertyId = propertyIndex.getDictionary().idOf(zip);
+        if (propertyIndex.getCountById(propertyId) == 0) return 0;
+        PopulationData population = populationData.get();
+        int id = population.zips.idOf(zip);
+        if (id < 0 || population.populations[id] == 0) return 0;
 
-        int perCapita = (int) (totalMarketValue / population);
-        cachedMarketValuePerCapita.put(zip, perCapita);
-        return perCapita;
+        // the stream's compensated sum, as the per-record computation took it
+        double totalMarketValue = propertyIndex.getSumById(propertyId, PropertyIndex.Metric.MARKET_VALUE);
+        return (int) (totalMarketValue / population.populations[id]);
     }
 
     /**
      * Custom Feature: Finds clusters of ZIPs connected by adjacency (ZIP difference == 1)
      * where each ZIP's full-vaccination rate, average livable area, and population meet thresholds.
-     * Uses a graph (adjacency list) + BFS (Queue) to identify connected components.
+     * Since adjacent ZIPs are consecutive int codes, the clusters are the runs of consecutive
+     * qualifying ZIPs, found in one pass by {@link WellnessClusterFinder}.
      *
      * @param date        LocalDate for full vaccination data
      * @param minRate     minimum full-vaccination rate (0.0–1.0)
      * @param minArea     minimum average livable area (sq ft)
      * @param minPopulation minimum population per ZIP
-     * @return list of clusters (sets of ZIP codes) matching criteria
+     * @return list of clusters (sets of ZIP codes) matching criteria, in ascending ZIP order
      */
     public List<Set<String>> getWellnessClusters(LocalDate date,
                                                  double minRate,
                                                  int minArea,
                                                  int minPopulation) {
-        // Step 1: collect full vaccination rates on date
-        Map<String, Double> rates = getVaccinationsPerCapita("full", date);
-
-        // Build node set: only ZIPs with data
-        Set<String> nodes = new HashSet<>();
-        for (String zip : rates.keySet()) {
-            int pop = populationData.getOrDefault(zip, 0);
-            if (pop >= minPopulation) {
-                nodes.add(zip);
-            }
-        }
-
-        // Step 2: build adjacency list: ZIPs adjacent if numeric difference == 1
-        Map<String, List<String>> adj = new HashMap<>();
-        for (String z : nodes) {
-            adj.put(z, new ArrayList<>());
-        }
-        for (String z1 : nodes) {
-            int code1 = Integer.parseInt(z1);
-            for (String z2 : nodes) {
-                int code2 = Integer.parseInt(z2);
-                if (Math.abs(code1 - code2) == 1) {
-                    adj.get(z1).add(z2);
-                }
-            }
-        }
+        return wellnessClustersTimer.time(() -> clusterFinder().find(date, minRate, minArea, minPopulation));
+    }
 
-        // Step 3: BFS to find clusters where all meeting thresholds
-        Set<String> visited = new HashSet<>();
-        List<Set<String>> clusters = new ArrayList<>();
-
-        for (String start : nodes) {
-            if (visited.contains(start)) continue;
-            double rate = rates.getOrDefault(start, 0.0);
-            int area = getAverageLivableArea(start);
-            // Population already filtered
-            if (rate < minRate || area < minArea) {
-                visited.add(start);
-                continue;
-            }
-            // BFS for this component
-            Set<String> comp = new HashSet<>();
-            Queue<String> queue = new LinkedList<>();
-            visited.add(start);
-            queue.add(start);
-            while (!queue.isEmpty()) {
-                String cur = queue.poll();
-                comp.add(cur);
-                for (String nei : adj.get(cur)) {
-                    if (!visited.contains(nei)) {
-                        double r2 = rates.getOrDefault(nei, 0.0);
-                        int a2 = getAverageLivableArea(nei);
-                        int p2 = populationData.getOrDefault(nei, 0);
-                        if (r2 >= minRate && a2 >= minArea && p2 >= minPopulation) {
-                            visited.add(nei);
-                            queue.add(nei);
-                        }
-                    }
-                }
-            }
-            clusters.add(comp);
-        }
+    /**
+     * Finds the wellness clusters for every day with COVID data in [from, to], with the
+     * days evaluated in parallel.
+     *
+     * @return the clusters per day, in ascending order of day
+     */
+    public SortedMap<LocalDate, List<Set<String>>> getWellnessClustersBetween(LocalDate from, LocalDate to,
+                                                                              double minRate,
+                                                                              int minArea,
+                                                                              int minPopulation) {
+        ClusterThresholds thresholds = new ClusterThresholds(minRate, minArea, minPopulation);
+        SortedMap<LocalDate, List<Set<String>>> clusters = new TreeMap<>();
+        getWellnessClusterSweep(from, to, Collections.singletonList(thresholds))
+                .forEach((date, byThresholds) -> clusters.put(date, byThresholds.get(thresholds)));
         return clusters;
     }
-}
\ No newline at end of file
+
+    /**
+     * Finds the wellness clusters for every day with COVID data in [from, to] and every
+     * threshold combination in the grid (see {@link ClusterThresholds#grid}). The work is
+     * spread over the common ForkJoinPool.
+     *
+     * @return for each day in ascending order, the clusters per threshold combination
+     */
+    public SortedMap<LocalDate, Map<ClusterThresholds, List<Set<String>>>> getWellnessClusterSweep(
+            LocalDate from, LocalDate to, List<ClusterThresholds> grid) {
+        return clusterSweepTimer.time(() -> clusterFinder().sweep(from, to, grid, ForkJoinPool.commonPool()));
+    }
+}
@@ -0,0 +1,243 @@
+package edu.upenn.cit594.datamanagement;
+
+import edu.upenn.cit594.util.CovidColumns;
+import edu.upenn.cit594.util.PropertyColumns;
+import edu.upenn.cit594.util.ZipCodes;
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * A binary snapshot of the parsed datasets, so later runs with unchanged inputs can
+ * skip text parsing entirely.
+ *
+ * Layout (little-endian):
+ * <pre>
+ *   int magic, int version
+ *   per source file (covid, properties, population):
+ *       byte present; if present: int pathLength, path bytes (UTF-8), long size, long lastModified
+ *   COVID section:      int n, int[n] zip, long[n] timestamp, then int[n] for each count
+ *                       (partial, full, pos, neg, boosters, hospitalized, deaths)
+ *   property section:   int n, int[n] zip, double[n] market value, double[n] livable area
+ *   population section: int n, int[n] zip, int[n] population
+ * </pre>
+ * The snapshot is only used when every source matches its recorded path, size and
+ * modification time. It is read through a memory mapping with absolute reads.
+ */
+public class DatasetSnapshot {
+    private static final int MAGIC = 0x43353934; // "C594"
+    // Bump whenever the format or the readers' parsing rules change.
+    private static final int VERSION = 1;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    private final CovidColumns covidColumns;
+    private final PropertyColumns propertyColumns;
+    private final Map<String, Integer> populationData;
+
+    public DatasetSnapshot(CovidColumns covidColumns, PropertyColumns propertyColumns, Map<String, Integer> populationData) {
+        this.covidColumns = covidColumns;
+        this.propertyColumns = propertyColumns;
+        this.populationData = populationData;
+    }
+
+    public CovidColumns getCovidColumns() { return covidColumns; }
+    public PropertyColumns getPropertyColumns() { return propertyColumns; }
+    public Map<String, Integer> getPopulationData() { return populationData; }
+
+    /**
+     * Writes the snapshot. The file is written under a temporary name and then
+     * moved into place, so a failed write never leaves a truncated snapshot.
+     *
+     * @param path        snapshot file
+     * @param sourceFiles the covid, properties and population files the data came from
+     *                    (entries may be null)
+     */
+    public void write(Path path, List<String> sourceFiles) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            SectionWriter out = new SectionWriter(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            for (String source : sourceFiles) {
+                writeSource(out, source);
+            }
+
+            int n = covidColumns.size();
+            out.putInt(n);
+            for (int i = 0; i < n; i++) out.putInt(covidColumns.getZipCode(i));
+            for (int i = 0; i < n; i++) out.putLong(covidColumns.getEpochSecond(i));
+            for (int i = 0; i < n; i++) out.putInt(covidColumns.getPartialVaccinated(i));
+            for (int i = 0; i < n; i++) out.putInt(covidColumns.getFullVaccinated(i));
+            for (int i = 0; i < n; i++) out.putInt(covidColumns.getPos(i));
+            for (int i = 0; i < n; i++) out.putInt(covidColumns.getNeg(i));
+            for (int i = 0; i < n; i++) out.putInt(covidColumns.getBoosters(i));
+            for (int i = 0; i < n; i++) out.putInt(covidColumns.getHospitalized(i));
+            for (int i = 0; i < n; i++) out.putInt(covidColumns.getDeaths(i));
+
+            n = propertyColumns.size();
+            out.putInt(n);
+            for (int i = 0; i < n; i++) out.putInt(propertyColumns.getZipCode(i));
+            for (int i = 0; i < n; i++) out.putDouble(propertyColumns.getMarketValue(i));
+            for (int i = 0; i < n; i++) out.putDouble(propertyColumns.getLivableArea(i));
+
+            out.putInt(populationData.size());
+            for (Map.Entry<String, Integer> entry : populationData.entrySet()) out.putInt(ZipCodes.toCode(entry.getKey()));
+            for (Map.Entry<String, Integer> entry : populationData.entrySet()) out.putInt(entry.getValue());
+            out.flush();
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeSource(SectionWriter out, String source) throws IOException {
+        if (source == null) {
+            out.putByte(0);
+            return;
+        }
+        Path file = Paths.get(source).toAbsolutePath();
+        byte[] name = file.toString().getBytes(StandardCharsets.UTF_8);
+        out.putByte(1);
+        out.putInt(name.length);
+        for (byte b : name) out.putByte(b);
+        out.putLong(Files.size(file));
+        out.putLong(Files.getLastModifiedTime(file).toMillis());
+    }
+
+    /**
+     * Reads a snapshot if it exists and was built from exactly the given sources.
+     *
+     * @param path        snapshot file
+     * @param sourceFiles the covid, properties and population files requested for this
+     *                    run (entries may be null)
+     * @return the snapshot, or null if there is none or it is out of date
+     * @throws IOException if the file cannot be read or is corrupt
+     */
+    public static DatasetSnapshot read(Path path, List<String> sourceFiles) throws IOException {
+        if (!Files.isRegularFile(path)) return null;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // a single mapping is limited to 2 GB; larger snapshots are rebuilt from the sources
+            if (channel.size() > Integer.MAX_VALUE) return null;
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            if (buf.remaining() < 8 || buf.getInt() != MAGIC || buf.getInt() != VERSION) return null;
+            for (String source : sourceFiles) {
+                if (!sourceMatches(buf, source)) return null;
+            }
+            return new DatasetSnapshot(readCovid(buf), readProperties(buf), readPopulation(buf));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt snapshot " + path);
+        }
+    }
+
+    private static boolean sourceMatches(ByteBuffer buf, String source) throws IOException {
+        boolean present = buf.get() != 0;
+        if (!present || source == null) return !present && source == null;
+        int length = buf.getInt();
+        if (length < 0 || length > buf.remaining()) throw new BufferUnderflowException();
+        byte[] name = new byte[length];
+        buf.get(name);
+        long size = buf.getLong();
+        long lastModified = buf.getLong();
+        Path file = Paths.get(source).toAbsolutePath();
+        return file.toString().equals(new String(name, StandardCharsets.UTF_8))
+                && Files.size(file) == size
+                && Files.getLastModifiedTime(file).toMillis() == lastModified;
+    }
+
+    private static CovidColumns readCovid(ByteBuffer buf) {
+        int n = buf.getInt();
+        int zips = buf.position();
+        int timestamps = zips + 4 * n;
+        int counts = timestamps + 8 * n;
+        skip(buf, 40L * n);
+        int column = 4 * n;
+        CovidColumns columns = new CovidColumns(n);
+        for (int i = 0; i < n; i++) {
+            int at = counts + 4 * i;
+            columns.add(buf.getInt(zips + 4 * i), buf.getLong(timestamps + 8 * i),
+                    buf.getInt(at), buf.getInt(at + column), buf.getInt(at + 2 * column),
+                    buf.getInt(at + 3 * column), buf.getInt(at + 4 * column),
+                    buf.getInt(at + 5 * column), buf.getInt(at + 6 * column));
+        }
+        return columns;
+    }
+
+    private static PropertyColumns readProperties(ByteBuffer buf) {
+        int n = buf.getInt();
+        int zips = buf.position();
+        int marketValues = zips + 4 * n;
+        int livableAreas = marketValues + 8 * n;
+        skip(buf, 20L * n);
+        PropertyColumns columns = new PropertyColumns(n);
+        for (int i = 0; i < n; i++) {
+            columns.add(buf.getInt(zips + 4 * i), buf.getDouble(marketValues + 8 * i), buf.getDouble(livableAreas + 8 * i));
+        }
+        return columns;
+    }
+
+    private static Map<String, Integer> readPopulation(ByteBuffer buf) {
+        int n = buf.getInt();
+        int zips = buf.position();
+        int populations = zips + 4 * n;
+        skip(buf, 8L * n);
+        Map<String, Integer> populationData = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            populationData.put(ZipCodes.format(buf.getInt(zips + 4 * i)), buf.getInt(populations + 4 * i));
+        }
+        return populationData;
+    }
+
+    // Moves past a section, failing early if the file is shorter than the section claims.
+    private static void skip(ByteBuffer buf, long bytes) {
+        if (bytes < 0 || bytes > buf.remaining()) throw new BufferUnderflowException();
+        buf.position(buf.position() + (int) bytes);
+    }
+
+    // Fills a reusable direct buffer and writes it to the channel whenever it is full.
+    private static class SectionWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        SectionWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) flush();
+        }
+
+        void putByte(int value) throws IOException {
+            ensure(1);
+            buffer.put((byte) value);
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            ensure(8);
+            buffer.putDouble(value);
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
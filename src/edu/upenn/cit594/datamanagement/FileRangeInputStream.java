@@ -0,0 +1,37 @@
+package edu.upenn.cit594.datamanagement;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Input stream over the byte range [start, end) of a shared file channel. Reads
+ * are positional, so several streams can read different ranges of one channel
+ * concurrently. Closing the stream does not close the channel.
+ */
+class FileRangeInputStream extends InputStream {
+    private final FileChannel channel;
+    private final long end;
+    private long position;
+
+    FileRangeInputStream(FileChannel channel, long start, long end) {
+        this.channel = channel;
+        this.position = start;
+        this.end = end;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        return read(one, 0, 1) == 1 ? one[0] & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (position >= end) return -1;
+        int n = (int) Math.min(len, end - position);
+        int read = channel.read(ByteBuffer.wrap(b, off, n), position);
+        if (read > 0) position += read;
+        return read;
+    }
+}
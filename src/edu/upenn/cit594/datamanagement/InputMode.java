@@ -0,0 +1,35 @@
+package edu.upenn.cit594.datamanagement;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * How the readers pull bytes from their input files.
+ */
+public enum InputMode {
+    /** Ordinary buffered reads through the file channel. */
+    BUFFERED,
+    /** Memory-mapped reads, mapping files larger than 2 GB in segments. */
+    MAPPED;
+
+    /**
+     * Opens the whole file.
+     */
+    InputStream open(String filename) throws IOException {
+        if (this == BUFFERED) return Files.newInputStream(Paths.get(filename));
+        FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        return new MappedFileInputStream(channel, 0, channel.size(), true);
+    }
+
+    /**
+     * Opens the byte range [start, end) of a channel shared with other readers.
+     * Closing the returned stream leaves the channel open.
+     */
+    InputStream openRange(FileChannel channel, long start, long end) {
+        if (this == BUFFERED) return new FileRangeInputStream(channel, start, end);
+        return new MappedFileInputStream(channel, start, end, false);
+    }
+}
@@ -0,0 +1,380 @@
+package edu.upenn.cit594.datamanagement;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal pull-style JSON reader. Instead of building a tree, it reports the
+ * document as a sequence of {@link Event}s read from a byte stream, so a caller
+ * can convert each element of a large array as soon as it has been read and keep
+ * memory use constant.
+ *
+ * The text of the current string, number or field name is held in a reusable
+ * byte buffer (UTF-8, escapes already decoded) and can be parsed in place with
+ * {@link #getInt()} or {@link #getTimestamp()}, or copied with {@link #getText()}.
+ */
+public class JSONEventReader implements Closeable {
+
+    /**
+     * The kinds of token reported by {@link #next()}.
+     */
+    public enum Event {
+        START_ARRAY, END_ARRAY, START_OBJECT, END_OBJECT, FIELD_NAME,
+        STRING, NUMBER, TRUE, FALSE, NULL, END_DOCUMENT
+    }
+
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    private static final int MAX_DEPTH = 256;
+
+    // What may come next inside the current container, apart from whitespace.
+    // After '[' or '{': a value (or field name) or the closing bracket.
+    private static final int FIRST = 0;
+    // After ',' or ':', and at the start of the document: a value (or field name).
+    private static final int ELEMENT = 1;
+    // After a value: ',' or the closing bracket.
+    private static final int SEPARATOR = 2;
+
+    private final InputStream in;
+    private final byte[] buf;
+    private int pos;
+    private int limit;
+    private long offset;
+
+    private byte[] text = new byte[64];
+    private int textLength;
+
+    // container stack: true for an object, false for an array
+    private final boolean[] inObject = new boolean[MAX_DEPTH];
+    private int depth;
+    private boolean expectName;
+    private int state = ELEMENT;
+    private boolean started;
+
+    public JSONEventReader(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    public JSONEventReader(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buf = new byte[Math.max(bufferSize, 16)];
+    }
+
+    /**
+     * Reads the next token.
+     *
+     * @return the event for the token, or {@link Event#END_DOCUMENT} once the
+     *         top-level value is complete
+     * @throws IOException on read failure or malformed JSON
+     */
+    public Event next() throws IOException {
+        int c = skipWhitespace();
+        if (c < 0) {
+            if (depth > 0 || !started) throw error("Unexpected end of input");
+            return Event.END_DOCUMENT;
+        }
+        if (depth == 0 && started) throw error("Unexpected data after top-level value");
+        started = true;
+
+        // exactly one comma between elements and between members, none before the
+        // first or after the last
+        boolean closing = c == ']' || c == '}';
+        if (c == ',') {
+            if (state != SEPARATOR) throw error("Unexpected ','");
+            pos++;
+            c = skipWhitespace();
+            if (c < 0) throw error("Unexpected end of input");
+            if (c == ']' || c == '}') throw error("Unexpected '" + (char) c + "' after ','");
+            state = ELEMENT;
+        } else if (state == SEPARATOR && !closing) {
+            throw error("Expected ',' or closing bracket");
+        } else if (state == ELEMENT && closing) {
+            throw error("Unexpected '" + (char) c + "'");
+        }
+
+        if (expectName) {
+            if (c == '}') return endContainer(true);
+            if (c != '"') throw error("Expected field name");
+            readString();
+            if (skipWhitespace() != ':') throw error("Expected ':'");
+            pos++;
+            expectName = false;
+            state = ELEMENT;
+            return Event.FIELD_NAME;
+        }
+
+        switch (c) {
+            case '{':
+                pos++;
+                push(true);
+                expectName = true;
+                state = FIRST;
+                return Event.START_OBJECT;
+            case '[':
+                pos++;
+                push(false);
+                state = FIRST;
+                return Event.START_ARRAY;
+            case ']':
+                return endContainer(false);
+            case '}':
+                return endContainer(true);
+            case '"':
+                readString();
+                valueDone();
+                return Event.STRING;
+            case 't':
+                readLiteral("true");
+                valueDone();
+                return Event.TRUE;
+            case 'f':
+                readLiteral("false");
+                valueDone();
+                return Event.FALSE;
+            case 'n':
+                readLiteral("null");
+                valueDone();
+                return Event.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    readNumber();
+                    valueDone();
+                    return Event.NUMBER;
+                }
+                throw error("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    /**
+     * Skips the value that starts with the given event, including any nested
+     * arrays or objects.
+     */
+    public void skipValue(Event event) throws IOException {
+        if (event != Event.START_ARRAY && event != Event.START_OBJECT) return;
+        int target = depth - 1;
+        while (depth > target) {
+            next();
+        }
+    }
+
+    /**
+     * @return the text of the current string, number or field name
+     */
+    public String getText() {
+        return new String(text, 0, textLength, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return true if the current text equals the given ASCII string
+     */
+    public boolean textEquals(String ascii) {
+        if (ascii.length() != textLength) return false;
+        for (int i = 0; i < textLength; i++) {
+            if (text[i] != ascii.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the current text parsed as an int, or {@link ByteParsers#INVALID_INT}
+     */
+    public long getInt() {
+        return ByteParsers.parseInt(text, 0, textLength);
+    }
+
+    /**
+     * @return the int code of the trimmed current text if it is a 5-digit ZIP, or -1
+     */
+    public int getZipCode() {
+        int start = trimmedStart();
+        return ByteParsers.parseZipCode(text, start, trimmedEnd(start));
+    }
+
+    /**
+     * @return the trimmed current text as a {@code yyyy-MM-dd HH:mm:ss} timestamp in
+     *         epoch seconds, or {@link ByteParsers#INVALID_TIMESTAMP}
+     */
+    public long getTimestamp() {
+        int start = trimmedStart();
+        return ByteParsers.parseTimestamp(text, start, trimmedEnd(start));
+    }
+
+    /**
+     * @return the number of bytes consumed so far
+     */
+    public long getPosition() {
+        return offset + pos;
+    }
+
+    private int trimmedStart() {
+        int start = 0;
+        while (start < textLength && (text[start] & 0xff) <= ' ') start++;
+        return start;
+    }
+
+    private int trimmedEnd(int start) {
+        int end = textLength;
+        while (end > start && (text[end - 1] & 0xff) <= ' ') end--;
+        return end;
+    }
+
+    private void push(boolean object) throws IOException {
+        if (depth == MAX_DEPTH) throw error("Nesting too deep");
+        inObject[depth++] = object;
+    }
+
+    private Event endContainer(boolean object) throws IOException {
+        if (depth == 0 || inObject[depth - 1] != object) throw error("Unbalanced '" + (object ? '}' : ']') + "'");
+        pos++;
+        depth--;
+        valueDone();
+        return object ? Event.END_OBJECT : Event.END_ARRAY;
+    }
+
+    // After a value inside an object, the next token is a field name; either way a
+    // separator or the closing bracket comes first.
+    private void valueDone() {
+        expectName = depth > 0 && inObject[depth - 1];
+        state = SEPARATOR;
+    }
+
+    private int skipWhitespace() throws IOException {
+        while (true) {
+            if (pos >= limit && !fill()) return -1;
+            byte b = buf[pos];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') return b;
+            pos++;
+        }
+    }
+
+    private boolean fill() throws IOException {
+        offset += limit;
+        pos = 0;
+        limit = 0;
+        int n = in.read(buf, 0, buf.length);
+        if (n <= 0) return false;
+        limit = n;
+        return true;
+    }
+
+    // Makes at least n bytes available from pos, keeping the unread ones; returns
+    // false if the input ends first.
+    private boolean ensure(int n) throws IOException {
+        if (limit - pos >= n) return true;
+        System.arraycopy(buf, pos, buf, 0, limit - pos);
+        offset += pos;
+        limit -= pos;
+        pos = 0;
+        while (limit < n) {
+            int read = in.read(buf, limit, buf.length - limit);
+            if (read <= 0) return false;
+            limit += read;
+        }
+        return true;
+    }
+
+    private int read() throws IOException {
+        if (pos >= limit && !fill()) throw error("Unexpected end of input");
+        return buf[pos++];
+    }
+
+    private void append(int b) {
+        if (textLength == text.length) text = Arrays.copyOf(text, textLength * 2);
+        text[textLength++] = (byte) b;
+    }
+
+    private void readString() throws IOException {
+        pos++; // opening quote
+        textLength = 0;
+        while (true) {
+            int b = read();
+            if (b == '"') return;
+            if (b != '\\') {
+                append(b);
+                continue;
+            }
+            int e = read();
+            switch (e) {
+                case '"': case '\\': case '/': append(e); break;
+                case 'b': append('\b'); break;
+                case 'f': append('\f'); break;
+                case 'n': append('\n'); break;
+                case 'r': append('\r'); break;
+                case 't': append('\t'); break;
+                case 'u': appendCodePoint(readUnicodeEscape()); break;
+                default: throw error("Invalid escape '\\" + (char) e + "'");
+            }
+        }
+    }
+
+    private int readUnicodeEscape() throws IOException {
+        int ch = readHex4();
+        // the low surrogate's escape may start in the next buffer
+        if (Character.isHighSurrogate((char) ch) && ensure(2) && buf[pos] == '\\' && buf[pos + 1] == 'u') {
+            pos += 2;
+            int low = readHex4();
+            if (Character.isLowSurrogate((char) low)) return Character.toCodePoint((char) ch, (char) low);
+            appendCodePoint(ch);
+            return low;
+        }
+        return ch;
+    }
+
+    private int readHex4() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(read(), 16);
+            if (digit < 0) throw error("Invalid unicode escape");
+            value = value * 16 + digit;
+        }
+        return value;
+    }
+
+    private void appendCodePoint(int cp) {
+        if (cp < 0x80) {
+            append(cp);
+        } else if (cp < 0x800) {
+            append(0xc0 | (cp >> 6));
+            append(0x80 | (cp & 0x3f));
+        } else if (cp < 0x10000) {
+            append(0xe0 | (cp >> 12));
+            append(0x80 | ((cp >> 6) & 0x3f));
+            append(0x80 | (cp & 0x3f));
+        } else {
+            append(0xf0 | (cp >> 18));
+            append(0x80 | ((cp >> 12) & 0x3f));
+            append(0x80 | ((cp >> 6) & 0x3f));
+            append(0x80 | (cp & 0x3f));
+        }
+    }
+
+    private void readNumber() throws IOException {
+        textLength = 0;
+        while (true) {
+            if (pos >= limit && !fill()) return;
+            byte b = buf[pos];
+            if ((b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E') {
+                append(b);
+                pos++;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void readLiteral(String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (read() != literal.charAt(i)) throw error("Invalid literal, expected " + literal);
+        }
+        textLength = 0;
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " at byte " + getPosition());
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,116 @@
+package edu.upenn.cit594.datamanagement;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A dataset that is loaded on first need. The loader runs at most once, on the
+ * given executor, either when a query first needs the dataset or when it is warmed
+ * up in the background; every caller then shares the same result. A failed load is
+ * not retried.
+ *
+ * @param <T> the loaded data
+ */
+public class LazyDataset<T> {
+
+    /**
+     * Progress of the load.
+     */
+    public enum Status {
+        PENDING,
+        LOADING,
+        LOADED,
+        FAILED
+    }
+
+    private final String name;
+    // starts the load; called at most once
+    private final Supplier<CompletableFuture<T>> starter;
+    // runs loaders and derived computations, or null if the load was started elsewhere
+    private final Executor executor;
+    private volatile CompletableFuture<T> future;
+
+    /**
+     * @param name     name of the dataset, for status reports
+     * @param loader   loads the dataset; runs at most once
+     * @param executor runs the loader
+     */
+    public LazyDataset(String name, Supplier<T> loader, Executor executor) {
+        this(name, () -> CompletableFuture.supplyAsync(loader, executor), executor, null);
+    }
+
+    private LazyDataset(String name, Supplier<CompletableFuture<T>> starter, Executor executor,
+                        CompletableFuture<T> future) {
+        this.name = name;
+        this.starter = starter;
+        this.executor = executor;
+        this.future = future;
+    }
+
+    /**
+     * @return a dataset that is already loaded
+     */
+    public static <T> LazyDataset<T> loaded(String name, T value) {
+        return loading(name, CompletableFuture.completedFuture(value));
+    }
+
+    /**
+     * @return a dataset whose loading has already been started elsewhere
+     */
+    public static <T> LazyDataset<T> loading(String name, CompletableFuture<T> future) {
+        return new LazyDataset<>(name, null, null, future);
+    }
+
+    /**
+     * Returns a dataset derived from this one, such as an index over it. Loading the
+     * derived dataset loads this one and then applies the function, on this dataset's
+     * executor if it has one. No thread waits for the load in between, so a small
+     * executor cannot deadlock on chains of derived datasets.
+     */
+    public <R> LazyDataset<R> map(Function<? super T, ? extends R> function) {
+        if (executor == null) return loading(name, load().thenApply(function));
+        return new LazyDataset<>(name, () -> load().thenApplyAsync(function, executor), executor, null);
+    }
+
+    /**
+     * Starts loading the dataset in the background if that has not happened yet.
+     *
+     * @return the pending result
+     */
+    public CompletableFuture<T> load() {
+        CompletableFuture<T> result = future;
+        if (result == null) {
+            synchronized (this) {
+                result = future;
+                if (result == null) {
+                    result = starter.get();
+                    future = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Loads the dataset if necessary and waits for it.
+     *
+     * @return the loaded data
+     * @throws java.util.concurrent.CompletionException if loading failed
+     */
+    public T get() {
+        return load().join();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Status getStatus() {
+        CompletableFuture<T> result = future;
+        if (result == null) return Status.PENDING;
+        if (!result.isDone()) return Status.LOADING;
+        return result.isCompletedExceptionally() ? Status.FAILED : Status.LOADED;
+    }
+}
@@ -0,0 +1,66 @@
+package edu.upenn.cit594.datamanagement;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Input stream over a memory-mapped byte range of a file. A single mapping is
+ * limited to 2 GB, so the range is mapped one segment at a time as reading
+ * advances; bytes are copied out of the mapping without any charset decoding.
+ */
+class MappedFileInputStream extends InputStream {
+    static final long DEFAULT_SEGMENT_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final boolean ownsChannel;
+    private final long end;
+    private final long segmentSize;
+    private long nextSegment;
+    private MappedByteBuffer segment;
+
+    /**
+     * @param ownsChannel whether {@link #close()} should also close the channel
+     */
+    MappedFileInputStream(FileChannel channel, long start, long end, boolean ownsChannel) {
+        this(channel, start, end, ownsChannel, DEFAULT_SEGMENT_SIZE);
+    }
+
+    MappedFileInputStream(FileChannel channel, long start, long end, boolean ownsChannel, long segmentSize) {
+        this.channel = channel;
+        this.nextSegment = start;
+        this.end = end;
+        this.ownsChannel = ownsChannel;
+        this.segmentSize = segmentSize;
+    }
+
+    // Maps the next segment once the current one is used up; returns false at the end of the range.
+    private boolean ensureMapped() throws IOException {
+        if (segment != null && segment.hasRemaining()) return true;
+        if (nextSegment >= end) return false;
+        long size = Math.min(segmentSize, end - nextSegment);
+        segment = channel.map(FileChannel.MapMode.READ_ONLY, nextSegment, size);
+        nextSegment += size;
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return ensureMapped() ? segment.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (!ensureMapped()) return -1;
+        int n = Math.min(len, segment.remaining());
+        segment.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        segment = null;
+        if (ownsChannel) channel.close();
+    }
+}
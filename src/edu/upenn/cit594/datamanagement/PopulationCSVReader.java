@@ -1,5 +1,6 @@
 package edu.upenn.cit594.datamanagement;
 
+import edu.upenn.cit594.util.ZipCodes;
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -7,63 +8,58 @@ import java.util.*;
 
 public class PopulationCSVReader {
     private String filename;
+    private boolean failed;
 
     public PopulationCSVReader(String filename) {
         this.filename = filename;
     }
 
+    /**
+     * @return true if the last read stopped at an error, so what it returned may be
+     *         incomplete
+     */
+    public boolean hasError() {
+        return failed;
+    }
+
     // Returns a map where each key is a ZIP code and the value is the corresponding population.
     public Map<String, Integer> readData() {
+        long start = System.nanoTime();
+        ReadStats stats = new ReadStats();
+        long bytes = 0;
         Map<String, Integer> populationMap = new HashMap<>();
-        try (BufferedReader br = Files.newBufferedReader(Paths.get(filename))) {
-            String headerLine = br.readLine();
-            if (headerLine == null) return populationMap;
-            String[] headers = parseCSVLine(headerLine);
-            Map<String, Integer> headerMap = new HashMap<>();
-            for (int i = 0; i < headers.length; i++) {
-                headerMap.put(headers[i].toLowerCase().trim(), i);
-            }
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] tokens = parseCSVLine(line);
-                String zip = tokens[headerMap.get("zip_code")].trim();
-                if (!zip.matches("\\d{5}")) continue;
-                String popStr = tokens[headerMap.get("population")].trim();
-                int pop;
-                try {
-                    pop = Integer.parseInt(popStr);
-                } catch (NumberFormatException e) {
+        failed = false;
+        try (CSVTokenizer tokenizer = new CSVTokenizer(Files.newInputStream(Paths.get(filename)))) {
+            if (!tokenizer.nextRecord()) return populationMap;
+            Map<String, Integer> headerMap = tokenizer.getHeaderMap();
+            int zipColumn = headerMap.get("zip_code");
+            int populationColumn = headerMap.get("population");
+            int requiredFields = Math.max(zipColumn, populationColumn) + 1;
+
+            while (tokenizer.nextRecord()) {
+                stats.rows++;
+                if (tokenizer.getFieldCount() < requiredFields) {
+                    stats.shortRows++;
                     continue;
                 }
-                populationMap.put(zip, pop);
+                int zip = tokenizer.getZipCode(zipColumn);
+                if (zip < 0) {
+                    stats.badZip++;
+                    continue;
+                }
+                long pop = tokenizer.getInt(populationColumn);
+                if (pop == ByteParsers.INVALID_INT) {
+                    stats.badNumber++;
+                    continue;
+                }
+                populationMap.put(ZipCodes.format(zip), (int) pop);
             }
+            bytes = tokenizer.getPosition();
         } catch (IOException e) {
             System.err.println("Error reading file " + filename + ": " + e.getMessage());
+            failed = true;
         }
+        stats.publish("reader.population", bytes, start);
         return populationMap;
     }
-
-    private String[] parseCSVLine(String line) {
-        List<String> tokens = new ArrayList<>();
-        boolean inQuotes = false;
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            if (c == '"') {
-                if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == '"') {
-                    sb.append('"');
-                    i++;
-                } else {
-                    inQuotes = !inQuotes;
-                }
-            } else if (c == ',' && !inQuotes) {
-                tokens.add(sb.toString());
-                sb.setLength(0);
-            } else {
-                sb.append(c);
-            }
-        }
-        tokens.add(sb.toString());
-        return tokens.toArray(new String[0]);
-    }
 }
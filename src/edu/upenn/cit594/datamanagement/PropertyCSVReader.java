@@ -1,81 +1,181 @@
 package edu.upenn.cit594.datamanagement;
 
+import edu.upenn.cit594.util.PropertyColumns;
 import edu.upenn.cit594.util.PropertyRecord;
 import java.io.*;
-import java.nio.file.Files;
+import java.nio.channels.FileChannel;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class PropertyCSVReader {
+    // Below this many bytes per chunk, splitting the file costs more than it saves.
+    private static final long MIN_CHUNK_BYTES = 1 << 20;
+    private static final int CHUNKS_PER_THREAD = 4;
+
     private String filename;
     private List<PropertyRecord> records;
+    private boolean parallel;
+    private InputMode inputMode;
+    private boolean failed;
 
     public PropertyCSVReader(String filename) {
+        this(filename, false);
+    }
+
+    public PropertyCSVReader(String filename, boolean parallel) {
+        this(filename, parallel, InputMode.BUFFERED);
+    }
+
+    /**
+     * @param filename the properties CSV file
+     * @param parallel true to split the file into chunks parsed on the common
+     *                 ForkJoinPool; the result is identical to a sequential read
+     * @param inputMode how the file bytes are read
+     */
+    public PropertyCSVReader(String filename, boolean parallel, InputMode inputMode) {
         this.filename = filename;
         this.records = new ArrayList<>();
+        this.parallel = parallel;
+        this.inputMode = inputMode;
     }
 
     public List<PropertyRecord> readData() {
-        try (BufferedReader br = Files.newBufferedReader(Paths.get(filename))) {
-            String headerLine = br.readLine();
-            if (headerLine == null) return records;
-            String[] headers = parseCSVLine(headerLine);
-            Map<String, Integer> headerMap = new HashMap<>();
-            for (int i = 0; i < headers.length; i++) {
-                headerMap.put(headers[i].toLowerCase().trim(), i);
-            }
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] tokens = parseCSVLine(line);
-                String rawZip = tokens[headerMap.get("zip_code")].trim();
-                if (rawZip.length() < 5) continue;
-                String zip = rawZip.substring(0, 5);
-                if (!zip.matches("\\d{5}")) continue;
-
-                String marketValStr = tokens[headerMap.get("market_value")].trim();
-                double marketValue;
-                try {
-                    marketValue = Double.parseDouble(marketValStr);
-                } catch (NumberFormatException e) {
-                    continue;
-                }
-
-                String areaStr = tokens[headerMap.get("total_livable_area")].trim();
-                double livableArea = 0;
-                try {
-                    livableArea = Double.parseDouble(areaStr);
-                } catch (NumberFormatException e) {
-                    // If parsing livable area fails, it remains 0.
-                }
-                records.add(new PropertyRecord(zip, marketValue, livableArea));
+        records.addAll(readColumns().asRecords());
+        return records;
+    }
+
+    /**
+     * @return true if the last read stopped at an error, so what it returned may be
+     *         incomplete
+     */
+    public boolean hasError() {
+        return failed;
+    }
+
+    // Reads the file straight into columnar storage without creating a record object per row.
+    public PropertyColumns readColumns() {
+        long start = System.nanoTime();
+        ReadStats stats = new ReadStats();
+        PropertyColumns columns = new PropertyColumns();
+        failed = false;
+        long bytes = parallel ? readParallel(columns, stats) : readSequential(columns, stats);
+        stats.publish("reader.properties", bytes, start);
+        return columns;
+    }
+
+    // Both read methods return the number of bytes consumed.
+    private long readSequential(PropertyColumns columns, ReadStats stats) {
+        try (CSVTokenizer tokenizer = new CSVTokenizer(inputMode.open(filename))) {
+            if (tokenizer.nextRecord()) {
+                Layout layout = new Layout(tokenizer.getHeaderMap());
+                readRows(tokenizer, layout, columns, stats);
             }
+            return tokenizer.getPosition();
         } catch (IOException e) {
             System.err.println("Error reading file " + filename + ": " + e.getMessage());
+            failed = true;
+            return 0;
         }
-        return records;
     }
 
-    private String[] parseCSVLine(String line) {
-        List<String> tokens = new ArrayList<>();
-        boolean inQuotes = false;
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            if (c == '"') {
-                if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == '"') {
-                    sb.append('"');
-                    i++;
-                } else {
-                    inQuotes = !inQuotes;
-                }
-            } else if (c == ',' && !inQuotes) {
-                tokens.add(sb.toString());
-                sb.setLength(0);
-            } else {
-                sb.append(c);
+    private long readParallel(PropertyColumns columns, ReadStats stats) {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+            CSVTokenizer header = new CSVTokenizer(inputMode.openRange(channel, 0, size));
+            if (!header.nextRecord()) return header.getPosition();
+            Layout layout = new Layout(header.getHeaderMap());
+            long dataStart = header.getPosition();
+
+            ForkJoinPool pool = ForkJoinPool.commonPool();
+            long chunks = Math.min((long) pool.getParallelism() * CHUNKS_PER_THREAD, (size - dataStart) / MIN_CHUNK_BYTES);
+            if (chunks <= 1) {
+                readRows(header, layout, columns, stats);
+                return header.getPosition();
+            }
+
+            long[] bounds = CSVChunker.split(channel, dataStart, size, (int) chunks);
+            List<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                long start = bounds[i];
+                long end = bounds[i + 1];
+                tasks.add(pool.submit(() -> readChunk(inputMode.openRange(channel, start, end), layout)));
+            }
+            // merging in chunk order keeps the rows in file order
+            for (ForkJoinTask<Chunk> task : tasks) {
+                Chunk chunk = task.join();
+                columns.append(chunk.columns);
+                stats.add(chunk.stats);
+            }
+            return size;
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Error reading file " + filename + ": " + e.getMessage());
+            failed = true;
+            return 0;
+        }
+    }
+
+    private static Chunk readChunk(InputStream input, Layout layout) {
+        Chunk chunk = new Chunk();
+        try {
+            readRows(new CSVTokenizer(input), layout, chunk.columns, chunk.stats);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return chunk;
+    }
+
+    private static void readRows(CSVTokenizer tokenizer, Layout layout, PropertyColumns columns, ReadStats stats)
+            throws IOException {
+        while (tokenizer.nextRecord()) {
+            stats.rows++;
+            if (tokenizer.getFieldCount() < layout.requiredFields) {
+                stats.shortRows++;
+                continue;
             }
+            // ZIP+4 values are accepted; only the first five digits are kept
+            int zip = tokenizer.getZipCodePrefix(layout.zipColumn);
+            if (zip < 0) {
+                stats.badZip++;
+                continue;
+            }
+
+            double marketValue = tokenizer.getDouble(layout.marketValueColumn);
+            if (Double.isNaN(marketValue)) {
+                stats.badNumber++;
+                continue;
+            }
+
+            double livableArea = tokenizer.getDouble(layout.areaColumn);
+            if (Double.isNaN(livableArea)) {
+                // If parsing livable area fails, it remains 0.
+                livableArea = 0;
+                stats.defaultedNumbers++;
+            }
+            columns.add(zip, marketValue, livableArea);
+        }
+    }
+
+    // The rows and counts parsed from one chunk of the file.
+    private static class Chunk {
+        final PropertyColumns columns = new PropertyColumns();
+        final ReadStats stats = new ReadStats();
+    }
+
+    // Column positions taken from the header row.
+    private static class Layout {
+        final int zipColumn;
+        final int marketValueColumn;
+        final int areaColumn;
+        final int requiredFields;
+
+        Layout(Map<String, Integer> headerMap) {
+            zipColumn = headerMap.get("zip_code");
+            marketValueColumn = headerMap.get("market_value");
+            areaColumn = headerMap.get("total_livable_area");
+            requiredFields = Math.max(zipColumn, Math.max(marketValueColumn, areaColumn)) + 1;
         }
-        tokens.add(sb.toString());
-        return tokens.toArray(new String[0]);
     }
 }
@@ -0,0 +1,51 @@
+package edu.upenn.cit594.datamanagement;
+
+import edu.upenn.cit594.logging.MetricsRegistry;
+
+/**
+ * Row counts gathered by a reader in plain fields while it parses, and published
+ * to the {@link MetricsRegistry} once at the end, so the per-row cost is a local
+ * increment. Metric names are prefixed with the reader name:
+ * <ul>
+ *   <li>{@code rows}: data rows (or JSON objects) seen, {@code accepted}: rows kept</li>
+ *   <li>{@code rejected.short_row}, {@code rejected.bad_zip}, {@code rejected.bad_timestamp},
+ *       {@code rejected.bad_number}: rows skipped, by reason</li>
+ *   <li>{@code defaulted.bad_number}: malformed optional numbers read as 0 in rows that were kept</li>
+ *   <li>{@code bytes}: input bytes consumed, {@code read}: timer of the whole read</li>
+ * </ul>
+ */
+final class ReadStats {
+    long rows;
+    long shortRows;
+    long badZip;
+    long badTimestamp;
+    long badNumber;
+    long defaultedNumbers;
+
+    void add(ReadStats other) {
+        rows += other.rows;
+        shortRows += other.shortRows;
+        badZip += other.badZip;
+        badTimestamp += other.badTimestamp;
+        badNumber += other.badNumber;
+        defaultedNumbers += other.defaultedNumbers;
+    }
+
+    /**
+     * @param reader     metric name prefix, e.g. {@code reader.covid.csv}
+     * @param bytes      input bytes consumed
+     * @param startNanos {@link System#nanoTime()} when the read started
+     */
+    void publish(String reader, long bytes, long startNanos) {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.timer(reader + ".read").recordSince(startNanos);
+        metrics.counter(reader + ".rows").add(rows);
+        metrics.counter(reader + ".accepted").add(rows - shortRows - badZip - badTimestamp - badNumber);
+        metrics.counter(reader + ".rejected.short_row").add(shortRows);
+        metrics.counter(reader + ".rejected.bad_zip").add(badZip);
+        metrics.counter(reader + ".rejected.bad_timestamp").add(badTimestamp);
+        metrics.counter(reader + ".rejected.bad_number").add(badNumber);
+        metrics.counter(reader + ".defaulted.bad_number").add(defaultedNumbers);
+        metrics.counter(reader + ".bytes").add(bytes);
+    }
+}
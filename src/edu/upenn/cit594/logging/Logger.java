@@ -1,17 +1,63 @@
 package edu.upenn.cit594.logging;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * singleton logger for recording application events and messages.
  * The logger can write to either standard error or a specified log file,
  * and automatically includes timestamps with each log message.
+ *
+ * By default every message is written and flushed before {@link #log} returns.
+ * In asynchronous mode (see {@link #enableAsync}) {@link #log} only timestamps the
+ * message and puts it on a bounded lock-free queue; a daemon thread writes the
+ * queued messages in batches and flushes at a fixed interval, on {@link #flush},
+ * and when the JVM shuts down. Actions added with {@link #addShutdownAction} run
+ * before that final write, so whatever they log is still written.
  */
 public class Logger {
+
+    /**
+     * What {@link #log} does in asynchronous mode when the queue is full.
+     */
+    public enum OverflowPolicy {
+        /** Wait until the writer thread has made room. */
+        BLOCK,
+        /** Discard the message. */
+        DROP,
+        /** Discard the message, and write how many were discarded once there is room again. */
+        COUNT
+    }
+
     // Singleton instance, initialized eagerly
     private static final Logger instance = new Logger();
+
+    private static final int BATCH_SIZE = 256;
+    private static final long BLOCK_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
     private PrintWriter writer;
 
+    // asynchronous mode; queue is null while logging synchronously
+    private final Object asyncLock = new Object();
+    private volatile MessageQueue<Message> queue;
+    private volatile OverflowPolicy overflowPolicy;
+    private volatile long flushIntervalNanos;
+    private volatile boolean running;
+    private Thread writerThread;
+    private Thread shutdownHook;
+    private final List<Runnable> shutdownActions = new ArrayList<>();
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long written;
+    private volatile boolean flushRequested;
+    private long droppedReported;
+
     /**
      * Private constructor to enforce singleton pattern.
      * Initializes the logger to write to System.err by default.
@@ -33,34 +79,259 @@ public class Logger {
      * Sets the output destination for the logger.
      * If the filename is null or empty, logs will be written to System.err.
      * If the file cannot be opened, logs will continue to be written to the previous destination.
+     * In asynchronous mode, messages logged before the call are written to the old destination.
      *
      * @param filename the path to the log file, or null/empty to use System.err
      * @throws SecurityException if a security manager exists and denies file operations
      */
-    public synchronized void setDestination(String filename) {
-        try {
-            if (filename == null || filename.trim().isEmpty()) {
-                writer = new PrintWriter(System.err, true);
-            } else {
-                writer = new PrintWriter(new FileWriter(filename, true), true);
+    public void setDestination(String filename) {
+        flush();
+        synchronized (this) {
+            try {
+                if (filename == null || filename.trim().isEmpty()) {
+                    writer = new PrintWriter(System.err, true);
+                } else {
+                    writer = new PrintWriter(new BufferedWriter(new FileWriter(filename, true)), true);
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to set log destination: " + e.getMessage());
             }
-        } catch (IOException e) {
-            System.err.println("Failed to set log destination: " + e.getMessage());
         }
     }
 
     /**
      * Logs a message with a timestamp prefix.
-     * The message will be immediately flushed to the output destination.
+     * In synchronous mode the message will be immediately flushed to the output destination;
+     * in asynchronous mode it is queued for the writer thread.
      *
      * @param message the message to be logged
      * @throws NullPointerException if the message parameter is null
      */
-    public synchronized void log(String message) {
+    public void log(String message) {
         if (message == null) {
             throw new NullPointerException("Message cannot be null");
         }
-        writer.printf("%d %s%n", System.currentTimeMillis(), message);
-        writer.flush();
+        long time = System.currentTimeMillis();
+        MessageQueue<Message> q = queue;
+        if (q == null) {
+            synchronized (this) {
+                writer.printf("%d %s%n", time, message);
+                writer.flush();
+            }
+            return;
+        }
+
+        Message entry = new Message(time, message);
+        if (!q.offer(entry)) {
+            if (overflowPolicy != OverflowPolicy.BLOCK) {
+                dropped.incrementAndGet();
+                return;
+            }
+            while (!q.offer(entry)) {
+                if (!running) {
+                    // the writer has stopped; write the message ourselves
+                    synchronized (this) {
+                        write(entry);
+                        writer.flush();
+                    }
+                    return;
+                }
+                LockSupport.unpark(writerThread);
+                LockSupport.parkNanos(BLOCK_BACKOFF_NANOS);
+            }
+        }
+        enqueued.incrementAndGet();
+        if (queue != q) {
+            // disableAsync retired the queue meanwhile, possibly after its last drain
+            synchronized (this) {
+                drain(q, Integer.MAX_VALUE);
+                writer.flush();
+            }
+        }
+    }
+
+    /**
+     * Switches to asynchronous mode, or changes its settings if it is already on.
+     *
+     * @param capacity      maximum number of queued messages
+     * @param flushInterval longest time, in milliseconds, a written message stays in
+     *                      the output buffer
+     * @param policy        what to do when the queue is full
+     */
+    public void enableAsync(int capacity, long flushInterval, OverflowPolicy policy) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be at least 1");
+        if (flushInterval < 0) throw new IllegalArgumentException("flushInterval must not be negative");
+        synchronized (asyncLock) {
+            disableAsync();
+            overflowPolicy = policy;
+            flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushInterval);
+            running = true;
+            queue = new MessageQueue<>(capacity);
+            writerThread = new Thread(this::drainLoop, "logger-writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
+            addShutdownHook();
+        }
+    }
+
+    /**
+     * Runs an action when the JVM shuts down, before the logger writes out its queue
+     * and returns to synchronous mode. Actions run in the order they were added.
+     *
+     * @param action what to do, such as logging final statistics
+     */
+    public void addShutdownAction(Runnable action) {
+        synchronized (asyncLock) {
+            shutdownActions.add(action);
+            addShutdownHook();
+        }
+    }
+
+    // The caller holds asyncLock.
+    private void addShutdownHook() {
+        if (shutdownHook == null) {
+            shutdownHook = new Thread(this::shutdown, "logger-shutdown");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        }
+    }
+
+    // Body of the shutdown hook.
+    private void shutdown() {
+        List<Runnable> actions;
+        synchronized (asyncLock) {
+            actions = new ArrayList<>(shutdownActions);
+        }
+        for (Runnable action : actions) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                log("Error in shutdown action: " + e);
+            }
+        }
+        disableAsync();
+        flush();
+    }
+
+    /**
+     * Writes out every queued message, stops the writer thread and returns to
+     * synchronous logging. Does nothing in synchronous mode.
+     */
+    public void disableAsync() {
+        synchronized (asyncLock) {
+            MessageQueue<Message> q = queue;
+            if (q == null) return;
+            running = false;
+            LockSupport.unpark(writerThread);
+            boolean interrupted = false;
+            while (writerThread.isAlive()) {
+                try {
+                    writerThread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            queue = null;
+            // messages that raced with the writer's final pass
+            synchronized (this) {
+                drain(q, Integer.MAX_VALUE);
+                writer.flush();
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Blocks until every message logged so far has been written and flushed.
+     */
+    public void flush() {
+        MessageQueue<Message> q = queue;
+        Thread thread = writerThread;
+        if (q != null && thread != null) {
+            long target = enqueued.get();
+            flushRequested = true;
+            LockSupport.unpark(thread);
+            while (written < target && running && thread.isAlive()) {
+                LockSupport.parkNanos(BLOCK_BACKOFF_NANOS);
+            }
+        }
+        synchronized (this) {
+            writer.flush();
+        }
+    }
+
+    /**
+     * @return the number of messages discarded because the queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    // Body of the writer thread.
+    private void drainLoop() {
+        MessageQueue<Message> q = queue;
+        long lastFlush = System.nanoTime();
+        boolean dirty = false;
+        while (running || !q.isEmpty()) {
+            int count;
+            synchronized (this) {
+                count = drain(q, BATCH_SIZE);
+            }
+            dirty |= count > 0;
+            long now = System.nanoTime();
+            if (dirty && (flushRequested || now - lastFlush >= flushIntervalNanos)) {
+                flushRequested = false;
+                synchronized (this) {
+                    writer.flush();
+                }
+                lastFlush = now;
+                dirty = false;
+            } else if (count == 0) {
+                long wait = dirty ? flushIntervalNanos - (now - lastFlush) : Math.max(flushIntervalNanos, IDLE_PARK_NANOS);
+                LockSupport.parkNanos(this, Math.max(wait, BLOCK_BACKOFF_NANOS));
+            }
+        }
+        synchronized (this) {
+            writer.flush();
+        }
+    }
+
+    // Writes up to max queued messages; the caller holds the lock. Returns how many were written.
+    private int drain(MessageQueue<Message> q, int max) {
+        int count = 0;
+        Message entry;
+        while (count < max && (entry = q.poll()) != null) {
+            write(entry);
+            count++;
+        }
+        written += count;
+        reportDropped();
+        return count;
+    }
+
+    private void reportDropped() {
+        long total = dropped.get();
+        if (overflowPolicy == OverflowPolicy.COUNT && total > droppedReported) {
+            write(new Message(System.currentTimeMillis(), (total - droppedReported) + " log messages dropped"));
+            droppedReported = total;
+        }
+    }
+
+    private void write(Message entry) {
+        writer.print(entry.time);
+        writer.print(' ');
+        writer.print(entry.text);
+        // print rather than println, which would flush an auto-flushing writer
+        writer.print(LINE_SEPARATOR);
+    }
+
+    // A message and the time it was logged.
+    private static class Message {
+        final long time;
+        final String text;
+
+        Message(long time, String text) {
+            this.time = time;
+            this.text = text;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+package edu.upenn.cit594.logging;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Singleton registry of named counters, timers, histograms and gauges. Metrics are
+ * created on first use, so instrumented code simply asks for them by name, e.g.
+ * {@code MetricsRegistry.getInstance().counter("covid.csv.rows").add(n)}.
+ */
+public class MetricsRegistry {
+    // Singleton instance, initialized eagerly
+    private static final MetricsRegistry instance = new MetricsRegistry();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    private MetricsRegistry() {
+    }
+
+    /**
+     * Returns the singleton instance of the registry.
+     *
+     * @return the singleton MetricsRegistry instance
+     */
+    public static MetricsRegistry getInstance() {
+        return instance;
+    }
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    public Timer timer(String name) {
+        return timers.computeIfAbsent(name, n -> new Timer());
+    }
+
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    /**
+     * Registers a value that is read when the registry is dumped, replacing any
+     * gauge registered under the same name.
+     */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * @return one line per metric, sorted by name; times are in milliseconds
+     */
+    public List<String> dump() {
+        SortedMap<String, String> lines = new TreeMap<>();
+        counters.forEach((name, counter) -> lines.put(name, name + " " + counter.get()));
+        gauges.forEach((name, gauge) -> lines.put(name, name + " " + gauge.getAsLong()));
+        histograms.forEach((name, histogram) -> lines.put(name, name + " " + summary(histogram, 1)));
+        timers.forEach((name, timer) -> lines.put(name, name + " " + summary(timer.getHistogram(), 1_000_000)));
+        return new ArrayList<>(lines.values());
+    }
+
+    private static String summary(Histogram histogram, double unit) {
+        return String.format("count=%d mean=%.3f p50=%.3f p90=%.3f p99=%.3f p999=%.3f max=%.3f",
+                histogram.getCount(), histogram.getMean() / unit,
+                histogram.getValueAtQuantile(0.5) / unit, histogram.getValueAtQuantile(0.9) / unit,
+                histogram.getValueAtQuantile(0.99) / unit, histogram.getValueAtQuantile(0.999) / unit,
+                histogram.getMax() / unit);
+    }
+}
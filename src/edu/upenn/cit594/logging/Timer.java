@@ -0,0 +1,37 @@
+package edu.upenn.cit594.logging;
+
+import java.util.function.Supplier;
+
+/**
+ * Records how long an operation takes, as a {@link Histogram} of nanoseconds.
+ */
+public class Timer {
+    private final Histogram histogram = new Histogram();
+
+    public void recordNanos(long nanos) {
+        histogram.record(nanos);
+    }
+
+    /**
+     * Records the time elapsed since the given {@link System#nanoTime()} reading.
+     */
+    public void recordSince(long startNanos) {
+        histogram.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Runs the operation and records how long it took.
+     */
+    public <T> T time(Supplier<T> operation) {
+        long start = System.nanoTime();
+        try {
+            return operation.get();
+        } finally {
+            recordSince(start);
+        }
+    }
+
+    public Histogram getHistogram() {
+        return histogram;
+    }
+}
@@ -0,0 +1,62 @@
+package edu.upenn.cit594.processor;
+
+import java.util.*;
+
+/**
+ * One combination of wellness cluster thresholds, used as a key in sweep results.
+ */
+public class ClusterThresholds {
+    private final double minRate;
+    private final int minArea;
+    private final int minPopulation;
+
+    /**
+     * @param minRate       minimum full-vaccination rate (0.0–1.0)
+     * @param minArea       minimum average livable area (sq ft)
+     * @param minPopulation minimum population per ZIP
+     */
+    public ClusterThresholds(double minRate, int minArea, int minPopulation) {
+        this.minRate = minRate;
+        this.minArea = minArea;
+        this.minPopulation = minPopulation;
+    }
+
+    /**
+     * @return every combination of the given values, varying the population fastest
+     */
+    public static List<ClusterThresholds> grid(double[] minRates, int[] minAreas, int[] minPopulations) {
+        List<ClusterThresholds> grid = new ArrayList<>(minRates.length * minAreas.length * minPopulations.length);
+        for (double minRate : minRates) {
+            for (int minArea : minAreas) {
+                for (int minPopulation : minPopulations) {
+                    grid.add(new ClusterThresholds(minRate, minArea, minPopulation));
+                }
+            }
+        }
+        return grid;
+    }
+
+    public double getMinRate() { return minRate; }
+    public int getMinArea() { return minArea; }
+    public int getMinPopulation() { return minPopulation; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ClusterThresholds)) return false;
+        ClusterThresholds other = (ClusterThresholds) o;
+        return Double.compare(minRate, other.minRate) == 0
+                && minArea == other.minArea
+                && minPopulation == other.minPopulation;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(minRate, minArea, minPopulation);
+    }
+
+    @Override
+    public String toString() {
+        return "minRate=" + minRate + ", minArea=" + minArea + ", minPopulation=" + minPopulation;
+    }
+}
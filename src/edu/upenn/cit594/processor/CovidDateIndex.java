@@ -0,0 +1,273 @@
+package edu.upenn.cit594.processor;
+
+import edu.upenn.cit594.util.CovidColumns;
+import java.util.Arrays;
+
+/**
+ * COVID rows partitioned by calendar day. For every day that has data, the index
+ * holds the latest row of each ZIP code on that day (ties go to the row that comes
+ * first in the file), sorted by ZIP code. Days are kept in ascending order, so a
+ * single day is found by binary search and a range of days is a contiguous run of
+ * positions.
+ *
+ * Each day's entries live in their own pair of arrays: entry {@code i} of day
+ * position {@code d} is {@code getZipCode(d, i)} with its row {@code getRow(d, i)}.
+ * An index is never modified; {@link #append} returns a new index that shares the
+ * arrays of every day the appended rows do not touch.
+ */
+public class CovidDateIndex {
+    private static final long ZIP_SPACE = 100_000;
+
+    private final long[] days;
+    private final int[][] zipCodes;
+    private final int[][] rows;
+
+    private CovidDateIndex(long[] days, int[][] zipCodes, int[][] rows) {
+        this.days = days;
+        this.zipCodes = zipCodes;
+        this.rows = rows;
+    }
+
+    /**
+     * Builds the index in one pass over the rows plus a sort of the (day, ZIP) pairs.
+     *
+     * @param columns the COVID data to index
+     * @return the index
+     */
+    public static CovidDateIndex build(CovidColumns columns) {
+        return new CovidDateIndex(new long[0], new int[0][], new int[0][]).append(columns, 0);
+    }
+
+    /**
+     * Indexes rows appended to the columns since this index was built. Only the days
+     * of the new rows are rebuilt, by merging the new latest rows into the day's
+     * entries, so the cost is proportional to the new rows and the entries of the
+     * days they fall on, plus one copy of the per-day array references.
+     *
+     * @param columns the indexed columns, with new rows from {@code fromRow} on
+     * @param fromRow first row that is not yet indexed
+     * @return the new index; this index is unchanged
+     */
+    public CovidDateIndex append(CovidColumns columns, int fromRow) {
+        int n = columns.size();
+        if (fromRow >= n) return this;
+
+        long minDay = Long.MAX_VALUE;
+        for (int row = fromRow; row < n; row++) {
+            minDay = Math.min(minDay, columns.getEpochDay(row));
+        }
+
+        // latest new row per (day, ZIP)
+        LatestRows latest = new LatestRows(1024);
+        for (int row = fromRow; row < n; row++) {
+            long key = (columns.getEpochDay(row) - minDay) * ZIP_SPACE + columns.getZipCode(row);
+            int current = latest.get(key);
+            if (current < 0 || columns.getEpochSecond(row) > columns.getEpochSecond(current)) {
+                latest.put(key, row);
+            }
+        }
+
+        // order the pairs by (day, ZIP)
+        long[] keys = latest.keys();
+        Arrays.sort(keys);
+
+        // the new days, each with its ZIPs and rows in ascending ZIP order
+        int m = keys.length;
+        long[] newDays = new long[m];
+        int[] newStarts = new int[m + 1];
+        int newDayCount = 0;
+        long previousDay = -1;
+        for (int e = 0; e < m; e++) {
+            long day = keys[e] / ZIP_SPACE;
+            if (day != previousDay) {
+                newDays[newDayCount] = minDay + day;
+                newStarts[newDayCount] = e;
+                newDayCount++;
+                previousDay = day;
+            }
+        }
+        newStarts[newDayCount] = m;
+
+        // merge the two sorted day lists
+        int total = days.length + newDayCount;
+        long[] mergedDays = new long[total];
+        int[][] mergedZips = new int[total][];
+        int[][] mergedRows = new int[total][];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < days.length || j < newDayCount) {
+            if (j == newDayCount || (i < days.length && days[i] < newDays[j])) {
+                mergedDays[count] = days[i];
+                mergedZips[count] = zipCodes[i];
+                mergedRows[count] = rows[i];
+                i++;
+            } else {
+                int start = newStarts[j];
+                int end = newStarts[j + 1];
+                int[] dayZips = new int[end - start];
+                int[] dayRows = new int[end - start];
+                for (int e = start; e < end; e++) {
+                    dayZips[e - start] = (int) (keys[e] % ZIP_SPACE);
+                    dayRows[e - start] = latest.get(keys[e]);
+                }
+                mergedDays[count] = newDays[j];
+                if (i < days.length && days[i] == newDays[j]) {
+                    mergeDay(columns, zipCodes[i], rows[i], dayZips, dayRows, count, mergedZips, mergedRows);
+                    i++;
+                } else {
+                    mergedZips[count] = dayZips;
+                    mergedRows[count] = dayRows;
+                }
+                j++;
+            }
+            count++;
+        }
+        return new CovidDateIndex(Arrays.copyOf(mergedDays, count), Arrays.copyOf(mergedZips, count),
+                Arrays.copyOf(mergedRows, count));
+    }
+
+    // Merges a day's existing entries with its new ones; for a ZIP in both, the later
+    // timestamp wins and a tie keeps the existing row, which comes first in the file.
+    private static void mergeDay(CovidColumns columns, int[] oldZips, int[] oldRows, int[] newZips, int[] newRows,
+                                 int slot, int[][] mergedZips, int[][] mergedRows) {
+        int[] zips = new int[oldZips.length + newZips.length];
+        int[] rows = new int[zips.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < oldZips.length || j < newZips.length) {
+            if (j == newZips.length || (i < oldZips.length && oldZips[i] < newZips[j])) {
+                zips[count] = oldZips[i];
+                rows[count++] = oldRows[i++];
+            } else if (i == oldZips.length || newZips[j] < oldZips[i]) {
+                zips[count] = newZips[j];
+                rows[count++] = newRows[j++];
+            } else {
+                boolean newer = columns.getEpochSecond(newRows[j]) > columns.getEpochSecond(oldRows[i]);
+                zips[count] = oldZips[i];
+                rows[count++] = newer ? newRows[j] : oldRows[i];
+                i++;
+                j++;
+            }
+        }
+        mergedZips[slot] = Arrays.copyOf(zips, count);
+        mergedRows[slot] = Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * @return the number of distinct days with data
+     */
+    public int getDayCount() {
+        return days.length;
+    }
+
+    /**
+     * @return the epoch day at the given position, in ascending order
+     */
+    public long getDay(int dayIndex) {
+        return days[dayIndex];
+    }
+
+    /**
+     * @return the position of the day, or -1 if there is no data for it
+     */
+    public int indexOf(long epochDay) {
+        int i = Arrays.binarySearch(days, epochDay);
+        return i >= 0 ? i : -1;
+    }
+
+    /**
+     * For range queries: the days in [from, to] are the positions
+     * {@code lowerBound(from)} up to (excluding) {@code lowerBound(to + 1)}.
+     *
+     * @return the position of the first day on or after the given day
+     */
+    public int lowerBound(long epochDay) {
+        int i = Arrays.binarySearch(days, epochDay);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    /**
+     * @return the number of ZIP codes with data on the day at the given position
+     */
+    public int getEntryCount(int dayIndex) {
+        return zipCodes[dayIndex].length;
+    }
+
+    /**
+     * @return the ZIP int code of an entry; a day's entries are in ascending ZIP order
+     */
+    public int getZipCode(int dayIndex, int entry) {
+        return zipCodes[dayIndex][entry];
+    }
+
+    /**
+     * @return the row in the indexed columns holding the ZIP's latest record for the day
+     */
+    public int getRow(int dayIndex, int entry) {
+        return rows[dayIndex][entry];
+    }
+
+    // Open-addressing map from a non-negative long key to a row number.
+    private static class LatestRows {
+        private long[] keys;
+        private int[] values;
+        private int size;
+
+        LatestRows(int capacity) {
+            keys = new long[capacity];
+            values = new int[capacity];
+            Arrays.fill(keys, -1);
+        }
+
+        private int slot(long key) {
+            int mask = keys.length - 1;
+            int i = (int) (key ^ (key >>> 29)) * 0x9E3779B9 & mask;
+            while (keys[i] != -1 && keys[i] != key) i = (i + 1) & mask;
+            return i;
+        }
+
+        int get(long key) {
+            int i = slot(key);
+            return keys[i] == key ? values[i] : -1;
+        }
+
+        void put(long key, int value) {
+            int i = slot(key);
+            if (keys[i] != key) {
+                if (2 * (size + 1) > keys.length) {
+                    grow();
+                    i = slot(key);
+                }
+                keys[i] = key;
+                size++;
+            }
+            values[i] = value;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            Arrays.fill(keys, -1);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != -1) {
+                    int j = slot(oldKeys[i]);
+                    keys[j] = oldKeys[i];
+                    values[j] = oldValues[i];
+                }
+            }
+        }
+
+        long[] keys() {
+            long[] result = new long[size];
+            int n = 0;
+            for (long key : keys) {
+                if (key != -1) result[n++] = key;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package edu.upenn.cit594.processor;
+
+import edu.upenn.cit594.util.CovidColumns;
+import edu.upenn.cit594.util.ZipDictionary;
+
+/**
+ * Daily COVID values per ZIP code laid out as dense [ZIP × day] matrices, for trend
+ * queries over ranges of days. The value of a ZIP on a day is that of its latest
+ * record on the day, as in {@link CovidDateIndex}. The day axis runs from the first
+ * to the last day with data, so a day's position is its distance from the first day.
+ *
+ * Each matrix holds prefix sums along the day axis, row by row: the sum of a metric
+ * or the number of days with a record over any range of days is the difference of
+ * two cells. A further matrix holds, for every ZIP and day, the latest day on or
+ * before it with a record. Range sums, rolling averages, single-day values and
+ * values as of a day are therefore all O(1) per ZIP.
+ *
+ * ZIPs are numbered by a {@link ZipDictionary}: the one given to {@link #build},
+ * extended with any ZIP of the COVID data it does not have yet.
+ */
+public class CovidTimeSeries {
+
+    /**
+     * The COVID fields tracked by the series.
+     */
+    public enum Metric {
+        PARTIAL,
+        FULL,
+        BOOSTERS,
+        POS,
+        HOSPITALIZED,
+        DEATHS;
+
+        int extract(CovidColumns columns, int row) {
+            switch (this) {
+                case PARTIAL: return columns.getPartialVaccinated(row);
+                case FULL: return columns.getFullVaccinated(row);
+                case BOOSTERS: return columns.getBoosters(row);
+                case POS: return columns.getPos(row);
+                case HOSPITALIZED: return columns.getHospitalized(row);
+                default: return columns.getDeaths(row);
+            }
+        }
+    }
+
+    private static final int METRICS = Metric.values().length;
+
+    private final ZipDictionary dictionary;
+    private final long firstDay;
+    private final int days;
+    // row length of the prefix matrices: one more than the number of days
+    private final int stride;
+    // [id * stride + d]: number of days before position d on which the ZIP has a record
+    private final int[] recordDays;
+    // [metric][id * stride + d]: sum of the metric over the days before position d
+    private final long[][] sums;
+    // [id * days + d]: latest position on or before d with a record, or -1
+    private final int[] latestDay;
+
+    private CovidTimeSeries(ZipDictionary dictionary, long firstDay, int days, int[] recordDays, long[][] sums,
+                            int[] latestDay) {
+        this.dictionary = dictionary;
+        this.firstDay = firstDay;
+        this.days = days;
+        this.stride = days + 1;
+        this.recordDays = recordDays;
+        this.sums = sums;
+        this.latestDay = latestDay;
+    }
+
+    /**
+     * Builds the series in one pass over the day index plus one prefix pass over
+     * each matrix. Time and memory are proportional to the number of ZIP codes times
+     * the number of days from the first to the last day with data.
+     *
+     * @param columns    the COVID data
+     * @param dateIndex  the day index over {@code columns}
+     * @param dictionary ZIP IDs to extend with the ZIPs of the COVID data
+     * @return the series
+     * @throws IllegalArgumentException if the matrices would exceed the maximum array size
+     */
+    public static CovidTimeSeries build(CovidColumns columns, CovidDateIndex dateIndex, ZipDictionary dictionary) {
+        ZipDictionary.Builder builder = dictionary.toBuilder();
+        for (int day = 0; day < dateIndex.getDayCount(); day++) {
+            for (int e = 0; e < dateIndex.getEntryCount(day); e++) {
+                builder.add(dateIndex.getZipCode(day, e));
+            }
+        }
+        ZipDictionary zips = builder.build();
+
+        int dayCount = dateIndex.getDayCount();
+        long firstDay = dayCount == 0 ? 0 : dateIndex.getDay(0);
+        long span = dayCount == 0 ? 0 : dateIndex.getDay(dayCount - 1) - firstDay + 1;
+        long cells = (long) zips.size() * (span + 1);
+        if (cells > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many ZIP codes and days for a time series: "
+                    + zips.size() + " x " + span);
+        }
+        int days = (int) span;
+        int stride = days + 1;
+        int[] recordDays = new int[(int) cells];
+        long[][] sums = new long[METRICS][(int) cells];
+        int[] latestDay = new int[zips.size() * days];
+
+        // the daily values go one cell to the right of their day, then become prefix sums
+        Metric[] metrics = Metric.values();
+        for (int day = 0; day < dayCount; day++) {
+            int d = (int) (dateIndex.getDay(day) - firstDay);
+            for (int e = 0; e < dateIndex.getEntryCount(day); e++) {
+                int cell = zips.idOf(dateIndex.getZipCode(day, e)) * stride + d + 1;
+                int row = dateIndex.getRow(day, e);
+                recordDays[cell] = 1;
+                for (Metric metric : metrics) {
+                    sums[metric.ordinal()][cell] = metric.extract(columns, row);
+                }
+            }
+        }
+        for (int id = 0; id < zips.size(); id++) {
+            int base = id * stride;
+            int latest = -1;
+            for (int d = 0; d < days; d++) {
+                if (recordDays[base + d + 1] != 0) latest = d;
+                latestDay[id * days + d] = latest;
+                recordDays[base + d + 1] += recordDays[base + d];
+            }
+            for (long[] sum : sums) {
+                for (int d = 1; d <= days; d++) {
+                    sum[base + d] += sum[base + d - 1];
+                }
+            }
+        }
+        return new CovidTimeSeries(zips, firstDay, days, recordDays, sums, latestDay);
+    }
+
+    /**
+     * @return the IDs of the ZIP codes in the series
+     */
+    public ZipDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return the first epoch day with data
+     */
+    public long getFirstDay() {
+        return firstDay;
+    }
+
+    /**
+     * @return the number of days from the first to the last day with data, inclusive
+     */
+    public int getDayCount() {
+        return days;
+    }
+
+    // number of positions before the epoch day, clamped to the day axis
+    private int prefixPosition(long epochDay) {
+        return (int) Math.max(0, Math.min(epochDay - firstDay, days));
+    }
+
+    private boolean isZip(int id) {
+        return id >= 0 && id < dictionary.size();
+    }
+
+    /**
+     * @return whether the ZIP has a record on the day
+     */
+    public boolean hasRecord(int id, long epochDay) {
+        return getRecordDays(id, epochDay, epochDay) > 0;
+    }
+
+    /**
+     * @return the value of the ZIP's latest record on the day, or 0 if it has none
+     */
+    public int getValue(int id, Metric metric, long epochDay) {
+        return (int) getSum(id, metric, epochDay, epochDay);
+    }
+
+    /**
+     * @return the number of days in [from, to] on which the ZIP has a record
+     */
+    public int getRecordDays(int id, long fromDay, long toDay) {
+        if (!isZip(id) || fromDay > toDay) return 0;
+        int base = id * stride;
+        return recordDays[base + prefixPosition(toDay + 1)] - recordDays[base + prefixPosition(fromDay)];
+    }
+
+    /**
+     * @return the sum of the ZIP's daily values of the metric over the days in [from, to]
+     */
+    public long getSum(int id, Metric metric, long fromDay, long toDay) {
+        if (!isZip(id) || fromDay > toDay) return 0;
+        long[] sum = sums[metric.ordinal()];
+        int base = id * stride;
+        return sum[base + prefixPosition(toDay + 1)] - sum[base + prefixPosition(fromDay)];
+    }
+
+    /**
+     * @return the latest epoch day on or before the given day on which the ZIP has a
+     *         record, or {@link Long#MIN_VALUE} if there is none
+     */
+    public long getLatestRecordDay(int id, long epochDay) {
+        if (!isZip(id) || epochDay < firstDay || days == 0) return Long.MIN_VALUE;
+        int d = latestDay[id * days + (int) Math.min(epochDay - firstDay, days - 1)];
+        return d < 0 ? Long.MIN_VALUE : firstDay + d;
+    }
+
+    /**
+     * @return the value of the ZIP's latest record on or before the day, or 0 if it
+     *         has none
+     */
+    public int getValueAsOf(int id, Metric metric, long epochDay) {
+        long day = getLatestRecordDay(id, epochDay);
+        return day == Long.MIN_VALUE ? 0 : getValue(id, metric, day);
+    }
+
+    /**
+     * Averages the ZIP's daily values over the window of days ending on the given
+     * day. Days without a record are left out rather than counted as 0.
+     *
+     * @param windowDays length of the window, at least 1
+     * @return the average, or NaN if the ZIP has no record in the window
+     */
+    public double getRollingAverage(int id, Metric metric, long epochDay, int windowDays) {
+        long fromDay = epochDay - windowDays + 1;
+        int count = getRecordDays(id, fromDay, epochDay);
+        return count == 0 ? Double.NaN : (double) getSum(id, metric, fromDay, epochDay) / count;
+    }
+}
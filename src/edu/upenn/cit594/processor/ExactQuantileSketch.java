@@ -0,0 +1,72 @@
+package edu.upenn.cit594.processor;
+
+import java.util.Arrays;
+
+/**
+ * A {@link QuantileSketch} that keeps every value, so its quantiles are exact. It
+ * takes memory proportional to the number of values and is meant for tests and for
+ * checking the accuracy of {@link KllQuantileSketch} on small data.
+ */
+public class ExactQuantileSketch implements QuantileSketch {
+
+    private double[] values = new double[16];
+    private int size;
+    // the values in order, or null if values were added since it was made
+    private volatile double[] sorted;
+
+    @Override
+    public void add(double value) {
+        if (Double.isNaN(value)) return;
+        if (size == values.length) values = Arrays.copyOf(values, size * 2);
+        values[size++] = value;
+        sorted = null;
+    }
+
+    @Override
+    public void merge(QuantileSketch other) {
+        if (!(other instanceof ExactQuantileSketch)) {
+            throw new IllegalArgumentException("Can only merge an ExactQuantileSketch");
+        }
+        ExactQuantileSketch sketch = (ExactQuantileSketch) other;
+        int otherSize = sketch.size;
+        if (size + otherSize > values.length) values = Arrays.copyOf(values, Math.max(size + otherSize, size * 2));
+        System.arraycopy(sketch.values, 0, values, size, otherSize);
+        size += otherSize;
+        sorted = null;
+    }
+
+    @Override
+    public long getCount() {
+        return size;
+    }
+
+    @Override
+    public double getMin() {
+        return size == 0 ? Double.NaN : sorted()[0];
+    }
+
+    @Override
+    public double getMax() {
+        return size == 0 ? Double.NaN : sorted()[size - 1];
+    }
+
+    @Override
+    public double getQuantile(double quantile) {
+        if (!(quantile >= 0 && quantile <= 1)) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1: " + quantile);
+        }
+        if (size == 0) return Double.NaN;
+        int rank = (int) Math.max(1, Math.ceil(quantile * size));
+        return sorted()[rank - 1];
+    }
+
+    private double[] sorted() {
+        double[] result = sorted;
+        if (result == null) {
+            result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+            sorted = result;
+        }
+        return result;
+    }
+}
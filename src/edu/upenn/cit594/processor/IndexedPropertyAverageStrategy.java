@@ -0,0 +1,27 @@
+package edu.upenn.cit594.processor;
+
+import edu.upenn.cit594.util.PropertyRecord;
+import java.util.List;
+
+/**
+ * Average strategy that answers from a prebuilt {@link PropertyIndex} instead of
+ * filtering the property list on every call.
+ */
+public class IndexedPropertyAverageStrategy implements PropertyAverageStrategy {
+
+    private final PropertyIndex index;
+    private final PropertyIndex.Metric metric;
+
+    public IndexedPropertyAverageStrategy(PropertyIndex index, PropertyIndex.Metric metric) {
+        this.index = index;
+        this.metric = metric;
+    }
+
+    /**
+     * The properties are ignored here; they were already aggregated when the index was built.
+     */
+    @Override
+    public int computeAverage(String zip, List<PropertyRecord> properties) {
+        return index.getAverage(zip, metric);
+    }
+}
@@ -0,0 +1,263 @@
+package edu.upenn.cit594.processor;
+
+import java.util.Arrays;
+
+/**
+ * An approximate {@link QuantileSketch} in bounded memory, after the KLL sketch of
+ * Karnin, Lang and Liberty. Values are kept in levels, a value on level h standing
+ * for 2^h of the values added. When the sketch is full, the lowest level over its
+ * capacity is compacted: it is sorted and every other value, starting at a random
+ * one of the first two, moves up a level, where it counts twice. Each level holds
+ * about 2/3 of the values of the level above it, the top level holding about k.
+ *
+ * Memory: about 3k retained values plus one small array per level, however many
+ * values are added; there are about log2(n / k) levels for n values.
+ *
+ * Error: the rank of a returned value differs from the requested rank by at most
+ * about {@link #getNormalizedRankError} times the number of values, with 99%
+ * confidence. For the default k = 200 that is about 1.3%, so a median lies between
+ * the 48.7th and the 51.3rd percentile of the data. The sketch is exact until the
+ * first compaction, that is for fewer than k values.
+ *
+ * The random choices come from a fixed seed, so the same values added in the same
+ * order always give the same sketch.
+ */
+public class KllQuantileSketch implements QuantileSketch {
+
+    /** Accuracy parameter used when none is given: about 1.3% rank error. */
+    public static final int DEFAULT_K = 200;
+
+    private static final double CAPACITY_RATIO = 2.0 / 3.0;
+    private static final int MIN_CAPACITY = 2;
+
+    private final int k;
+    // levels[h][0 .. sizes[h]) are the values of weight 2^h, in no particular order
+    private double[][] levels;
+    private int[] sizes;
+    private int height;
+    private int retained;
+    // retained values at which the sketch compacts: the sum of the level capacities
+    private int maxRetained;
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    private long random = 0x9E3779B97F4A7C15L;
+    // the retained values in order with their cumulative weights, or null if stale
+    private volatile SortedView view;
+
+    public KllQuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * @param k capacity of the top level; higher is more accurate and takes
+     *          proportionally more memory
+     * @throws IllegalArgumentException if k is less than 8
+     */
+    public KllQuantileSketch(int k) {
+        if (k < 8) throw new IllegalArgumentException("k must be at least 8: " + k);
+        this.k = k;
+        this.levels = new double[0][];
+        this.sizes = new int[0];
+        grow();
+    }
+
+    /**
+     * @return the rank error, as a fraction of the number of values, that a quantile
+     *         returned by a sketch with the given k stays within with 99% confidence.
+     *         This is the empirical fit published for KLL sketches by Apache DataSketches.
+     */
+    public static double getNormalizedRankError(int k) {
+        return 2.296 / Math.pow(k, 0.9723);
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * @return the number of values the sketch currently holds
+     */
+    public int getRetained() {
+        return retained;
+    }
+
+    @Override
+    public void add(double value) {
+        if (Double.isNaN(value)) return;
+        if (count == 0 || value < min) min = value;
+        if (count == 0 || value > max) max = value;
+        count++;
+        append(0, value);
+        view = null;
+        if (retained >= maxRetained) compress();
+    }
+
+    @Override
+    public void merge(QuantileSketch other) {
+        if (!(other instanceof KllQuantileSketch) || ((KllQuantileSketch) other).k != k) {
+            throw new IllegalArgumentException("Can only merge a KllQuantileSketch with k = " + k);
+        }
+        KllQuantileSketch sketch = (KllQuantileSketch) other;
+        if (sketch.count == 0) return;
+        long otherCount = sketch.count;
+        int otherHeight = sketch.height;
+        while (height < otherHeight) grow();
+        for (int h = 0; h < otherHeight; h++) {
+            // read the size first, in case the other sketch is this one
+            int n = sketch.sizes[h];
+            for (int i = 0; i < n; i++) {
+                append(h, sketch.levels[h][i]);
+            }
+        }
+        if (count == 0 || sketch.min < min) min = sketch.min;
+        if (count == 0 || sketch.max > max) max = sketch.max;
+        count += otherCount;
+        view = null;
+        compress();
+    }
+
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public double getMin() {
+        return min;
+    }
+
+    @Override
+    public double getMax() {
+        return max;
+    }
+
+    @Override
+    public double getQuantile(double quantile) {
+        if (!(quantile >= 0 && quantile <= 1)) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1: " + quantile);
+        }
+        if (count == 0) return Double.NaN;
+        if (quantile == 0) return min;
+        if (quantile == 1) return max;
+        SortedView sorted = view;
+        if (sorted == null) {
+            sorted = new SortedView(this);
+            view = sorted;
+        }
+        return sorted.valueAtRank((long) Math.ceil(quantile * count));
+    }
+
+    // capacity of a level: k at the top, shrinking by the ratio for each level below
+    private int capacity(int h) {
+        int depth = height - 1 - h;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_RATIO, depth)));
+    }
+
+    private void grow() {
+        height++;
+        levels = Arrays.copyOf(levels, height);
+        sizes = Arrays.copyOf(sizes, height);
+        levels[height - 1] = new double[MIN_CAPACITY];
+        maxRetained = 0;
+        for (int h = 0; h < height; h++) {
+            maxRetained += capacity(h);
+        }
+    }
+
+    private void append(int h, double value) {
+        if (sizes[h] == levels[h].length) levels[h] = Arrays.copyOf(levels[h], levels[h].length * 2);
+        levels[h][sizes[h]++] = value;
+        retained++;
+    }
+
+    private void compress() {
+        while (retained >= maxRetained) {
+            // the levels cannot all be under capacity while the sketch is full
+            for (int h = 0; h < height; h++) {
+                if (sizes[h] >= capacity(h)) {
+                    if (h + 1 == height) grow();
+                    compact(h);
+                    break;
+                }
+            }
+        }
+    }
+
+    // moves every other value of the level, after sorting, one level up; with an odd
+    // number of values the largest stays behind
+    private void compact(int h) {
+        double[] values = levels[h];
+        int n = sizes[h];
+        int left = n % 2;
+        Arrays.sort(values, 0, n);
+        for (int i = nextBit(); i < n - left; i += 2) {
+            append(h + 1, values[i]);
+        }
+        retained -= n - left;
+        int capacity = capacity(h);
+        // lower levels shrink as the sketch grows, so give back memory they no longer need
+        if (values.length > 2 * capacity) levels[h] = Arrays.copyOf(values, capacity);
+        if (left == 1) levels[h][0] = values[n - 1];
+        sizes[h] = left;
+    }
+
+    private int nextBit() {
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        return (int) (random >>> 63);
+    }
+
+    // The retained values sorted, with the total weight of the values up to each one.
+    private static final class SortedView {
+        private final double[] values;
+        private final long[] cumulativeWeights;
+
+        SortedView(KllQuantileSketch sketch) {
+            int n = sketch.retained;
+            double[] values = new double[n];
+            long[] weights = new long[n];
+            int size = 0;
+            // merge the sorted levels from the top down into the view
+            for (int h = sketch.height - 1; h >= 0; h--) {
+                int levelSize = sketch.sizes[h];
+                double[] level = Arrays.copyOf(sketch.levels[h], levelSize);
+                Arrays.sort(level);
+                long weight = 1L << h;
+                int i = size - 1;
+                int j = levelSize - 1;
+                for (int out = size + levelSize - 1; j >= 0; out--) {
+                    if (i >= 0 && values[i] > level[j]) {
+                        values[out] = values[i];
+                        weights[out] = weights[i--];
+                    } else {
+                        values[out] = level[j--];
+                        weights[out] = weight;
+                    }
+                }
+                size += levelSize;
+            }
+            for (int i = 1; i < n; i++) {
+                weights[i] += weights[i - 1];
+            }
+            this.values = values;
+            this.cumulativeWeights = weights;
+        }
+
+        // the first value whose cumulative weight reaches the rank
+        double valueAtRank(long rank) {
+            int low = 0;
+            int high = values.length - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cumulativeWeights[mid] < rank) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return values[low];
+        }
+    }
+}
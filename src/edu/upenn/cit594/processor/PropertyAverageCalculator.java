@@ -2,32 +2,64 @@ package edu.upenn.cit594.processor;
 
 import edu.upenn.cit594.util.CovidRecord;
 import edu.upenn.cit594.util.PropertyRecord;
+import edu.upenn.cit594.util.ResultCache;
+import edu.upenn.cit594.util.UnboundedResultCache;
 import java.util.*;
 import java.util.function.ToDoubleFunction;
 
+/**
+ * Computes and memoizes per-ZIP averages with a pluggable strategy. {@link #calculate}
+ * is safe to call from several threads; the strategy should be set before the
+ * calculator is shared.
+ */
 public class PropertyAverageCalculator {
-    private PropertyAverageStrategy strategy;
-    private List<PropertyRecord> propertyRecords;
+    private volatile PropertyAverageStrategy strategy;
+    private final List<PropertyRecord> propertyRecords;
 
-    private final Map<String, Integer> memoizedResults = new HashMap<>();
-    private ToDoubleFunction<PropertyRecord> currentExtractor;
+    private final ResultCache<String, Integer> memoizedResults;
+    private volatile ToDoubleFunction<PropertyRecord> currentExtractor;
 
     public PropertyAverageCalculator(List<PropertyRecord> propertyRecords) {
+        this(propertyRecords, new UnboundedResultCache<>());
+    }
+
+    /**
+     * @param propertyRecords the records to average
+     * @param memoizedResults where results are memoized, keyed by ZIP code
+     */
+    public PropertyAverageCalculator(List<PropertyRecord> propertyRecords, ResultCache<String, Integer> memoizedResults) {
         this.propertyRecords = propertyRecords;
+        this.memoizedResults = memoizedResults;
     }
 
-    public void setStrategy(PropertyAverageStrategy strategy, ToDoubleFunction<PropertyRecord> extractor) {
+    public synchronized void setStrategy(PropertyAverageStrategy strategy, ToDoubleFunction<PropertyRecord> extractor) {
         this.strategy = strategy;
         this.currentExtractor = extractor;
         memoizedResults.clear();
     }
 
     public int calculate(String zip) {
-        if (strategy == null) throw new IllegalStateException("Strategy not set.");
-        if (memoizedResults.containsKey(zip)) return memoizedResults.get(zip);
-        int result = strategy.computeAverage(zip, propertyRecords);
-        memoizedResults.put(zip, result);
-        return result;
+        PropertyAverageStrategy current = strategy;
+        if (current == null) throw new IllegalStateException("Strategy not set.");
+        return memoizedResults.get(zip, z -> current.computeAverage(z, propertyRecords));
+    }
+
+    /**
+     * Aggregates the given metrics for every ZIP code through the strategy, in one
+     * fused pass over the records unless the strategy has them already. The result is
+     * not memoized.
+     *
+     * @param extractors the metrics, numbered by their position in the list
+     * @return count, sum, mean, variance, min and max of each metric per ZIP code
+     */
+    public PropertyStatistics computeStatistics(List<? extends ToDoubleFunction<PropertyRecord>> extractors) {
+        PropertyAverageStrategy current = strategy;
+        if (current == null) throw new IllegalStateException("Strategy not set.");
+        return current.computeStatistics(propertyRecords, extractors);
+    }
+
+    public ResultCache<String, Integer> getResultCache() {
+        return memoizedResults;
     }
 
     public static PropertyAverageCalculator createWithMarketValue(List<PropertyRecord> propertyRecords) {
@@ -41,4 +73,50 @@ public class PropertyAverageCalculator {
         calc.setStrategy(new GenericPropertyAverageStrategy(PropertyRecord::getTotalLivableArea), PropertyRecord::getTotalLivableArea);
         return calc;
     }
-}
\ No newline at end of file
+
+    public static PropertyAverageCalculator createWithMarketValue(List<PropertyRecord> propertyRecords, PropertyIndex index,
+                                                                  ResultCache<String, Integer> cache) {
+        PropertyAverageCalculator calc = new PropertyAverageCalculator(propertyRecords, cache);
+        calc.setStrategy(new IndexedPropertyAverageStrategy(index, PropertyIndex.Metric.MARKET_VALUE), PropertyRecord::getMarketValue);
+        return calc;
+    }
+
+    public static PropertyAverageCalculator createWithLivableArea(List<PropertyRecord> propertyRecords, PropertyIndex index,
+                                                                  ResultCache<String, Integer> cache) {
+        PropertyAverageCalculator calc = new PropertyAverageCalculator(propertyRecords, cache);
+        calc.setStrategy(new IndexedPropertyAverageStrategy(index, PropertyIndex.Metric.LIVABLE_AREA), PropertyRecord::getTotalLivableArea);
+        return calc;
+    }
+
+    /**
+     * @param quantile between 0 and 1, such as {@link QuantilePropertyAverageStrategy#MEDIAN}
+     * @return a calculator of the given quantile of the metric instead of its mean
+     */
+    public static PropertyAverageCalculator createWithQuantile(List<PropertyRecord> propertyRecords,
+                                                               PropertyQuantileIndex index, PropertyIndex.Metric metric,
+                                                               double quantile, ResultCache<String, Integer> cache) {
+        PropertyAverageCalculator calc = new PropertyAverageCalculator(propertyRecords, cache);
+        calc.setStrategy(new QuantilePropertyAverageStrategy(index, metric, quantile),
+                metric == PropertyIndex.Metric.MARKET_VALUE ? PropertyRecord::getMarketValue : PropertyRecord::getTotalLivableArea);
+        return calc;
+    }
+
+    /**
+     * Creates one calculator per metric, all answering from statistics built in a
+     * single pass over the records, so another metric adds no scan.
+     *
+     * @param extractors the metrics
+     * @return the calculators, in the order of the extractors
+     */
+    public static List<PropertyAverageCalculator> createWithMetrics(List<PropertyRecord> propertyRecords,
+                                                                    List<? extends ToDoubleFunction<PropertyRecord>> extractors) {
+        PropertyStatistics statistics = PropertyStatistics.build(propertyRecords, extractors);
+        List<PropertyAverageCalculator> calculators = new ArrayList<>();
+        for (int m = 0; m < extractors.size(); m++) {
+            PropertyAverageCalculator calc = new PropertyAverageCalculator(propertyRecords);
+            calc.setStrategy(new StatisticsPropertyAverageStrategy(statistics, m), statistics.getExtractor(m));
+            calculators.add(calc);
+        }
+        return calculators;
+    }
+}
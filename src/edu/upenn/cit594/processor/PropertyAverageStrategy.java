@@ -2,7 +2,21 @@ package edu.upenn.cit594.processor;
 
 import edu.upenn.cit594.util.PropertyRecord;
 import java.util.List;
+import java.util.function.ToDoubleFunction;
 
 public interface PropertyAverageStrategy {
     int computeAverage(String zip, List<PropertyRecord> properties);
-}
\ No newline at end of file
+
+    /**
+     * Aggregates any number of metrics for every ZIP code at once. By default this is
+     * one fused pass over the properties, however many extractors are given.
+     *
+     * @param properties the properties to aggregate
+     * @param extractors the metrics, numbered by their position in the list
+     * @return count, sum, mean, variance, min and max of each metric per ZIP code
+     */
+    default PropertyStatistics computeStatistics(List<PropertyRecord> properties,
+                                                 List<? extends ToDoubleFunction<PropertyRecord>> extractors) {
+        return PropertyStatistics.build(properties, extractors);
+    }
+}
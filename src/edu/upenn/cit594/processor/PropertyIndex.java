@@ -0,0 +1,208 @@
+package edu.upenn.cit594.processor;
+
+import edu.upenn.cit594.util.PropertyColumns;
+import edu.upenn.cit594.util.PropertyRecord;
+import edu.upenn.cit594.util.ZipDictionary;
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Per-ZIP aggregates (count, sum, min, max, variance) of the property metrics, built in a
+ * single pass over the property records. Once built, every average or total
+ * for a ZIP code is a constant-time array lookup instead of a scan. The aggregates
+ * are those of a {@link PropertyStatistics} over the {@link Metric}s, stored in
+ * arrays indexed by the ZIP's {@link ZipDictionary} ID, so they take space only for
+ * ZIPs that occur in the data; a new metric only needs a new constant.
+ */
+public class PropertyIndex {
+
+    /**
+     * The property metrics tracked by the index, numbered in the statistics by ordinal.
+     */
+    public enum Metric {
+        MARKET_VALUE(PropertyRecord::getMarketValue),
+        LIVABLE_AREA(PropertyRecord::getTotalLivableArea);
+
+        private final ToDoubleFunction<PropertyRecord> extractor;
+
+        Metric(ToDoubleFunction<PropertyRecord> extractor) {
+            this.extractor = extractor;
+        }
+
+        /**
+         * @return the function that reads the metric from a record
+         */
+        public ToDoubleFunction<PropertyRecord> getExtractor() {
+            return extractor;
+        }
+
+        double extract(PropertyColumns columns, int row) {
+            return this == MARKET_VALUE ? columns.getMarketValue(row) : columns.getLivableArea(row);
+        }
+
+        // The metric whose extractor this is, or null for any other function.
+        static Metric of(ToDoubleFunction<PropertyRecord> extractor) {
+            for (Metric metric : values()) {
+                if (metric.extractor == extractor) return metric;
+            }
+            return null;
+        }
+    }
+
+    private static final List<ToDoubleFunction<PropertyRecord>> EXTRACTORS;
+
+    static {
+        List<ToDoubleFunction<PropertyRecord>> extractors = new ArrayList<>();
+        for (Metric metric : Metric.values()) {
+            extractors.add(metric.getExtractor());
+        }
+        EXTRACTORS = Collections.unmodifiableList(extractors);
+    }
+
+    private final ZipDictionary dictionary;
+    private final PropertyStatistics statistics;
+
+    private PropertyIndex(PropertyStatistics statistics) {
+        this.dictionary = statistics.getDictionary();
+        this.statistics = statistics;
+    }
+
+    /**
+     * Builds the index with one pass over the given records.
+     *
+     * @param records the property records to aggregate
+     * @return the populated index
+     */
+    public static PropertyIndex build(List<PropertyRecord> records) {
+        return build(PropertyColumns.from(records));
+    }
+
+    /**
+     * Builds the index with one pass over the given columns, numbering their ZIP
+     * codes with a dictionary of its own.
+     *
+     * @param columns the property data to aggregate
+     * @return the populated index
+     */
+    public static PropertyIndex build(PropertyColumns columns) {
+        ZipDictionary.Builder builder = ZipDictionary.builder();
+        for (int row = 0; row < columns.size(); row++) {
+            builder.add(columns.getZipCode(row));
+        }
+        return build(columns, builder.build());
+    }
+
+    /**
+     * Builds the index with one pass over the given columns, with the aggregates
+     * stored by the ZIP IDs of the given dictionary.
+     *
+     * @param columns    the property data to aggregate
+     * @param dictionary IDs of the ZIP codes; rows of ZIPs not in it are ignored
+     * @return the populated index
+     */
+    public static PropertyIndex build(PropertyColumns columns, ZipDictionary dictionary) {
+        return new PropertyIndex(PropertyStatistics.build(columns, dictionary, EXTRACTORS));
+    }
+
+    private int idOf(String zip) {
+        return dictionary.idOf(zip);
+    }
+
+    /**
+     * @return the dictionary whose IDs the {@code ById} methods take
+     */
+    public ZipDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return the statistics behind the index, with each {@link Metric} numbered by
+     *         its ordinal
+     */
+    public PropertyStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @param zip the 5-digit ZIP code
+     * @return the number of properties recorded for the ZIP code
+     */
+    public int getCount(String zip) {
+        return getCountById(idOf(zip));
+    }
+
+    /**
+     * Same as {@link #getCount(String)} for a ZIP ID of the index's dictionary.
+     */
+    public int getCountById(int id) {
+        return statistics.getCountById(id);
+    }
+
+    /**
+     * @return the total of the metric over the ZIP's properties, or 0 if there are none;
+     *         the same value as {@link java.util.stream.DoubleStream#sum()} over them
+     */
+    public double getSum(String zip, Metric metric) {
+        return getSumById(idOf(zip), metric);
+    }
+
+    /**
+     * Same as {@link #getSum(String, Metric)} for a ZIP ID of the index's dictionary.
+     */
+    public double getSumById(int id, Metric metric) {
+        return statistics.getSumById(id, metric.ordinal());
+    }
+
+    /**
+     * @return the smallest value of the metric in the ZIP, or 0 if there are no properties
+     */
+    public double getMin(String zip, Metric metric) {
+        int id = idOf(zip);
+        return getCountById(id) == 0 ? 0 : statistics.getMinById(id, metric.ordinal());
+    }
+
+    /**
+     * @return the largest value of the metric in the ZIP, or 0 if there are no properties
+     */
+    public double getMax(String zip, Metric metric) {
+        int id = idOf(zip);
+        return getCountById(id) == 0 ? 0 : statistics.getMaxById(id, metric.ordinal());
+    }
+
+    /**
+     * Returns the truncated average of the metric, matching the integer results
+     * produced by {@link GenericPropertyAverageStrategy}. Both divide the same
+     * compensated sum, so they agree even where the mean is exactly an integer and
+     * a plain running sum would fall just below it.
+     *
+     * @return the average value, or 0 if the ZIP has no properties
+     */
+    public int getAverage(String zip, Metric metric) {
+        return getAverageById(idOf(zip), metric);
+    }
+
+    /**
+     * Same as {@link #getAverage(String, Metric)} for a ZIP ID of the index's dictionary.
+     */
+    public int getAverageById(int id, Metric metric) {
+        int count = getCountById(id);
+        if (count == 0) return 0;
+        return (int) (statistics.getSumById(id, metric.ordinal()) / count);
+    }
+
+    /**
+     * @return the variance of the metric over the ZIP's properties, or 0 if there are none
+     * @see PropertyStatistics#getVariance
+     */
+    public double getVariance(String zip, Metric metric) {
+        int id = idOf(zip);
+        return getCountById(id) == 0 ? 0 : statistics.getVarianceById(id, metric.ordinal());
+    }
+
+    /**
+     * @return the ZIP codes that have at least one property
+     */
+    public Set<String> getZipCodes() {
+        return statistics.getZipCodes();
+    }
+}
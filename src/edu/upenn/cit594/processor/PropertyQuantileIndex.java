@@ -0,0 +1,117 @@
+package edu.upenn.cit594.processor;
+
+import edu.upenn.cit594.util.PropertyColumns;
+import edu.upenn.cit594.util.PropertyRecord;
+import edu.upenn.cit594.util.ZipDictionary;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Per-ZIP distributions of the property metrics, such as the median or 90th
+ * percentile market value of a ZIP code. Like {@link PropertyIndex} it is built in a
+ * single pass over the property data, with one {@link QuantileSketch} per metric and
+ * ZIP, stored by ZIP ID. With the default {@link KllQuantileSketch} the memory per
+ * ZIP is bounded however many properties it has, and quantiles carry that sketch's
+ * rank error; with {@link ExactQuantileSketch} they are exact.
+ */
+public class PropertyQuantileIndex {
+
+    private final ZipDictionary dictionary;
+    // [metric][id]; null where the ZIP has no properties
+    private final QuantileSketch[][] sketches;
+
+    private PropertyQuantileIndex(ZipDictionary dictionary, QuantileSketch[][] sketches) {
+        this.dictionary = dictionary;
+        this.sketches = sketches;
+    }
+
+    /**
+     * Builds the index with KLL sketches of the default accuracy.
+     *
+     * @see #build(PropertyColumns, ZipDictionary, Supplier)
+     */
+    public static PropertyQuantileIndex build(PropertyColumns columns, ZipDictionary dictionary) {
+        return build(columns, dictionary, KllQuantileSketch::new);
+    }
+
+    /**
+     * Builds the index with one pass over the given records, numbering their ZIP codes
+     * with a dictionary of its own.
+     *
+     * @param records  the property records to summarize
+     * @param sketches creates an empty sketch for each ZIP and metric
+     * @return the populated index
+     */
+    public static PropertyQuantileIndex build(List<PropertyRecord> records, Supplier<? extends QuantileSketch> sketches) {
+        PropertyColumns columns = PropertyColumns.from(records);
+        ZipDictionary.Builder builder = ZipDictionary.builder();
+        for (int row = 0; row < columns.size(); row++) {
+            builder.add(columns.getZipCode(row));
+        }
+        return build(columns, builder.build(), sketches);
+    }
+
+    /**
+     * Builds the index with one pass over the given columns, with the sketches stored
+     * by the ZIP IDs of the given dictionary.
+     *
+     * @param columns    the property data to summarize
+     * @param dictionary IDs of the ZIP codes; rows of ZIPs not in it are ignored
+     * @param sketches   creates an empty sketch for each ZIP and metric
+     * @return the populated index
+     */
+    public static PropertyQuantileIndex build(PropertyColumns columns, ZipDictionary dictionary,
+                                              Supplier<? extends QuantileSketch> sketches) {
+        PropertyIndex.Metric[] metrics = PropertyIndex.Metric.values();
+        QuantileSketch[][] result = new QuantileSketch[metrics.length][dictionary.size()];
+        for (int row = 0; row < columns.size(); row++) {
+            int id = dictionary.idOf(columns.getZipCode(row));
+            if (id < 0) continue;
+            for (PropertyIndex.Metric metric : metrics) {
+                QuantileSketch[] byId = result[metric.ordinal()];
+                if (byId[id] == null) byId[id] = sketches.get();
+                byId[id].add(metric.extract(columns, row));
+            }
+        }
+        return new PropertyQuantileIndex(dictionary, result);
+    }
+
+    /**
+     * @return the dictionary whose IDs the {@code ById} methods take
+     */
+    public ZipDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return the sketch of the metric's values in the ZIP, or null if the ZIP has no
+     *         properties; it must not be modified
+     */
+    public QuantileSketch getSketchById(int id, PropertyIndex.Metric metric) {
+        QuantileSketch[] byId = sketches[metric.ordinal()];
+        return id < 0 || id >= byId.length ? null : byId[id];
+    }
+
+    /**
+     * @param zip      the 5-digit ZIP code
+     * @param quantile between 0 and 1, such as 0.5 for the median
+     * @return the metric's value at the quantile among the ZIP's properties, or NaN
+     *         if the ZIP has none
+     * @throws IllegalArgumentException if the quantile is not between 0 and 1
+     */
+    public double getQuantile(String zip, PropertyIndex.Metric metric, double quantile) {
+        return getQuantileById(dictionary.idOf(zip), metric, quantile);
+    }
+
+    /**
+     * Same as {@link #getQuantile(String, PropertyIndex.Metric, double)} for a ZIP ID of
+     * the index's dictionary.
+     */
+    public double getQuantileById(int id, PropertyIndex.Metric metric, double quantile) {
+        if (!(quantile >= 0 && quantile <= 1)) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1: " + quantile);
+        }
+        QuantileSketch sketch = getSketchById(id, metric);
+        return sketch == null ? Double.NaN : sketch.getQuantile(quantile);
+    }
+}
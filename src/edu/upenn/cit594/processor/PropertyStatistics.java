@@ -0,0 +1,364 @@
+package edu.upenn.cit594.processor;
+
+import edu.upenn.cit594.util.PropertyColumns;
+import edu.upenn.cit594.util.PropertyRecord;
+import edu.upenn.cit594.util.ZipCodes;
+import edu.upenn.cit594.util.ZipDictionary;
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Per-ZIP count, sum, mean, variance, min and max of any number of property
+ * metrics, each given as an extractor, all computed in one fused pass over the
+ * property data: each row is read once and fed to every extractor, so another
+ * metric adds work per row but never another scan. The extractor of a built-in
+ * {@link PropertyIndex.Metric} is recognized and read straight from its column.
+ *
+ * The results are stored as a struct of arrays: one array per statistic and
+ * metric, indexed by the ZIP's {@link ZipDictionary} ID. Metrics are numbered by
+ * their position in the list of extractors. Sums are compensated (Kahan) sums taken
+ * with the same steps as {@link java.util.stream.DoubleStream#sum()}, so means and the
+ * averages truncated from them match those of a stream over the ZIP's records.
+ * Variances are computed from sums of squares taken relative to the ZIP's first
+ * value rather than to 0, which keeps them accurate when the values are large
+ * compared to their spread, such as market values, without a division per value.
+ */
+public final class PropertyStatistics {
+
+    private final ZipDictionary dictionary;
+    private final List<ToDoubleFunction<PropertyRecord>> extractors;
+    // [id]: number of properties of the ZIP
+    private final int[] counts;
+    // [metric][id]: compensated sum, its compensation, and the plain sum for when the
+    // compensation breaks down on infinite values
+    private final double[][] sums;
+    private final double[][] compensations;
+    private final double[][] simpleSums;
+    // the ZIP's first value, and the sums of the differences from it and of their squares
+    private final double[][] shifts;
+    private final double[][] shiftedSums;
+    private final double[][] shiftedSquares;
+    private final double[][] mins;
+    private final double[][] maxs;
+
+    private PropertyStatistics(ZipDictionary dictionary, List<ToDoubleFunction<PropertyRecord>> extractors,
+                               Accumulator accumulator) {
+        this.dictionary = dictionary;
+        this.extractors = extractors;
+        this.counts = accumulator.counts;
+        this.sums = accumulator.sums;
+        this.compensations = accumulator.compensations;
+        this.simpleSums = accumulator.simpleSums;
+        this.shifts = accumulator.shifts;
+        this.shiftedSums = accumulator.shiftedSums;
+        this.shiftedSquares = accumulator.shiftedSquares;
+        this.mins = accumulator.mins;
+        this.maxs = accumulator.maxs;
+    }
+
+    /**
+     * Aggregates the metrics with one pass over the given records. The ZIP codes are
+     * numbered as they are first seen and renumbered by a dictionary of their own at
+     * the end.
+     *
+     * @param records    the property records to aggregate
+     * @param extractors the metrics, in the order they are numbered
+     * @return the statistics
+     */
+    public static PropertyStatistics build(List<PropertyRecord> records,
+                                           List<? extends ToDoubleFunction<PropertyRecord>> extractors) {
+        List<ToDoubleFunction<PropertyRecord>> metrics = copy(extractors);
+        ToDoubleFunction<PropertyRecord>[] extractorArray = toArray(metrics);
+        Accumulator accumulator = new Accumulator(metrics.size(), 16);
+        // slot + 1 of each int code, so that 0 means not seen yet
+        int[] slotOfCode = new int[ZipCodes.CODE_SPACE];
+        int[] codes = new int[16];
+        int slots = 0;
+        for (PropertyRecord record : records) {
+            int code = ZipCodes.toCode(record.getZipCode());
+            if (code < 0) continue;
+            int slot = slotOfCode[code] - 1;
+            if (slot < 0) {
+                if (slots == codes.length) {
+                    codes = Arrays.copyOf(codes, slots * 2);
+                    accumulator.grow(slots * 2);
+                }
+                codes[slots] = code;
+                slot = slots++;
+                slotOfCode[code] = slots;
+            }
+            boolean first = accumulator.counts[slot]++ == 0;
+            for (int m = 0; m < extractorArray.length; m++) {
+                accumulator.add(m, slot, extractorArray[m].applyAsDouble(record), first);
+            }
+        }
+
+        ZipDictionary.Builder builder = ZipDictionary.builder();
+        for (int slot = 0; slot < slots; slot++) {
+            builder.add(codes[slot]);
+        }
+        ZipDictionary dictionary = builder.build();
+        int[] slotOfId = new int[slots];
+        for (int slot = 0; slot < slots; slot++) {
+            slotOfId[dictionary.idOf(codes[slot])] = slot;
+        }
+        return new PropertyStatistics(dictionary, metrics, accumulator.renumber(slotOfId));
+    }
+
+    /**
+     * Aggregates the metrics with one pass over the given columns, with the results
+     * stored by the ZIP IDs of the given dictionary. The extractors of the built-in
+     * {@link PropertyIndex.Metric}s read their columns directly; if there are any
+     * others, each row is materialized as one {@link PropertyRecord} that they share.
+     *
+     * @param columns    the property data to aggregate
+     * @param dictionary IDs of the ZIP codes; rows of ZIPs not in it are ignored
+     * @param extractors the metrics, in the order they are numbered
+     * @return the statistics
+     */
+    public static PropertyStatistics build(PropertyColumns columns, ZipDictionary dictionary,
+                                           List<? extends ToDoubleFunction<PropertyRecord>> extractors) {
+        List<ToDoubleFunction<PropertyRecord>> metrics = copy(extractors);
+        ToDoubleFunction<PropertyRecord>[] extractorArray = toArray(metrics);
+        // the built-in metric behind each extractor, or null for the caller's own
+        PropertyIndex.Metric[] columnMetrics = new PropertyIndex.Metric[metrics.size()];
+        boolean needsRecords = false;
+        for (int m = 0; m < columnMetrics.length; m++) {
+            columnMetrics[m] = PropertyIndex.Metric.of(extractorArray[m]);
+            needsRecords |= columnMetrics[m] == null;
+        }
+
+        Accumulator accumulator = new Accumulator(metrics.size(), dictionary.size());
+        for (int row = 0; row < columns.size(); row++) {
+            int id = dictionary.idOf(columns.getZipCode(row));
+            if (id < 0) continue;
+            boolean first = accumulator.counts[id]++ == 0;
+            // the dictionary's String saves formatting the ZIP code for every row
+            PropertyRecord record = needsRecords ? new PropertyRecord(dictionary.getZip(id),
+                    columns.getMarketValue(row), columns.getLivableArea(row)) : null;
+            for (int m = 0; m < columnMetrics.length; m++) {
+                PropertyIndex.Metric metric = columnMetrics[m];
+                double value = metric != null ? metric.extract(columns, row) : extractorArray[m].applyAsDouble(record);
+                accumulator.add(m, id, value, first);
+            }
+        }
+        return new PropertyStatistics(dictionary, metrics, accumulator);
+    }
+
+    private static List<ToDoubleFunction<PropertyRecord>> copy(List<? extends ToDoubleFunction<PropertyRecord>> extractors) {
+        return Collections.unmodifiableList(new ArrayList<>(extractors));
+    }
+
+    // The extractors as an array, for the per-row loop.
+    @SuppressWarnings("unchecked")
+    private static ToDoubleFunction<PropertyRecord>[] toArray(List<ToDoubleFunction<PropertyRecord>> extractors) {
+        return extractors.toArray((ToDoubleFunction<PropertyRecord>[]) new ToDoubleFunction<?>[extractors.size()]);
+    }
+
+    // The arrays while they are being filled, indexed by ZIP ID or by a slot that
+    // becomes one.
+    private static final class Accumulator {
+        int[] counts;
+        double[][] sums;
+        double[][] compensations;
+        double[][] simpleSums;
+        double[][] shifts;
+        double[][] shiftedSums;
+        double[][] shiftedSquares;
+        double[][] mins;
+        double[][] maxs;
+
+        Accumulator(int metrics, int ids) {
+            counts = new int[ids];
+            sums = new double[metrics][ids];
+            compensations = new double[metrics][ids];
+            simpleSums = new double[metrics][ids];
+            shifts = new double[metrics][ids];
+            shiftedSums = new double[metrics][ids];
+            shiftedSquares = new double[metrics][ids];
+            mins = new double[metrics][ids];
+            maxs = new double[metrics][ids];
+        }
+
+        void add(int m, int id, double value, boolean first) {
+            // Kahan summation as in DoubleStream.sum()
+            double sum = sums[m][id];
+            double corrected = value - compensations[m][id];
+            double total = sum + corrected;
+            compensations[m][id] = (total - sum) - corrected;
+            sums[m][id] = total;
+            simpleSums[m][id] += value;
+            if (first) shifts[m][id] = value;
+            double shifted = value - shifts[m][id];
+            shiftedSums[m][id] += shifted;
+            shiftedSquares[m][id] += shifted * shifted;
+            if (first || value < mins[m][id]) mins[m][id] = value;
+            if (first || value > maxs[m][id]) maxs[m][id] = value;
+        }
+
+        void grow(int ids) {
+            counts = Arrays.copyOf(counts, ids);
+            for (double[][] statistic : Arrays.asList(sums, compensations, simpleSums, shifts, shiftedSums, shiftedSquares, mins, maxs)) {
+                for (int m = 0; m < statistic.length; m++) {
+                    statistic[m] = Arrays.copyOf(statistic[m], ids);
+                }
+            }
+        }
+
+        // Moves the values of slot slotOfId[id] to id, keeping only those IDs.
+        Accumulator renumber(int[] slotOfId) {
+            Accumulator renumbered = new Accumulator(sums.length, slotOfId.length);
+            for (int id = 0; id < slotOfId.length; id++) {
+                int slot = slotOfId[id];
+                renumbered.counts[id] = counts[slot];
+                for (int m = 0; m < sums.length; m++) {
+                    renumbered.sums[m][id] = sums[m][slot];
+                    renumbered.compensations[m][id] = compensations[m][slot];
+                    renumbered.simpleSums[m][id] = simpleSums[m][slot];
+                    renumbered.shifts[m][id] = shifts[m][slot];
+                    renumbered.shiftedSums[m][id] = shiftedSums[m][slot];
+                    renumbered.shiftedSquares[m][id] = shiftedSquares[m][slot];
+                    renumbered.mins[m][id] = mins[m][slot];
+                    renumbered.maxs[m][id] = maxs[m][slot];
+                }
+            }
+            return renumbered;
+        }
+    }
+
+    /**
+     * @return the dictionary whose IDs the {@code ById} methods take
+     */
+    public ZipDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return the number of metrics
+     */
+    public int getMetricCount() {
+        return extractors.size();
+    }
+
+    /**
+     * @return the extractor of a metric
+     */
+    public ToDoubleFunction<PropertyRecord> getExtractor(int metric) {
+        return extractors.get(metric);
+    }
+
+    private boolean hasProperties(int id) {
+        return id >= 0 && id < counts.length && counts[id] > 0;
+    }
+
+    // The final step of DoubleStream.sum(): the sum less its compensation, unless that
+    // is NaN because the values overflowed, in which case the plain sum is infinite.
+    private double sum(int id, int metric) {
+        double sum = sums[metric][id] - compensations[metric][id];
+        double simpleSum = simpleSums[metric][id];
+        return Double.isNaN(sum) && Double.isInfinite(simpleSum) ? simpleSum : sum;
+    }
+
+    /**
+     * @param zip the 5-digit ZIP code
+     * @return the number of properties recorded for the ZIP code
+     */
+    public int getCount(String zip) {
+        return getCountById(dictionary.idOf(zip));
+    }
+
+    /**
+     * Same as {@link #getCount(String)} for a ZIP ID of the dictionary.
+     */
+    public int getCountById(int id) {
+        return hasProperties(id) ? counts[id] : 0;
+    }
+
+    /**
+     * @return the total of the metric over the ZIP's properties, or 0 if there are none
+     */
+    public double getSum(String zip, int metric) {
+        return getSumById(dictionary.idOf(zip), metric);
+    }
+
+    /**
+     * Same as {@link #getSum(String, int)} for a ZIP ID of the dictionary.
+     */
+    public double getSumById(int id, int metric) {
+        return hasProperties(id) ? sum(id, metric) : 0;
+    }
+
+    /**
+     * @return the mean of the metric over the ZIP's properties, or NaN if there are none
+     */
+    public double getMean(String zip, int metric) {
+        return getMeanById(dictionary.idOf(zip), metric);
+    }
+
+    /**
+     * Same as {@link #getMean(String, int)} for a ZIP ID of the dictionary.
+     */
+    public double getMeanById(int id, int metric) {
+        return hasProperties(id) ? sum(id, metric) / counts[id] : Double.NaN;
+    }
+
+    /**
+     * Returns the variance of the metric over all of the ZIP's properties, that is
+     * the mean squared difference from the mean (divided by n, not n - 1).
+     *
+     * @return the variance, or NaN if the ZIP has no properties
+     */
+    public double getVariance(String zip, int metric) {
+        return getVarianceById(dictionary.idOf(zip), metric);
+    }
+
+    /**
+     * Same as {@link #getVariance(String, int)} for a ZIP ID of the dictionary.
+     */
+    public double getVarianceById(int id, int metric) {
+        if (!hasProperties(id)) return Double.NaN;
+        double n = counts[id];
+        double shiftedMean = shiftedSums[metric][id] / n;
+        // rounding can take a variance of 0 slightly below it
+        return Math.max(0, shiftedSquares[metric][id] / n - shiftedMean * shiftedMean);
+    }
+
+    /**
+     * @return the smallest value of the metric in the ZIP, or NaN if there are no properties
+     */
+    public double getMin(String zip, int metric) {
+        return getMinById(dictionary.idOf(zip), metric);
+    }
+
+    /**
+     * Same as {@link #getMin(String, int)} for a ZIP ID of the dictionary.
+     */
+    public double getMinById(int id, int metric) {
+        return hasProperties(id) ? mins[metric][id] : Double.NaN;
+    }
+
+    /**
+     * @return the largest value of the metric in the ZIP, or NaN if there are no properties
+     */
+    public double getMax(String zip, int metric) {
+        return getMaxById(dictionary.idOf(zip), metric);
+    }
+
+    /**
+     * Same as {@link #getMax(String, int)} for a ZIP ID of the dictionary.
+     */
+    public double getMaxById(int id, int metric) {
+        return hasProperties(id) ? maxs[metric][id] : Double.NaN;
+    }
+
+    /**
+     * @return the ZIP codes that have at least one property
+     */
+    public Set<String> getZipCodes() {
+        Set<String> zips = new HashSet<>();
+        for (int id = 0; id < counts.length; id++) {
+            if (counts[id] > 0) zips.add(dictionary.getZip(id));
+        }
+        return zips;
+    }
+}
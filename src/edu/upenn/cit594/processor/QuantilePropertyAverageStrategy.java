@@ -0,0 +1,45 @@
+package edu.upenn.cit594.processor;
+
+import edu.upenn.cit594.util.PropertyRecord;
+import java.util.List;
+
+/**
+ * Strategy that answers with a quantile of the ZIP's values instead of their mean,
+ * such as the median market value, from a prebuilt {@link PropertyQuantileIndex}.
+ * Unlike the mean, the median is not pulled up by a few very expensive properties.
+ */
+public class QuantilePropertyAverageStrategy implements PropertyAverageStrategy {
+
+    public static final double MEDIAN = 0.5;
+    public static final double P90 = 0.9;
+    public static final double P99 = 0.99;
+
+    private final PropertyQuantileIndex index;
+    private final PropertyIndex.Metric metric;
+    private final double quantile;
+
+    /**
+     * @param quantile between 0 and 1, such as {@link #MEDIAN}
+     * @throws IllegalArgumentException if the quantile is not between 0 and 1
+     */
+    public QuantilePropertyAverageStrategy(PropertyQuantileIndex index, PropertyIndex.Metric metric, double quantile) {
+        if (!(quantile >= 0 && quantile <= 1)) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1: " + quantile);
+        }
+        this.index = index;
+        this.metric = metric;
+        this.quantile = quantile;
+    }
+
+    /**
+     * The properties are ignored here; they were already summarized when the index was
+     * built.
+     *
+     * @return the truncated value at the quantile, or 0 if the ZIP has no properties
+     */
+    @Override
+    public int computeAverage(String zip, List<PropertyRecord> properties) {
+        double value = index.getQuantile(zip, metric, quantile);
+        return Double.isNaN(value) ? 0 : (int) value;
+    }
+}
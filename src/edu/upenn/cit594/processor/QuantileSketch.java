@@ -0,0 +1,51 @@
+package edu.upenn.cit594.processor;
+
+/**
+ * A summary of a stream of values that answers quantile queries, such as the median
+ * of the market values in a ZIP code. Sketches of the same kind can be merged, so a
+ * summary of the whole data can be put together from summaries of its parts.
+ *
+ * Implementations are not safe for concurrent updates; once a sketch is no longer
+ * updated, any number of threads may query it.
+ */
+public interface QuantileSketch {
+
+    /**
+     * Adds a value to the summary. NaN values are ignored.
+     */
+    void add(double value);
+
+    /**
+     * Adds every value summarized by another sketch, which is not modified.
+     *
+     * @param other a sketch of the same kind and accuracy
+     * @throws IllegalArgumentException if the sketches cannot be merged
+     */
+    void merge(QuantileSketch other);
+
+    /**
+     * @return the number of values added, including those of merged sketches
+     */
+    long getCount();
+
+    /**
+     * @return the smallest value added, or NaN if there are none
+     */
+    double getMin();
+
+    /**
+     * @return the largest value added, or NaN if there are none
+     */
+    double getMax();
+
+    /**
+     * Returns the value at the given quantile: the smallest value v such that at
+     * least {@code quantile * getCount()} of the values are less than or equal to v.
+     * Quantiles 0 and 1 always return the exact minimum and maximum.
+     *
+     * @param quantile between 0 and 1, such as 0.5 for the median
+     * @return the value, or NaN if no values were added
+     * @throws IllegalArgumentException if the quantile is not between 0 and 1
+     */
+    double getQuantile(double quantile);
+}
@@ -0,0 +1,53 @@
+package edu.upenn.cit594.processor;
+
+import edu.upenn.cit594.util.PropertyRecord;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Average strategy that answers from prebuilt {@link PropertyStatistics}, so several
+ * calculators over different metrics share a single pass over the properties.
+ */
+public class StatisticsPropertyAverageStrategy implements PropertyAverageStrategy {
+
+    private final PropertyStatistics statistics;
+    private final int metric;
+
+    /**
+     * @param metric position of the metric's extractor in the statistics
+     */
+    public StatisticsPropertyAverageStrategy(PropertyStatistics statistics, int metric) {
+        this.statistics = statistics;
+        this.metric = metric;
+    }
+
+    /**
+     * The properties are ignored here; they were already aggregated when the
+     * statistics were built.
+     *
+     * @return the truncated average, or 0 if the ZIP has no properties
+     */
+    @Override
+    public int computeAverage(String zip, List<PropertyRecord> properties) {
+        int id = statistics.getDictionary().idOf(zip);
+        int count = statistics.getCountById(id);
+        return count == 0 ? 0 : (int) (statistics.getSumById(id, metric) / count);
+    }
+
+    /**
+     * Returns the prebuilt statistics when they were built with the given extractors,
+     * the same objects in the same order, and otherwise aggregates the properties.
+     */
+    @Override
+    public PropertyStatistics computeStatistics(List<PropertyRecord> properties,
+                                                List<? extends ToDoubleFunction<PropertyRecord>> extractors) {
+        if (extractors.size() == statistics.getMetricCount()) {
+            boolean same = true;
+            for (int m = 0; m < extractors.size() && same; m++) {
+                same = extractors.get(m) == statistics.getExtractor(m);
+            }
+            if (same) return statistics;
+        }
+        return PropertyAverageStrategy.super.computeStatistics(properties, extractors);
+    }
+}
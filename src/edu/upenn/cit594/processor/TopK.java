@@ -0,0 +1,102 @@
+package edu.upenn.cit594.processor;
+
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Selects the K best of n values with a bounded binary heap, in O(n log K) time and
+ * O(K) space. The values are given by position, such as the per-ZIP arrays indexed
+ * by ZIP ID, so no entry objects are created for the values that are not selected.
+ */
+public final class TopK {
+
+    private TopK() {
+    }
+
+    /**
+     * @param n       number of positions, 0 to n - 1
+     * @param values  the value at each position; NaN means no value, and the position
+     *                is skipped
+     * @param k       how many positions to select
+     * @param largest true to select the largest values, false for the smallest
+     * @return up to k positions, best first; equal values are ordered by position
+     */
+    public static int[] select(int n, IntToDoubleFunction values, int k, boolean largest) {
+        if (k <= 0) return new int[0];
+        Heap heap = new Heap(Math.min(k, n), largest);
+        for (int i = 0; i < n; i++) {
+            double value = values.applyAsDouble(i);
+            if (Double.isNaN(value)) continue;
+            if (heap.size < heap.positions.length) {
+                heap.add(i, value);
+            } else if (heap.isBetter(i, value, 0)) {
+                heap.replaceRoot(i, value);
+            }
+        }
+        // taking the worst from the root each time fills the result from the back
+        int[] result = new int[heap.size];
+        for (int r = result.length - 1; r >= 0; r--) {
+            result[r] = heap.positions[0];
+            heap.removeRoot();
+        }
+        return result;
+    }
+
+    // Heap of the selected positions with the worst of them at the root.
+    private static class Heap {
+        private final int[] positions;
+        private final double[] values;
+        private final boolean largest;
+        private int size;
+
+        Heap(int capacity, boolean largest) {
+            this.positions = new int[capacity];
+            this.values = new double[capacity];
+            this.largest = largest;
+        }
+
+        // whether the first entry ranks before the second
+        private boolean ranksBefore(int position, double value, int otherPosition, double otherValue) {
+            if (value != otherValue) return largest ? value > otherValue : value < otherValue;
+            return position < otherPosition;
+        }
+
+        // whether the candidate ranks before the entry in the given heap slot
+        boolean isBetter(int position, double value, int slot) {
+            return ranksBefore(position, value, positions[slot], values[slot]);
+        }
+
+        void add(int position, double value) {
+            int slot = size++;
+            while (slot > 0) {
+                int parent = (slot - 1) / 2;
+                if (isBetter(position, value, parent)) break;
+                positions[slot] = positions[parent];
+                values[slot] = values[parent];
+                slot = parent;
+            }
+            positions[slot] = position;
+            values[slot] = value;
+        }
+
+        void replaceRoot(int position, double value) {
+            int slot = 0;
+            while (true) {
+                int child = 2 * slot + 1;
+                if (child >= size) break;
+                // move towards the worse child
+                if (child + 1 < size && isBetter(positions[child], values[child], child + 1)) child++;
+                if (!isBetter(position, value, child)) break;
+                positions[slot] = positions[child];
+                values[slot] = values[child];
+                slot = child;
+            }
+            positions[slot] = position;
+            values[slot] = value;
+        }
+
+        void removeRoot() {
+            size--;
+            if (size > 0) replaceRoot(positions[size], values[size]);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package edu.upenn.cit594.processor;
+
+import edu.upenn.cit594.util.CovidColumns;
+import edu.upenn.cit594.util.ZipDictionary;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Finds wellness clusters: maximal runs of consecutive ZIP codes (adjacent ZIPs
+ * differ by 1) in which every ZIP meets the full-vaccination rate, average livable
+ * area and population thresholds.
+ *
+ * Population and average livable area are looked up from arrays indexed by ZIP ID
+ * (see {@link ZipDictionary}), and the date index already lists each day's ZIPs in ascending order, so a
+ * query is a single linear pass over that day's ZIPs with no sorting or graph.
+ */
+public class WellnessClusterFinder {
+    private final CovidColumns covidColumns;
+    private final CovidDateIndex dateIndex;
+    private final ZipDictionary dictionary;
+    // by ZIP ID; IDs past the end have no population
+    private final int[] populations;
+    private final int[] averageAreas;
+
+    /**
+     * @param covidColumns  the COVID data
+     * @param dateIndex     the day index over {@code covidColumns}
+     * @param dictionary    IDs of the ZIP codes
+     * @param populations   population per ZIP ID
+     * @param propertyIndex property aggregates, for the average livable area
+     */
+    public WellnessClusterFinder(CovidColumns covidColumns, CovidDateIndex dateIndex, ZipDictionary dictionary,
+                                 int[] populations, PropertyIndex propertyIndex) {
+        this.covidColumns = covidColumns;
+        this.dateIndex = dateIndex;
+        this.dictionary = dictionary;
+        this.populations = populations;
+        this.averageAreas = new int[populations.length];
+        ZipDictionary propertyZips = propertyIndex.getDictionary();
+        for (int id = 0; id < populations.length; id++) {
+            int propertyId = propertyZips.idOf(dictionary.getCode(id));
+            averageAreas[id] = propertyIndex.getAverageById(propertyId, PropertyIndex.Metric.LIVABLE_AREA);
+        }
+    }
+
+    private WellnessClusterFinder(CovidColumns covidColumns, CovidDateIndex dateIndex, ZipDictionary dictionary,
+                                  int[] populations, int[] averageAreas) {
+        this.covidColumns = covidColumns;
+        this.dateIndex = dateIndex;
+        this.dictionary = dictionary;
+        this.populations = populations;
+        this.averageAreas = averageAreas;
+    }
+
+    /**
+     * Returns a finder over new COVID data that shares this finder's population and
+     * livable area lookups, for when COVID rows have been appended.
+     *
+     * @param covidColumns the COVID data
+     * @param dateIndex    the day index over {@code covidColumns}
+     * @return the new finder
+     */
+    public WellnessClusterFinder withCovidData(CovidColumns covidColumns, CovidDateIndex dateIndex) {
+        return new WellnessClusterFinder(covidColumns, dateIndex, dictionary, populations, averageAreas);
+    }
+
+    /**
+     * @param date          day of the full-vaccination data
+     * @param minRate       minimum full-vaccination rate (0.0–1.0)
+     * @param minArea       minimum average livable area (sq ft)
+     * @param minPopulation minimum population per ZIP
+     * @return the clusters in ascending ZIP order, each listing its ZIPs in ascending order
+     */
+    public List<Set<String>> find(LocalDate date, double minRate, int minArea, int minPopulation) {
+        int day = dateIndex.indexOf(date.toEpochDay());
+        if (day < 0) return new ArrayList<>();
+        return metricsFor(day).clusters(new ClusterThresholds(minRate, minArea, minPopulation));
+    }
+
+    /**
+     * Finds the clusters for every day with data in [from, to] and every threshold
+     * combination in the grid. The per-ZIP metrics of each day are computed once and
+     * shared by the whole grid; the work is split into tasks on the given pool.
+     *
+     * @param from first day, inclusive
+     * @param to   last day, inclusive
+     * @param grid the threshold combinations to evaluate
+     * @param pool pool to run the tasks on
+     * @return for each day in ascending order, the clusters per threshold combination
+     *         (in grid order)
+     */
+    public SortedMap<LocalDate, Map<ClusterThresholds, List<Set<String>>>> sweep(
+            LocalDate from, LocalDate to, List<ClusterThresholds> grid, ForkJoinPool pool) {
+        int firstDay = dateIndex.lowerBound(from.toEpochDay());
+        int endDay = dateIndex.lowerBound(to.toEpochDay() + 1);
+        int days = Math.max(endDay - firstDay, 0);
+
+        // one task per day, with the grid split further when there are fewer days than threads
+        int slices = Math.min(Math.max(pool.getParallelism() / Math.max(days, 1), 1), Math.max(grid.size(), 1));
+        int sliceSize = (grid.size() + slices - 1) / slices;
+        List<ForkJoinTask<List<List<Set<String>>>>> tasks = new ArrayList<>();
+        for (int day = firstDay; day < endDay; day++) {
+            int d = day;
+            for (int start = 0; start < grid.size(); start += sliceSize) {
+                List<ClusterThresholds> slice = grid.subList(start, Math.min(start + sliceSize, grid.size()));
+                tasks.add(pool.submit(() -> {
+                    DayMetrics metrics = metricsFor(d);
+                    List<List<Set<String>>> results = new ArrayList<>(slice.size());
+                    for (ClusterThresholds thresholds : slice) {
+                        results.add(metrics.clusters(thresholds));
+                    }
+                    return results;
+                }));
+            }
+        }
+
+        SortedMap<LocalDate, Map<ClusterThresholds, List<Set<String>>>> sweep = new TreeMap<>();
+        Iterator<ForkJoinTask<List<List<Set<String>>>>> results = tasks.iterator();
+        for (int day = firstDay; day < endDay; day++) {
+            Map<ClusterThresholds, List<Set<String>>> byThresholds = new LinkedHashMap<>();
+            for (int start = 0; start < grid.size(); start += sliceSize) {
+                List<List<Set<String>>> sliceResults = results.next().join();
+                for (int i = 0; i < sliceResults.size(); i++) {
+                    byThresholds.put(grid.get(start + i), sliceResults.get(i));
+                }
+            }
+            sweep.put(LocalDate.ofEpochDay(dateIndex.getDay(day)), byThresholds);
+        }
+        return sweep;
+    }
+
+    // Collects the day's ZIPs that have a full-vaccination rate, with their inputs.
+    private DayMetrics metricsFor(int day) {
+        int entries = dateIndex.getEntryCount(day);
+        DayMetrics metrics = new DayMetrics(entries);
+        for (int e = 0; e < entries; e++) {
+            int code = dateIndex.getZipCode(day, e);
+            int id = dictionary.idOf(code);
+            int population = id >= 0 && id < populations.length ? populations[id] : 0;
+            if (population == 0) continue;
+            int vaccinated = covidColumns.getFullVaccinated(dateIndex.getRow(day, e));
+            // ZIPs without a rate are not part of any cluster
+            if (vaccinated == 0) continue;
+            // rounded the same way as DataManager.getVaccinationsPerCapita
+            double rate = Math.round((double) vaccinated / population * 10000.0) / 10000.0;
+            metrics.add(code, dictionary.getZip(id), rate, population, averageAreas[id]);
+        }
+        return metrics;
+    }
+
+    // One day's candidate ZIPs in ascending order, as parallel arrays.
+    private static class DayMetrics {
+        private final int[] codes;
+        private final String[] zips;
+        private final double[] rates;
+        private final int[] populations;
+        private final int[] areas;
+        private int size;
+
+        DayMetrics(int capacity) {
+            codes = new int[capacity];
+            zips = new String[capacity];
+            rates = new double[capacity];
+            populations = new int[capacity];
+            areas = new int[capacity];
+        }
+
+        void add(int code, String zip, double rate, int population, int area) {
+            codes[size] = code;
+            zips[size] = zip;
+            rates[size] = rate;
+            populations[size] = population;
+            areas[size] = area;
+            size++;
+        }
+
+        List<Set<String>> clusters(ClusterThresholds thresholds) {
+            double minRate = thresholds.getMinRate();
+            int minArea = thresholds.getMinArea();
+            int minPopulation = thresholds.getMinPopulation();
+            List<Set<String>> clusters = new ArrayList<>();
+            Set<String> cluster = null;
+            int previous = -2;
+            for (int i = 0; i < size; i++) {
+                if (rates[i] < minRate || areas[i] < minArea || populations[i] < minPopulation) continue;
+                int code = codes[i];
+                if (cluster == null || code != previous + 1) {
+                    cluster = new LinkedHashSet<>();
+                    clusters.add(cluster);
+                }
+                cluster.add(zips[i]);
+                previous = code;
+            }
+            return clusters;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+import java.io.*;
+import java.time.LocalDate;
+import java.util.*;
+
+import edu.upenn.cit594.datamanagement.DataManager;
+import edu.upenn.cit594.logging.Logger;
+import edu.upenn.cit594.ui.BatchRunner;
+import edu.upenn.cit594.util.CovidRecord;
+import edu.upenn.cit594.util.PropertyRecord;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Checks that the batch runner writes the same rates as the console's %.4f, in both
+ * output formats, and turns bad lines into error results.
+ */
+public class BatchRunnerTests {
+	private static final int ZIPS = 200;
+	private static final LocalDate DAY = LocalDate.of(2021, 3, 10);
+	private static final String COMMANDS = String.join("\n",
+			"# rates",
+			"vaccinations full 2021-03-10",
+			"vaccinations partial 2021-03-10",
+			"",
+			"population",
+			"vaccinations full 2021-13-01",
+			"bogus 1");
+
+	private DataManager dataManager;
+
+	@BeforeEach
+	public void setUp() {
+		Random random = new Random(594);
+		List<CovidRecord> covidRecords = new ArrayList<>();
+		List<PropertyRecord> propertyRecords = new ArrayList<>();
+		Map<String, Integer> populationData = new HashMap<>();
+		for (int z = 0; z < ZIPS; z++) {
+			String zip = String.valueOf(19000 + z);
+			int population = 1 + random.nextInt(50000);
+			populationData.put(zip, population);
+			covidRecords.add(new CovidRecord(zip, DAY.atTime(12, 0), random.nextInt(population + 1),
+					random.nextInt(population + 1), 0, 0, 0, 0, 0));
+			propertyRecords.add(new PropertyRecord(zip, 100000, 1000));
+		}
+		dataManager = new DataManager(covidRecords, propertyRecords, populationData);
+	}
+
+	@Test
+	public void testCsvMatchesConsoleFormat() throws IOException {
+		String[] lines = run(BatchRunner.Format.CSV).split("\n");
+		assertEquals("line,query,key,value", lines[0]);
+		Map<String, Map<String, String>> rates = new HashMap<>();
+		List<String> errors = new ArrayList<>();
+		for (int i = 1; i < lines.length; i++) {
+			String[] fields = lines[i].split(",");
+			if (fields[1].equals("vaccinations")) {
+				rates.computeIfAbsent(fields[0], k -> new HashMap<>()).put(fields[2], fields[3]);
+			} else if (fields[1].equals("error")) {
+				errors.add(fields[0] + " " + fields[2]);
+			}
+		}
+		assertEquals(consoleRates("full"), rates.get("2"));
+		assertEquals(consoleRates("partial"), rates.get("3"));
+		assertEquals(Arrays.asList("6 vaccinations", "7 bogus"), errors);
+	}
+
+	@Test
+	public void testJsonMatchesConsoleFormat() throws IOException {
+		String[] lines = run(BatchRunner.Format.JSON_LINES).split("\n");
+		assertEquals(5, lines.length);
+		assertTrue(lines[0].startsWith("{\"line\":2,\"query\":\"vaccinations\",\"args\":[\"full\",\"2021-03-10\"],\"result\":{"));
+		for (Map.Entry<String, String> entry : consoleRates("full").entrySet()) {
+			assertTrue(lines[0].contains("\"" + entry.getKey() + "\":" + entry.getValue()), entry.getKey());
+		}
+		for (Map.Entry<String, String> entry : consoleRates("partial").entrySet()) {
+			assertTrue(lines[1].contains("\"" + entry.getKey() + "\":" + entry.getValue()), entry.getKey());
+		}
+		assertEquals("{\"line\":5,\"query\":\"population\",\"args\":[],\"result\":" + dataManager.getTotalPopulation() + "}",
+				lines[2]);
+		assertTrue(lines[3].contains("\"error\":\"invalid date, expected YYYY-MM-DD\""));
+		assertTrue(lines[4].contains("\"error\":\"unknown query\""));
+	}
+
+	// The rates as UserInterface prints them.
+	private Map<String, String> consoleRates(String type) {
+		Map<String, String> rates = new HashMap<>();
+		for (Map.Entry<String, Double> entry : dataManager.getVaccinationsPerCapita(type, DAY).entrySet()) {
+			rates.put(entry.getKey(), String.format(Locale.ROOT, "%.4f", entry.getValue()));
+		}
+		assertEquals(ZIPS, rates.size());
+		return rates;
+	}
+
+	private String run(BatchRunner.Format format) throws IOException {
+		StringWriter out = new StringWriter();
+		int queries = new BatchRunner(dataManager, Logger.getInstance(), format)
+				.run(new BufferedReader(new StringReader(COMMANDS)), out);
+		assertEquals(5, queries);
+		return out.toString();
+	}
+}
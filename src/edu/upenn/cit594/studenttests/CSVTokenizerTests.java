@@ -0,0 +1,178 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+import edu.upenn.cit594.datamanagement.CSVTokenizer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Checks the byte-level CSV tokenizer and its number, ZIP and timestamp parsers
+ * against the String-based parsing the readers used before: splitting each line
+ * with a quote-aware loop, trimming, and Integer.parseInt, Double.parseDouble and
+ * LocalDateTime.parse.
+ */
+public class CSVTokenizerTests {
+	private static final long INVALID = Long.MIN_VALUE;
+	private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+	private static final String[] NUMBERS = {
+			"0", "42", " 42 ", "-17", "+8", "-0", "007", "", "  ", "-", "+", "abc", "12abc", "1,5",
+			"2147483647", "2147483648", "-2147483648", "-2147483649", "99999999999999999999",
+			"1.5", "-0.25", ".5", "5.", "1.", "1..2", "1e3", "1E3", "2.5e-3", "-7.25E+2", "1e400", "1e-400",
+			"123456789012345678", "0.1234567890123456789", "9007199254740993", "NaN", "Infinity", "0x10", "1d"
+	};
+
+	@Test
+	public void testFieldsMatchLineSplitting() throws IOException {
+		String csv = String.join("\n",
+				"zip_code,\"market_value\",note",
+				"19104,\"1,000\",\"he said \"\"hi\"\"\"",
+				",,",
+				"\"\",x,",
+				" 19103 , \" padded \" ,\"a,b,c\"",
+				"\"\"\"\",\"quoted \"\"\"\" twice\",last") + "\r\n"
+				+ "19147,  ,crlf\r\n"
+				+ "a,b\n"
+				+ "single";
+		for (int bufferSize : new int[] {16, 17, 64, 1 << 16}) {
+			List<String[]> expected = new ArrayList<>();
+			BufferedReader lines = new BufferedReader(new StringReader(csv));
+			String line;
+			while ((line = lines.readLine()) != null) {
+				expected.add(parseCSVLine(line));
+			}
+
+			CSVTokenizer tokenizer = tokenizer(csv, bufferSize);
+			for (String[] fields : expected) {
+				assertTrue(tokenizer.nextRecord());
+				assertEquals(fields.length, tokenizer.getFieldCount(), Arrays.toString(fields));
+				for (int i = 0; i < fields.length; i++) {
+					assertEquals(fields[i].trim(), tokenizer.getString(i), "buffer " + bufferSize);
+					assertEquals(fields[i].trim().isEmpty(), tokenizer.isEmpty(i));
+				}
+			}
+			assertFalse(tokenizer.nextRecord());
+			assertEquals(csv.length(), tokenizer.getPosition());
+		}
+	}
+
+	@Test
+	public void testHeaderMap() throws IOException {
+		CSVTokenizer tokenizer = tokenizer(" Zip_Code ,\"POS\",etl_timestamp\r\n", 16);
+		assertTrue(tokenizer.nextRecord());
+		Map<String, Integer> expected = new HashMap<>();
+		expected.put("zip_code", 0);
+		expected.put("pos", 1);
+		expected.put("etl_timestamp", 2);
+		assertEquals(expected, tokenizer.getHeaderMap());
+	}
+
+	@Test
+	public void testNumbersMatchJavaParsers() throws IOException {
+		List<String> values = new ArrayList<>(Arrays.asList(NUMBERS));
+		Random random = new Random(594);
+		for (int i = 0; i < 2000; i++) {
+			// plain decimals of up to 17 significant digits, around the fast path's limit
+			String digits = Long.toString(Math.abs(random.nextLong()) % (long) Math.pow(10, 1 + random.nextInt(17)));
+			int point = random.nextInt(digits.length() + 1);
+			values.add((random.nextBoolean() ? "-" : "") + digits.substring(0, point) + "." + digits.substring(point));
+			values.add(Integer.toString(random.nextInt()));
+		}
+
+		CSVTokenizer tokenizer = tokenizer(quotedLines(values), 16);
+		for (String value : values) {
+			assertTrue(tokenizer.nextRecord());
+			assertEquals(oldInt(value), tokenizer.getInt(0), "int '" + value + "'");
+			// Double.equals tells NaN and -0.0 apart, unlike ==
+			assertEquals(Double.valueOf(oldDouble(value)), Double.valueOf(tokenizer.getDouble(0)), "double '" + value + "'");
+		}
+	}
+
+	@Test
+	public void testZipCodesAndTimestampsMatchJavaParsers() throws IOException {
+		List<String> zips = Arrays.asList("19104", " 19104 ", "1910", "191044", "19a04", "", "  ", "00000", "-1910", "19104-1234");
+		CSVTokenizer tokenizer = tokenizer(quotedLines(zips), 16);
+		for (String zip : zips) {
+			assertTrue(tokenizer.nextRecord());
+			String trimmed = zip.trim();
+			assertEquals(trimmed.matches("\\d{5}") ? Integer.parseInt(trimmed) : -1, tokenizer.getZipCode(0), zip);
+		}
+
+		List<String> timestamps = Arrays.asList("2021-03-25 17:20:02", " 2021-03-25 17:20:02 ", "2020-02-29 00:00:00",
+				"2021-02-29 00:00:00", "2021-04-31 12:00:00", "2021-13-01 00:00:00", "2021-03-25 24:00:00",
+				"2021-03-25 23:60:00", "2021-03-25T17:20:02", "2021-3-25 17:20:02", "", "   ", "0000-01-01 00:00:00");
+		tokenizer = tokenizer(quotedLines(timestamps), 16);
+		for (String timestamp : timestamps) {
+			assertTrue(tokenizer.nextRecord());
+			assertEquals(oldTimestamp(timestamp), tokenizer.getTimestamp(0), timestamp);
+		}
+	}
+
+	private static CSVTokenizer tokenizer(String csv, int bufferSize) {
+		return new CSVTokenizer(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), bufferSize);
+	}
+
+	// One value per line, quoted so that commas and spaces stay in the field.
+	private static String quotedLines(List<String> values) {
+		StringBuilder sb = new StringBuilder();
+		for (String value : values) {
+			sb.append('"').append(value.replace("\"", "\"\"")).append("\"\n");
+		}
+		return sb.toString();
+	}
+
+	private static long oldInt(String value) {
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return INVALID;
+		}
+	}
+
+	private static double oldDouble(String value) {
+		try {
+			return Double.parseDouble(value.trim());
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
+	private static long oldTimestamp(String value) {
+		try {
+			return LocalDateTime.parse(value.trim(), TIMESTAMP_FORMAT).toEpochSecond(ZoneOffset.UTC);
+		} catch (DateTimeParseException e) {
+			return INVALID;
+		}
+	}
+
+	// The line splitting of the original readers.
+	private static String[] parseCSVLine(String line) {
+		List<String> tokens = new ArrayList<>();
+		boolean inQuotes = false;
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == '"') {
+				if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					sb.append('"');
+					i++;
+				} else {
+					inQuotes = !inQuotes;
+				}
+			} else if (c == ',' && !inQuotes) {
+				tokens.add(sb.toString());
+				sb.setLength(0);
+			} else {
+				sb.append(c);
+			}
+		}
+		tokens.add(sb.toString());
+		return tokens.toArray(new String[0]);
+	}
+}
@@ -0,0 +1,177 @@
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+
+import edu.upenn.cit594.util.CovidColumns;
+import edu.upenn.cit594.util.CovidRecord;
+import edu.upenn.cit594.util.PropertyColumns;
+import edu.upenn.cit594.util.PropertyRecord;
+import edu.upenn.cit594.datamanagement.DataManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Stress test for sharing one DataManager between query threads: every thread runs
+ * the full query mix in its own random order against a cold instance, and all
+ * answers must match a single-threaded run.
+ */
+public class ConcurrentDataManagerTests {
+	private static final int THREADS = 8;
+	private static final int ROUNDS = 20;
+	private static final int ZIPS = 60;
+	private static final int DAYS = 30;
+	private static final LocalDate FIRST_DAY = LocalDate.of(2021, 3, 1);
+
+	private List<CovidRecord> covidRecords;
+	private List<PropertyRecord> propertyRecords;
+	private Map<String, Integer> populationData;
+
+	@BeforeEach
+	public void setUp() {
+		Random random = new Random(594);
+		covidRecords = new ArrayList<>();
+		propertyRecords = new ArrayList<>();
+		populationData = new HashMap<>();
+		for (int z = 0; z < ZIPS; z++) {
+			String zip = String.valueOf(19100 + z);
+			// leave a few ZIPs without population so they drop out of the results
+			if (z % 7 != 3) populationData.put(zip, 500 + random.nextInt(40000));
+			for (int p = 0; p < 40; p++) {
+				propertyRecords.add(new PropertyRecord(zip, 50000 + random.nextInt(900000), 400 + random.nextInt(3000)));
+			}
+			for (int d = 0; d < DAYS; d++) {
+				// several records a day, so the latest one per ZIP has to win
+				for (int r = 0; r < 3; r++) {
+					LocalDateTime time = FIRST_DAY.plusDays(d).atTime(random.nextInt(24), random.nextInt(60));
+					covidRecords.add(new CovidRecord(zip, time, random.nextInt(20000), random.nextInt(15000),
+							random.nextInt(500), random.nextInt(5000), random.nextInt(8000), random.nextInt(50), random.nextInt(10)));
+				}
+			}
+		}
+	}
+
+	// One query and its answer, so results from different threads can be compared.
+	private interface Query {
+		Object run(DataManager dataManager);
+	}
+
+	private List<Query> queries() {
+		List<Query> queries = new ArrayList<>();
+		queries.add(DataManager::getTotalPopulation);
+		for (int d = -1; d <= DAYS; d++) {
+			LocalDate date = FIRST_DAY.plusDays(d);
+			queries.add(dm -> dm.getVaccinationsPerCapita("partial", date));
+			queries.add(dm -> dm.getVaccinationsPerCapita("full", date));
+			queries.add(dm -> new HashSet<>(dm.getWellnessClusters(date, 0.1, 1000, 1000)));
+		}
+		queries.add(dm -> dm.getVaccinationsPerCapitaBetween("full", FIRST_DAY.plusDays(5), FIRST_DAY.plusDays(12)));
+		for (int z = 0; z <= ZIPS; z++) {
+			String zip = String.valueOf(19100 + z);
+			queries.add(dm -> dm.getAverageMarketValue(zip));
+			queries.add(dm -> dm.getAverageLivableArea(zip));
+			queries.add(dm -> dm.getMarketValuePerCapita(zip));
+		}
+		return queries;
+	}
+
+	@Test
+	public void testConcurrentQueriesMatchSingleThreaded() throws Exception {
+		List<Query> queries = queries();
+
+		DataManager reference = new DataManager(covidRecords, propertyRecords, populationData);
+		List<Object> expected = new ArrayList<>();
+		for (Query query : queries) {
+			expected.add(query.run(reference));
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		try {
+			for (int round = 0; round < ROUNDS; round++) {
+				// a fresh instance each round, so the threads race to fill the caches
+				DataManager shared = new DataManager(covidRecords, propertyRecords, populationData);
+				CountDownLatch start = new CountDownLatch(1);
+				List<Future<Object[]>> futures = new ArrayList<>();
+				for (int t = 0; t < THREADS; t++) {
+					long seed = round * THREADS + t;
+					futures.add(pool.submit(() -> {
+						List<Integer> order = new ArrayList<>();
+						for (int i = 0; i < queries.size(); i++) order.add(i);
+						Collections.shuffle(order, new Random(seed));
+						Object[] answers = new Object[queries.size()];
+						start.await();
+						for (int i : order) {
+							answers[i] = queries.get(i).run(shared);
+						}
+						return answers;
+					}));
+				}
+				start.countDown();
+
+				Object[] first = null;
+				for (Future<Object[]> future : futures) {
+					Object[] answers = future.get(60, TimeUnit.SECONDS);
+					for (int i = 0; i < queries.size(); i++) {
+						assertEquals(expected.get(i), answers[i], "query " + i + " in round " + round);
+					}
+					if (first == null) {
+						first = answers;
+						continue;
+					}
+					// memoized results are computed once and shared by every thread
+					for (int i = 0; i < queries.size(); i++) {
+						if (answers[i] instanceof Map && !(answers[i] instanceof SortedMap)) {
+							assertSame(first[i], answers[i], "query " + i + " in round " + round);
+						}
+					}
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testAppendedDataMatchesFullLoad() throws Exception {
+		List<Query> queries = queries();
+		DataManager reference = new DataManager(covidRecords, propertyRecords, populationData);
+
+		// records are grouped by ZIP, so every append adds ZIPs to days already loaded
+		int initial = covidRecords.size() / 3;
+		DataManager appended = new DataManager(CovidColumns.from(covidRecords.subList(0, initial)),
+				PropertyColumns.from(propertyRecords), populationData);
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		try {
+			Random random = new Random(11);
+			for (int from = initial; from < covidRecords.size(); ) {
+				int to = Math.min(covidRecords.size(), from + 1 + random.nextInt(200));
+				// fill the caches from the old data while the append runs
+				List<Future<?>> readers = new ArrayList<>();
+				for (int t = 0; t < THREADS; t++) {
+					readers.add(pool.submit(() -> {
+						for (Query query : queries) query.run(appended);
+					}));
+				}
+				appended.appendCovidData(CovidColumns.from(covidRecords.subList(from, to)));
+				for (Future<?> reader : readers) reader.get(60, TimeUnit.SECONDS);
+				from = to;
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+
+		for (int i = 0; i < queries.size(); i++) {
+			assertEquals(queries.get(i).run(reference), queries.get(i).run(appended), "query " + i);
+		}
+	}
+
+	@Test
+	public void testCachedResultsAreReadOnly() {
+		DataManager dataManager = new DataManager(covidRecords, propertyRecords, populationData);
+		Map<String, Double> rates = dataManager.getVaccinationsPerCapita("full", FIRST_DAY);
+		assertFalse(rates.isEmpty());
+		assertThrows(UnsupportedOperationException.class, () -> rates.put("00000", 1.0));
+	}
+}
@@ -0,0 +1,127 @@
+import java.time.LocalDate;
+import java.util.*;
+
+import edu.upenn.cit594.datamanagement.DataManager;
+import edu.upenn.cit594.processor.CovidDateIndex;
+import edu.upenn.cit594.processor.CovidTimeSeries;
+import edu.upenn.cit594.processor.CovidTimeSeries.Metric;
+import edu.upenn.cit594.util.CovidColumns;
+import edu.upenn.cit594.util.CovidRecord;
+import edu.upenn.cit594.util.ZipDictionary;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Checks the prefix-sum time series against summing each ZIP's daily values one
+ * day at a time, and the changes between two days against the values as of each.
+ */
+public class CovidTimeSeriesTests {
+	private static final int ZIPS = 12;
+	private static final int DAYS = 40;
+	private static final LocalDate FIRST = LocalDate.of(2021, 3, 1);
+
+	private List<CovidRecord> covidRecords;
+	// [zip][day]: the latest record of the day, or null
+	private CovidRecord[][] latest;
+
+	@BeforeEach
+	public void setUp() {
+		Random random = new Random(594);
+		covidRecords = new ArrayList<>();
+		latest = new CovidRecord[ZIPS][DAYS];
+		for (int z = 0; z < ZIPS; z++) {
+			for (int d = 0; d < DAYS; d++) {
+				// up to three records a day at distinct hours, and gaps of days without any
+				int records = random.nextInt(4);
+				for (int hour = 0; hour < records; hour++) {
+					CovidRecord record = new CovidRecord(zip(z), FIRST.plusDays(d).atTime(8 + 4 * hour, random.nextInt(60)),
+							random.nextInt(5000), random.nextInt(5000), random.nextInt(100), 0, random.nextInt(5000),
+							random.nextInt(20), random.nextInt(5));
+					covidRecords.add(record);
+					latest[z][d] = record;
+				}
+			}
+		}
+		Collections.shuffle(covidRecords, random);
+	}
+
+	@Test
+	public void testSumsMatchDailyValues() {
+		CovidColumns columns = CovidColumns.from(covidRecords);
+		CovidTimeSeries series = CovidTimeSeries.build(columns, CovidDateIndex.build(columns), ZipDictionary.empty());
+		for (int z = 0; z < ZIPS; z++) {
+			int id = series.getDictionary().idOf(zip(z));
+			// ranges reaching past either end of the data
+			for (int from = -3; from < DAYS + 3; from++) {
+				for (int to = from - 1; to < DAYS + 3; to++) {
+					long fromDay = FIRST.toEpochDay() + from;
+					long toDay = FIRST.toEpochDay() + to;
+					int recordDays = 0;
+					for (int d = Math.max(from, 0); d <= Math.min(to, DAYS - 1); d++) {
+						if (latest[z][d] != null) recordDays++;
+					}
+					assertEquals(recordDays, series.getRecordDays(id, fromDay, toDay), zip(z) + " " + from + ".." + to);
+					for (Metric metric : Metric.values()) {
+						long sum = 0;
+						for (int d = Math.max(from, 0); d <= Math.min(to, DAYS - 1); d++) {
+							sum += value(latest[z][d], metric);
+						}
+						assertEquals(sum, series.getSum(id, metric, fromDay, toDay), metric + " " + from + ".." + to);
+					}
+				}
+			}
+		}
+		assertEquals(0, series.getSum(ZipDictionary.NO_ID, Metric.POS, FIRST.toEpochDay(), FIRST.toEpochDay() + DAYS));
+	}
+
+	@Test
+	public void testDeltasMatchValuesAsOf() {
+		DataManager dataManager = new DataManager(covidRecords, new ArrayList<>(), new HashMap<>());
+		for (int from = -2; from < DAYS + 2; from += 3) {
+			for (int to = from; to < DAYS + 2; to += 2) {
+				LocalDate fromDate = FIRST.plusDays(from);
+				LocalDate toDate = FIRST.plusDays(to);
+				for (int z = 0; z < ZIPS; z++) {
+					Map<Metric, Integer> deltas = dataManager.getDeltas(zip(z), fromDate, toDate);
+					CovidRecord atTo = latestAsOf(z, to);
+					if (atTo == null) {
+						assertTrue(deltas.isEmpty(), zip(z) + " " + toDate);
+						continue;
+					}
+					for (Metric metric : Metric.values()) {
+						Integer expected = value(atTo, metric) - value(latestAsOf(z, from), metric);
+						assertEquals(expected, deltas.get(metric), zip(z) + " " + metric + " " + fromDate + ".." + toDate);
+						assertEquals(expected, dataManager.getDeltas(metric, fromDate, toDate).get(zip(z)));
+					}
+				}
+			}
+		}
+		assertTrue(dataManager.getDeltas("19999", FIRST, FIRST.plusDays(DAYS)).isEmpty());
+	}
+
+	private static String zip(int z) {
+		return String.valueOf(19100 + z);
+	}
+
+	// The latest record on or before the day, or null.
+	private CovidRecord latestAsOf(int z, int day) {
+		for (int d = Math.min(day, DAYS - 1); d >= 0; d--) {
+			if (latest[z][d] != null) return latest[z][d];
+		}
+		return null;
+	}
+
+	private static int value(CovidRecord record, Metric metric) {
+		if (record == null) return 0;
+		switch (metric) {
+			case PARTIAL: return record.getPartialVaccinated();
+			case FULL: return record.getFullVaccinated();
+			case BOOSTERS: return record.getBoosters();
+			case POS: return record.getPos();
+			case HOSPITALIZED: return record.getHospitalized();
+			default: return record.getDeaths();
+		}
+	}
+}
@@ -0,0 +1,110 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import edu.upenn.cit594.datamanagement.CovidJSONReader;
+import edu.upenn.cit594.datamanagement.JSONEventReader;
+import edu.upenn.cit594.util.CovidRecord;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Checks that the streaming JSON reader rejects malformed and truncated input, and
+ * that a COVID file with such an error loads no records at all.
+ */
+public class JSONEventReaderTests {
+	private static final String RECORD = "{\"zip_code\": 19104, \"timestamp\": \"2021-03-25 17:20:02\", \"POS\": 5}";
+
+	@Test
+	public void testWellFormed() throws IOException {
+		assertEquals(Arrays.asList("START_ARRAY", "START_OBJECT", "FIELD_NAME", "NUMBER", "FIELD_NAME", "START_ARRAY",
+				"TRUE", "NULL", "END_ARRAY", "END_OBJECT", "START_ARRAY", "END_ARRAY", "START_OBJECT", "END_OBJECT",
+				"STRING", "END_ARRAY"), events(" [ {\"a\": 1, \"b\": [true, null]}, [], {}, \"x\" ] "));
+	}
+
+	@Test
+	public void testMissingCommas() {
+		assertMalformed("[{\"a\":1} {\"b\":2}]");
+		assertMalformed("[1 2 3]");
+		assertMalformed("{\"a\":1 \"b\":2}");
+	}
+
+	@Test
+	public void testMisplacedCommas() {
+		assertMalformed("[,1]");
+		assertMalformed("[1,]");
+		assertMalformed("[1,,2]");
+		assertMalformed("{\"a\":,1}");
+		assertMalformed("{,\"a\":1}");
+		assertMalformed("{\"a\":1,}");
+		assertMalformed("{\"a\":}");
+		assertMalformed("[1],");
+	}
+
+	@Test
+	public void testTruncated() {
+		String json = "[" + RECORD + "," + RECORD + "]";
+		for (int length = 0; length < json.length(); length++) {
+			String truncated = json.substring(0, length);
+			if (truncated.trim().isEmpty()) continue;
+			assertMalformed(truncated);
+		}
+	}
+
+	@Test
+	public void testSurrogatePairAcrossRefill() throws IOException {
+		// with the smallest buffer, move the escaped pair across every refill position
+		for (int padding = 0; padding < 40; padding++) {
+			String name = "x".repeat(padding);
+			String json = "{\"" + name + "\": \"\\uD83D\\uDE00\"}";
+			JSONEventReader reader = new JSONEventReader(stream(json), 16);
+			assertEquals(JSONEventReader.Event.START_OBJECT, reader.next());
+			assertEquals(JSONEventReader.Event.FIELD_NAME, reader.next());
+			assertEquals(JSONEventReader.Event.STRING, reader.next());
+			assertEquals("😀", reader.getText(), "padding " + padding);
+			assertEquals(JSONEventReader.Event.END_OBJECT, reader.next());
+			assertEquals(json.length(), reader.getPosition());
+		}
+	}
+
+	@Test
+	public void testMalformedFileLoadsNothing() throws IOException {
+		assertEquals(2, new CovidJSONReader(write("[" + RECORD + ",\n" + RECORD + "]")).readData().size());
+		assertEquals(0, new CovidJSONReader(write("[" + RECORD + ",\n" + RECORD)).readData().size());
+		assertEquals(0, new CovidJSONReader(write("[" + RECORD + "\n" + RECORD + "]")).readData().size());
+		assertEquals(0, new CovidJSONReader(write("[" + RECORD + ",\n" + RECORD + ",]")).readColumns().size());
+
+		List<CovidRecord> streamed = new ArrayList<>();
+		assertFalse(new CovidJSONReader(write("[" + RECORD + ",\n{\"zip_code\": 191")).readRecords(streamed::add));
+		assertEquals(1, streamed.size());
+	}
+
+	private static InputStream stream(String json) {
+		return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static List<String> events(String json) throws IOException {
+		List<String> events = new ArrayList<>();
+		// the smallest buffer makes every token cross refills
+		JSONEventReader reader = new JSONEventReader(stream(json), 16);
+		JSONEventReader.Event event;
+		while ((event = reader.next()) != JSONEventReader.Event.END_DOCUMENT) {
+			events.add(event.name());
+		}
+		return events;
+	}
+
+	private static void assertMalformed(String json) {
+		assertThrows(IOException.class, () -> events(json), json);
+	}
+
+	private static String write(String json) throws IOException {
+		File file = File.createTempFile("covid", ".json");
+		file.deleteOnExit();
+		Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+		return file.getPath();
+	}
+}
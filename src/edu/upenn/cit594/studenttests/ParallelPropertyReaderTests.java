@@ -0,0 +1,71 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import edu.upenn.cit594.datamanagement.InputMode;
+import edu.upenn.cit594.datamanagement.PropertyCSVReader;
+import edu.upenn.cit594.util.PropertyColumns;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Checks that reading the property file in parallel chunks reads every record exactly
+ * once, including records with quoted line breaks that straddle a chunk boundary.
+ */
+public class ParallelPropertyReaderTests {
+	// large enough to be split into several chunks of at least 1 MB
+	private static final int ROWS = 60000;
+
+	private static File file;
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		if (file != null) return;
+		file = File.createTempFile("properties", ".csv");
+		file.deleteOnExit();
+		Random random = new Random(594);
+		try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+			out.write("zip_code,description,market_value,total_livable_area\n");
+			for (int row = 0; row < ROWS; row++) {
+				// a quoted description of varying length with line breaks, commas and
+				// quotes, so that chunk targets fall inside quotes as well as outside
+				StringBuilder description = new StringBuilder("\"");
+				int lines = random.nextInt(4);
+				for (int i = 0; i < lines; i++) {
+					description.append("line ").append(i).append(", \"\"quoted\"\"").append(random.nextBoolean() ? "\n" : "\r\n");
+				}
+				description.append("x".repeat(random.nextInt(60))).append('"');
+				// the livable area numbers the rows
+				out.write((19100 + random.nextInt(50)) + "," + description + "," + (1000 + random.nextInt(100000))
+						+ "," + row + (random.nextInt(10) == 0 ? "\r\n" : "\n"));
+			}
+		}
+		assertTrue(file.length() > 4 << 20, "the file must span several chunks");
+	}
+
+	@Test
+	public void testEveryRecordReadOnce() {
+		for (InputMode inputMode : InputMode.values()) {
+			PropertyColumns columns = new PropertyCSVReader(file.getPath(), true, inputMode).readColumns();
+			assertEquals(ROWS, columns.size(), inputMode.name());
+			for (int row = 0; row < ROWS; row++) {
+				// in file order, so each row is where its number says
+				assertEquals(row, columns.getLivableArea(row), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testParallelMatchesSequential() {
+		PropertyColumns sequential = new PropertyCSVReader(file.getPath(), false).readColumns();
+		PropertyColumns parallel = new PropertyCSVReader(file.getPath(), true).readColumns();
+		assertEquals(sequential.size(), parallel.size());
+		for (int row = 0; row < sequential.size(); row++) {
+			assertEquals(sequential.getZipCode(row), parallel.getZipCode(row));
+			assertEquals(sequential.getMarketValue(row), parallel.getMarketValue(row), 0);
+			assertEquals(sequential.getLivableArea(row), parallel.getLivableArea(row), 0);
+		}
+	}
+}
@@ -0,0 +1,131 @@
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+
+import edu.upenn.cit594.datamanagement.DataManager;
+import edu.upenn.cit594.processor.GenericPropertyAverageStrategy;
+import edu.upenn.cit594.processor.PropertyAverageCalculator;
+import edu.upenn.cit594.processor.PropertyIndex;
+import edu.upenn.cit594.processor.PropertyStatistics;
+import edu.upenn.cit594.util.PropertyColumns;
+import edu.upenn.cit594.util.PropertyRecord;
+import edu.upenn.cit594.util.ZipDictionary;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Checks the fused multi-metric aggregation against computing each statistic of
+ * each metric separately, and the averages built on it against the stream sums of
+ * the per-record computation.
+ */
+public class PropertyStatisticsTests {
+	private static final int ZIPS = 20;
+
+	private List<PropertyRecord> propertyRecords;
+	private List<ToDoubleFunction<PropertyRecord>> extractors;
+
+	@BeforeEach
+	public void setUp() {
+		Random random = new Random(594);
+		propertyRecords = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			String zip = String.valueOf(19100 + random.nextInt(ZIPS));
+			// large values with a small spread, where a naive variance loses precision
+			propertyRecords.add(new PropertyRecord(zip, 1e9 + random.nextInt(1000), 500 + random.nextInt(3000)));
+		}
+		extractors = Arrays.asList(PropertyRecord::getMarketValue, PropertyRecord::getTotalLivableArea,
+				r -> r.getMarketValue() / r.getTotalLivableArea());
+	}
+
+	@Test
+	public void testStatisticsMatchSeparatePasses() {
+		PropertyStatistics statistics = PropertyStatistics.build(propertyRecords, extractors);
+		assertEquals(3, statistics.getMetricCount());
+		for (int z = 0; z < ZIPS; z++) {
+			String zip = String.valueOf(19100 + z);
+			for (int m = 0; m < extractors.size(); m++) {
+				ToDoubleFunction<PropertyRecord> extractor = extractors.get(m);
+				double[] values = propertyRecords.stream().filter(r -> r.getZipCode().equals(zip))
+						.mapToDouble(extractor).toArray();
+				double mean = Arrays.stream(values).average().orElse(Double.NaN);
+				double variance = Arrays.stream(values).map(v -> (v - mean) * (v - mean)).sum() / values.length;
+
+				assertEquals(values.length, statistics.getCount(zip));
+				assertEquals(Arrays.stream(values).sum(), statistics.getSum(zip, m), 1e-6 * Math.abs(mean) * values.length);
+				assertEquals(mean, statistics.getMean(zip, m), 1e-9 * Math.abs(mean));
+				assertEquals(variance, statistics.getVariance(zip, m), 1e-6 * variance);
+				assertEquals(Arrays.stream(values).min().getAsDouble(), statistics.getMin(zip, m), 0);
+				assertEquals(Arrays.stream(values).max().getAsDouble(), statistics.getMax(zip, m), 0);
+			}
+		}
+		assertEquals(0, statistics.getCount("19999"));
+		assertTrue(Double.isNaN(statistics.getMean("19999", 0)));
+	}
+
+	@Test
+	public void testColumnsMatchRecords() {
+		// built-in metrics are read from their columns, the others from a record per row
+		List<ToDoubleFunction<PropertyRecord>> mixed = Arrays.asList(PropertyIndex.Metric.LIVABLE_AREA.getExtractor(),
+				extractors.get(2), PropertyIndex.Metric.MARKET_VALUE.getExtractor());
+		PropertyColumns columns = PropertyColumns.from(propertyRecords);
+		ZipDictionary.Builder builder = ZipDictionary.builder();
+		for (int row = 0; row < columns.size(); row++) {
+			builder.add(columns.getZipCode(row));
+		}
+		PropertyStatistics fromColumns = PropertyStatistics.build(columns, builder.build(), mixed);
+		PropertyStatistics fromRecords = PropertyStatistics.build(propertyRecords, mixed);
+		assertEquals(fromRecords.getZipCodes(), fromColumns.getZipCodes());
+		for (String zip : fromRecords.getZipCodes()) {
+			assertEquals(fromRecords.getCount(zip), fromColumns.getCount(zip));
+			for (int m = 0; m < mixed.size(); m++) {
+				assertEquals(fromRecords.getSum(zip, m), fromColumns.getSum(zip, m), 0);
+				assertEquals(fromRecords.getVariance(zip, m), fromColumns.getVariance(zip, m), 0);
+				assertEquals(fromRecords.getMin(zip, m), fromColumns.getMin(zip, m), 0);
+				assertEquals(fromRecords.getMax(zip, m), fromColumns.getMax(zip, m), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testAveragesOnIntegerBoundary() {
+		// the values add up to 72871.99999999999 one by one, and to 72872 in a stream
+		List<PropertyRecord> records = new ArrayList<>();
+		for (double marketValue : new double[] {24827.2, 13315.5, 28115.1, 6614.2}) {
+			records.add(new PropertyRecord("19104", marketValue, 1000));
+		}
+		assertEquals(18218, new GenericPropertyAverageStrategy(PropertyRecord::getMarketValue).computeAverage("19104", records));
+		assertEquals(18218, PropertyIndex.build(records).getAverage("19104", PropertyIndex.Metric.MARKET_VALUE));
+
+		Map<String, Integer> populationData = new HashMap<>();
+		populationData.put("19104", 4);
+		DataManager dataManager = new DataManager(new ArrayList<>(), records, populationData);
+		assertEquals(18218, dataManager.getAverageMarketValue("19104"));
+		assertEquals(18218, dataManager.getMarketValuePerCapita("19104"));
+	}
+
+	@Test
+	public void testCalculatorsMatchGenericStrategy() {
+		// a ZIP whose market values sum to just below 72872 when added one by one, but
+		// to 72872 with the stream's compensated sum, for an average of exactly 18218
+		String boundaryZip = String.valueOf(19100 + ZIPS + 1);
+		List<PropertyRecord> records = new ArrayList<>(propertyRecords);
+		for (double marketValue : new double[] {24827.2, 13315.5, 28115.1, 6614.2}) {
+			records.add(new PropertyRecord(boundaryZip, marketValue, 1000));
+		}
+
+		List<PropertyAverageCalculator> calculators = PropertyAverageCalculator.createWithMetrics(records, extractors);
+		assertEquals(extractors.size(), calculators.size());
+		for (int m = 0; m < extractors.size(); m++) {
+			GenericPropertyAverageStrategy generic = new GenericPropertyAverageStrategy(extractors.get(m));
+			for (int z = 0; z <= ZIPS + 1; z++) {
+				String zip = String.valueOf(19100 + z);
+				assertEquals(generic.computeAverage(zip, records), calculators.get(m).calculate(zip), "ZIP " + zip);
+			}
+		}
+		assertEquals(18218, calculators.get(0).calculate(boundaryZip));
+		// the calculators already hold statistics over these extractors
+		PropertyStatistics statistics = calculators.get(0).computeStatistics(extractors);
+		assertSame(statistics, calculators.get(1).computeStatistics(extractors));
+	}
+}
@@ -0,0 +1,86 @@
+import java.util.*;
+
+import edu.upenn.cit594.processor.ExactQuantileSketch;
+import edu.upenn.cit594.processor.KllQuantileSketch;
+import edu.upenn.cit594.processor.PropertyIndex;
+import edu.upenn.cit594.processor.PropertyQuantileIndex;
+import edu.upenn.cit594.processor.QuantilePropertyAverageStrategy;
+import edu.upenn.cit594.util.PropertyRecord;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Checks the property quantile sketches against the exact quantiles: the KLL sketch
+ * must stay within its documented rank error and within its memory bound.
+ */
+public class QuantileSketchTests {
+	private static final double[] QUANTILES = {0.01, 0.1, 0.5, 0.9, 0.99};
+
+	@Test
+	public void testExactQuantiles() {
+		ExactQuantileSketch sketch = new ExactQuantileSketch();
+		for (int i = 10; i >= 1; i--) {
+			sketch.add(i * 100);
+		}
+		assertEquals(100, sketch.getQuantile(0), 0);
+		assertEquals(500, sketch.getQuantile(0.5), 0);
+		assertEquals(900, sketch.getQuantile(0.9), 0);
+		assertEquals(1000, sketch.getQuantile(0.99), 0);
+		assertEquals(1000, sketch.getQuantile(1), 0);
+		assertTrue(Double.isNaN(new ExactQuantileSketch().getQuantile(0.5)));
+		assertThrows(IllegalArgumentException.class, () -> sketch.getQuantile(1.5));
+	}
+
+	@Test
+	public void testKllWithinRankError() {
+		Random random = new Random(594);
+		int n = 200000;
+		double[] values = new double[n];
+		KllQuantileSketch sketch = new KllQuantileSketch();
+		KllQuantileSketch other = new KllQuantileSketch();
+		for (int i = 0; i < n; i++) {
+			values[i] = Math.exp(random.nextGaussian() * 2);
+			(i % 2 == 0 ? sketch : other).add(values[i]);
+		}
+		sketch.merge(other);
+		Arrays.sort(values);
+
+		assertEquals(n, sketch.getCount());
+		assertEquals(values[0], sketch.getMin(), 0);
+		assertEquals(values[n - 1], sketch.getMax(), 0);
+		assertTrue(sketch.getRetained() <= 3 * KllQuantileSketch.DEFAULT_K + 64);
+		double bound = KllQuantileSketch.getNormalizedRankError(KllQuantileSketch.DEFAULT_K);
+		for (double q : QUANTILES) {
+			double value = sketch.getQuantile(q);
+			// the fraction of values up to the returned one must be close to the quantile
+			int rank = Arrays.binarySearch(values, value) + 1;
+			assertTrue(rank > 0, "the sketch returned a value that was never added");
+			assertEquals(q, (double) rank / n, bound, "quantile " + q);
+		}
+	}
+
+	@Test
+	public void testQuantileStrategyMatchesExact() {
+		List<PropertyRecord> records = new ArrayList<>();
+		for (int i = 1; i <= 100; i++) {
+			records.add(new PropertyRecord("19104", i * 1000.0, i * 10.0));
+		}
+		records.add(new PropertyRecord("19103", 250000.0, 900.0));
+
+		// below k values per ZIP the KLL sketch has not compacted and is exact
+		PropertyQuantileIndex approximate = PropertyQuantileIndex.build(records, KllQuantileSketch::new);
+		PropertyQuantileIndex exact = PropertyQuantileIndex.build(records, ExactQuantileSketch::new);
+		for (PropertyQuantileIndex index : Arrays.asList(approximate, exact)) {
+			QuantilePropertyAverageStrategy median = new QuantilePropertyAverageStrategy(index,
+					PropertyIndex.Metric.MARKET_VALUE, QuantilePropertyAverageStrategy.MEDIAN);
+			QuantilePropertyAverageStrategy p90 = new QuantilePropertyAverageStrategy(index,
+					PropertyIndex.Metric.LIVABLE_AREA, QuantilePropertyAverageStrategy.P90);
+			assertEquals(50000, median.computeAverage("19104", records));
+			assertEquals(900, p90.computeAverage("19104", records));
+			assertEquals(250000, median.computeAverage("19103", records));
+			assertEquals(0, median.computeAverage("19147", records));
+		}
+	}
+}
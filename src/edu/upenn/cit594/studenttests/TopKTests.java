@@ -0,0 +1,66 @@
+import java.util.*;
+
+import edu.upenn.cit594.processor.TopK;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Checks the bounded-heap selection against sorting all positions, with many equal
+ * values, positions without a value, and k from 0 to beyond the number of values.
+ */
+public class TopKTests {
+	// few distinct values so that ties are common; 0.0 and -0.0 are equal
+	private static final double[] POOL = {-2.5, -1, -0.0, 0.0, 1, 1, 3.75, Double.NaN};
+
+	@Test
+	public void testSelectionMatchesSorting() {
+		Random random = new Random(594);
+		for (int n = 0; n <= 40; n++) {
+			double[] values = new double[n];
+			for (int i = 0; i < n; i++) {
+				values[i] = POOL[random.nextInt(POOL.length)];
+			}
+			for (boolean largest : new boolean[] {true, false}) {
+				List<Integer> sorted = sortedPositions(values, largest);
+				for (int k = -1; k <= n + 3; k++) {
+					int[] selected = TopK.select(n, i -> values[i], k, largest);
+					List<Integer> expected = sorted.subList(0, Math.max(0, Math.min(k, sorted.size())));
+					assertEquals(expected, toList(selected), "n " + n + ", k " + k + ", largest " + largest + ": "
+							+ Arrays.toString(values));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testAllEqual() {
+		assertEquals(Arrays.asList(0, 1, 2), toList(TopK.select(10, i -> 7, 3, true)));
+		assertEquals(Arrays.asList(0, 1, 2), toList(TopK.select(10, i -> 7, 3, false)));
+		assertEquals(Arrays.asList(0, 1, 2, 3, 4), toList(TopK.select(5, i -> 7, 20, true)));
+		assertEquals(0, TopK.select(5, i -> Double.NaN, 3, true).length);
+	}
+
+	// The positions with a value, best first and equal values by position.
+	private static List<Integer> sortedPositions(double[] values, boolean largest) {
+		List<Integer> positions = new ArrayList<>();
+		for (int i = 0; i < values.length; i++) {
+			if (!Double.isNaN(values[i])) positions.add(i);
+		}
+		positions.sort((a, b) -> {
+			// primitive comparison, so that -0.0 and 0.0 tie as they do in the heap
+			if (values[a] != values[b]) return (values[a] > values[b]) == largest ? -1 : 1;
+			return Integer.compare(a, b);
+		});
+		return positions;
+	}
+
+	private static List<Integer> toList(int[] positions) {
+		List<Integer> list = new ArrayList<>();
+		for (int position : positions) {
+			list.add(position);
+		}
+		return list;
+	}
+}
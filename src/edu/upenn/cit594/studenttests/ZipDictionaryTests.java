@@ -0,0 +1,92 @@
+import java.util.*;
+
+import edu.upenn.cit594.util.ZipDictionary;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Checks that every code added to a dictionary maps to an ID and back, that codes
+ * around and between them are unknown, and that extending a dictionary keeps the
+ * IDs it had.
+ */
+public class ZipDictionaryTests {
+
+	@Test
+	public void testRoundTrip() {
+		Random random = new Random(594);
+		for (int round = 0; round < 200; round++) {
+			// clustered codes like a city's, or spread over the whole code space
+			boolean clustered = random.nextBoolean();
+			int spread = clustered ? 1 + random.nextInt(300) : 100000;
+			int low = clustered ? random.nextInt(100000) : 0;
+			List<Integer> added = new ArrayList<>();
+			int count = random.nextInt(60);
+			for (int i = 0; i < count; i++) {
+				added.add(Math.min(99999, low + random.nextInt(spread)));
+			}
+			// in random, ascending or descending order, which grow the builder differently
+			int order = random.nextInt(3);
+			if (order > 0) added.sort(order == 1 ? Comparator.naturalOrder() : Comparator.reverseOrder());
+			ZipDictionary.Builder builder = ZipDictionary.builder();
+			for (int code : added) {
+				builder.add(code).add(code);
+			}
+			ZipDictionary dictionary = builder.build();
+			assertCodes(new TreeSet<>(added), dictionary);
+
+			// the extension numbers its new codes after the existing ones
+			ZipDictionary.Builder extension = dictionary.toBuilder();
+			Set<Integer> codes = new TreeSet<>(added);
+			for (int i = 0; i < 20; i++) {
+				int code = random.nextInt(100000);
+				codes.add(code);
+				extension.add(code);
+			}
+			ZipDictionary extended = extension.build();
+			assertCodes(codes, extended);
+			for (int id = 0; id < dictionary.size(); id++) {
+				assertEquals(dictionary.getCode(id), extended.getCode(id));
+				assertSame(dictionary.getZip(id), extended.getZip(id));
+			}
+			for (int id = dictionary.size() + 1; id < extended.size(); id++) {
+				assertTrue(extended.getCode(id - 1) < extended.getCode(id), "new codes in ascending order");
+			}
+		}
+	}
+
+	@Test
+	public void testIgnoredCodes() {
+		ZipDictionary dictionary = ZipDictionary.builder().add(-1).add(100000).add("1910").add("19a04").add("19104")
+				.add(19103).build();
+		assertEquals(2, dictionary.size());
+		assertEquals("19103", dictionary.getZip(0));
+		assertEquals(1, dictionary.idOf("19104"));
+		assertSame(dictionary, dictionary.toBuilder().add(19104).add("19103").build());
+		assertSame(ZipDictionary.empty(), ZipDictionary.builder().build());
+		assertEquals(ZipDictionary.NO_ID, ZipDictionary.empty().idOf(0));
+		assertEquals(ZipDictionary.NO_ID, ZipDictionary.empty().idOf("19104"));
+	}
+
+	// Every code round-trips, its neighbours do not, and the ZIP order is ascending.
+	private static void assertCodes(Set<Integer> codes, ZipDictionary dictionary) {
+		assertEquals(codes.size(), dictionary.size());
+		for (int code : codes) {
+			int id = dictionary.idOf(code);
+			assertTrue(id >= 0 && id < dictionary.size(), "code " + code);
+			assertEquals(code, dictionary.getCode(id));
+			assertEquals(String.format("%05d", code), dictionary.getZip(id));
+			assertEquals(id, dictionary.idOf(dictionary.getZip(id)));
+			for (int neighbour : new int[] {code - 1, code + 1}) {
+				if (!codes.contains(neighbour)) assertEquals(ZipDictionary.NO_ID, dictionary.idOf(neighbour), "code " + neighbour);
+			}
+		}
+		int position = 0;
+		for (int code : codes) {
+			assertEquals(dictionary.idOf(code), dictionary.getIdInZipOrder(position++));
+		}
+		assertEquals(ZipDictionary.NO_ID, dictionary.idOf(-1));
+		assertEquals(ZipDictionary.NO_ID, dictionary.idOf(100000));
+	}
+}
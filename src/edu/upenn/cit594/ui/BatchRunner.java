@@ -0,0 +1,316 @@
+package edu.upenn.cit594.ui;
+
+import edu.upenn.cit594.datamanagement.DataManager;
+import edu.upenn.cit594.logging.Counter;
+import edu.upenn.cit594.logging.Logger;
+import edu.upenn.cit594.logging.MetricsRegistry;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Runs a file of queries against a DataManager without any console interaction.
+ *
+ * The command file has one query per line; blank lines and lines starting with
+ * {@code #} are skipped. Arguments are separated by whitespace:
+ * <pre>
+ *   population
+ *   vaccinations &lt;partial|full&gt; &lt;YYYY-MM-DD&gt;
+ *   marketvalue &lt;zip&gt;
+ *   livablearea &lt;zip&gt;
+ *   marketvaluepercapita &lt;zip&gt;
+ *   clusters &lt;YYYY-MM-DD&gt; &lt;minRate&gt; &lt;minArea&gt; &lt;minPopulation&gt;
+ * </pre>
+ * Every DataManager query is thread-safe, so queries are evaluated in chunks on the
+ * common fork/join pool while the file is still being read. Results are written in
+ * the order of the command file, as CSV rows ({@code line,query,key,value}) or as
+ * one JSON object per line. A query that cannot be parsed or fails produces an error
+ * result and does not stop the batch.
+ */
+public class BatchRunner {
+
+    /**
+     * Output format of the results.
+     */
+    public enum Format {
+        /** Header {@code line,query,key,value}, one row per result value. */
+        CSV,
+        /** One JSON object per query. */
+        JSON_LINES
+    }
+
+    private static final int CHUNK_SIZE = 64;
+    // chunks in flight before the reader waits for the writer to catch up
+    private static final int MAX_PENDING_CHUNKS = 4 * Runtime.getRuntime().availableProcessors();
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    private final DataManager dataManager;
+    private final Logger logger;
+    private final Format format;
+    private final ForkJoinPool pool;
+    private final Counter queryCount = MetricsRegistry.getInstance().counter("batch.queries");
+    private final Counter errorCount = MetricsRegistry.getInstance().counter("batch.errors");
+
+    /**
+     * @param dataManager the loaded data to query
+     * @param logger      logger for progress and error reporting
+     * @param format      output format of the results
+     */
+    public BatchRunner(DataManager dataManager, Logger logger, Format format) {
+        this.dataManager = dataManager;
+        this.logger = logger;
+        this.format = format;
+        this.pool = ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Runs every query in the command file and writes the results. The writer is
+     * flushed but not closed.
+     *
+     * @param commands the command file
+     * @param out      where the results are written; should be buffered
+     * @return the number of queries run
+     * @throws IOException if reading the commands or writing the results fails
+     */
+    public int run(BufferedReader commands, Writer out) throws IOException {
+        long start = System.nanoTime();
+        if (format == Format.CSV) out.write("line,query,key,value\n");
+
+        ArrayDeque<ForkJoinTask<String>> pending = new ArrayDeque<>();
+        List<Query> chunk = new ArrayList<>(CHUNK_SIZE);
+        int queries = 0;
+        int lineNumber = 0;
+        String line;
+        while ((line = commands.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) continue;
+            chunk.add(parse(lineNumber, trimmed));
+            queries++;
+            if (chunk.size() == CHUNK_SIZE) {
+                submit(chunk, pending);
+                chunk = new ArrayList<>(CHUNK_SIZE);
+                while (pending.size() > MAX_PENDING_CHUNKS) {
+                    out.write(pending.removeFirst().join());
+                }
+            }
+        }
+        if (!chunk.isEmpty()) submit(chunk, pending);
+        while (!pending.isEmpty()) {
+            out.write(pending.removeFirst().join());
+        }
+        out.flush();
+
+        queryCount.add(queries);
+        logger.log("Batch finished: " + queries + " queries in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return queries;
+    }
+
+    private void submit(List<Query> chunk, ArrayDeque<ForkJoinTask<String>> pending) {
+        pending.addLast(pool.submit(() -> evaluate(chunk)));
+    }
+
+    // Runs a chunk of queries and formats their results; called on a pool thread.
+    private String evaluate(List<Query> chunk) {
+        StringBuilder sb = new StringBuilder(chunk.size() * 64);
+        for (Query query : chunk) {
+            if (query.error != null) {
+                appendError(sb, query, query.error);
+                continue;
+            }
+            Object result;
+            try {
+                result = query.evaluation.evaluate(dataManager);
+            } catch (RuntimeException e) {
+                appendError(sb, query, String.valueOf(e.getMessage()));
+                continue;
+            }
+            if (format == Format.CSV) {
+                appendCsv(sb, query, result);
+            } else {
+                appendJson(sb, query, result);
+            }
+        }
+        return sb.toString();
+    }
+
+    private Query parse(int lineNumber, String text) {
+        String[] tokens = text.split("\\s+");
+        String command = tokens[0].toLowerCase();
+        String[] args = Arrays.copyOfRange(tokens, 1, tokens.length);
+        try {
+            switch (command) {
+                case "population":
+                    expectArgs(args, 0);
+                    return new Query(lineNumber, command, args, DataManager::getTotalPopulation);
+                case "vaccinations": {
+                    expectArgs(args, 2);
+                    String type = args[0].toLowerCase();
+                    if (!type.equals("partial") && !type.equals("full")) {
+                        throw new IllegalArgumentException("type must be partial or full");
+                    }
+                    LocalDate date = LocalDate.parse(args[1], DATE_FORMAT);
+                    return new Query(lineNumber, command, args, dm -> dm.getVaccinationsPerCapita(type, date));
+                }
+                case "marketvalue": {
+                    expectArgs(args, 1);
+                    String zip = args[0];
+                    return new Query(lineNumber, command, args, dm -> dm.getAverageMarketValue(zip));
+                }
+                case "livablearea": {
+                    expectArgs(args, 1);
+                    String zip = args[0];
+                    return new Query(lineNumber, command, args, dm -> dm.getAverageLivableArea(zip));
+                }
+                case "marketvaluepercapita": {
+                    expectArgs(args, 1);
+                    String zip = args[0];
+                    return new Query(lineNumber, command, args, dm -> dm.getMarketValuePerCapita(zip));
+                }
+                case "clusters": {
+                    expectArgs(args, 4);
+                    LocalDate date = LocalDate.parse(args[0], DATE_FORMAT);
+                    double minRate = Double.parseDouble(args[1]);
+                    int minArea = Integer.parseInt(args[2]);
+                    int minPopulation = Integer.parseInt(args[3]);
+                    return new Query(lineNumber, command, args,
+                            dm -> dm.getWellnessClusters(date, minRate, minArea, minPopulation));
+                }
+                default:
+                    return new Query(lineNumber, command, args, "unknown query");
+            }
+        } catch (DateTimeParseException e) {
+            return new Query(lineNumber, command, args, "invalid date, expected YYYY-MM-DD");
+        } catch (NumberFormatException e) {
+            return new Query(lineNumber, command, args, "invalid number: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return new Query(lineNumber, command, args, e.getMessage());
+        }
+    }
+
+    private static void expectArgs(String[] args, int count) {
+        if (args.length != count) {
+            throw new IllegalArgumentException("expected " + count + " argument" + (count == 1 ? "" : "s"));
+        }
+    }
+
+    private void appendError(StringBuilder sb, Query query, String message) {
+        errorCount.increment();
+        logger.log("Batch line " + query.line + ": " + message);
+        if (format == Format.CSV) {
+            appendCsvRow(sb, query.line, "error", query.command, message);
+        } else {
+            appendJsonStart(sb, query);
+            sb.append(",\"error\":");
+            Json.appendString(sb, message);
+            sb.append("}\n");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void appendCsv(StringBuilder sb, Query query, Object result) {
+        if (result instanceof Map) {
+            for (Map.Entry<String, Double> entry : ((Map<String, Double>) result).entrySet()) {
+                appendCsvRow(sb, query.line, query.command, entry.getKey(), Json.fixed4(entry.getValue()));
+            }
+        } else if (result instanceof List) {
+            List<Set<String>> clusters = (List<Set<String>>) result;
+            for (int i = 0; i < clusters.size(); i++) {
+                appendCsvRow(sb, query.line, query.command, String.valueOf(i + 1), String.join(" ", clusters.get(i)));
+            }
+        } else {
+            appendCsvRow(sb, query.line, query.command, String.join(" ", query.args), String.valueOf(result));
+        }
+    }
+
+    private static void appendCsvRow(StringBuilder sb, int line, String query, String key, String value) {
+        sb.append(line).append(',');
+        appendCsvField(sb, query);
+        sb.append(',');
+        appendCsvField(sb, key);
+        sb.append(',');
+        appendCsvField(sb, value);
+        sb.append('\n');
+    }
+
+    private static void appendCsvField(StringBuilder sb, String field) {
+        boolean quote = false;
+        for (int i = 0; i < field.length() && !quote; i++) {
+            char c = field.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            sb.append(field);
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '"') sb.append('"');
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void appendJson(StringBuilder sb, Query query, Object result) {
+        appendJsonStart(sb, query);
+        sb.append(",\"result\":");
+        if (result instanceof Map) {
+            Json.appendRates(sb, (Map<String, Double>) result);
+        } else if (result instanceof List) {
+            Json.appendClusters(sb, (List<Set<String>>) result);
+        } else {
+            sb.append(result);
+        }
+        sb.append("}\n");
+    }
+
+    private static void appendJsonStart(StringBuilder sb, Query query) {
+        sb.append("{\"line\":").append(query.line).append(",\"query\":");
+        Json.appendString(sb, query.command);
+        sb.append(",\"args\":[");
+        for (int i = 0; i < query.args.length; i++) {
+            if (i > 0) sb.append(',');
+            Json.appendString(sb, query.args[i]);
+        }
+        sb.append(']');
+    }
+
+    // Computes the result of a parsed query.
+    private interface Evaluation {
+        Object evaluate(DataManager dataManager);
+    }
+
+    // One query of the command file; evaluation is null if the line could not be parsed.
+    private static class Query {
+        final int line;
+        final String command;
+        final String[] args;
+        final Evaluation evaluation;
+        final String error;
+
+        Query(int line, String command, String[] args, Evaluation evaluation) {
+            this.line = line;
+            this.command = command;
+            this.args = args;
+            this.evaluation = evaluation;
+            this.error = null;
+        }
+
+        Query(int line, String command, String[] args, String error) {
+            this.line = line;
+            this.command = command;
+            this.args = args;
+            this.evaluation = null;
+            this.error = error;
+        }
+    }
+}
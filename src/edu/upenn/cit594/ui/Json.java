@@ -0,0 +1,80 @@
+package edu.upenn.cit594.ui;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Appends query results as JSON. Shared by the batch runner and the query server.
+ */
+final class Json {
+
+    private Json() {
+    }
+
+    static void appendString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Appends ZIP code to rate mappings as an object, with rates to four decimals.
+     */
+    static void appendRates(StringBuilder sb, Map<String, Double> rates) {
+        sb.append('{');
+        boolean first = true;
+        for (Map.Entry<String, Double> entry : rates.entrySet()) {
+            if (!first) sb.append(',');
+            first = false;
+            appendString(sb, entry.getKey());
+            sb.append(':').append(fixed4(entry.getValue()));
+        }
+        sb.append('}');
+    }
+
+    /**
+     * Appends clusters as an array of arrays of ZIP codes.
+     */
+    static void appendClusters(StringBuilder sb, List<Set<String>> clusters) {
+        sb.append('[');
+        boolean firstCluster = true;
+        for (Set<String> cluster : clusters) {
+            if (!firstCluster) sb.append(',');
+            firstCluster = false;
+            sb.append('[');
+            boolean first = true;
+            for (String zip : cluster) {
+                if (!first) sb.append(',');
+                first = false;
+                appendString(sb, zip);
+            }
+            sb.append(']');
+        }
+        sb.append(']');
+    }
+
+    /**
+     * @return the value with four decimals, the same text as the console's %.4f but
+     *         always with a '.' as the decimal separator
+     */
+    static String fixed4(double value) {
+        return String.format(Locale.ROOT, "%.4f", value);
+    }
+}
@@ -0,0 +1,231 @@
+package edu.upenn.cit594.ui;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import edu.upenn.cit594.datamanagement.DataManager;
+import edu.upenn.cit594.logging.Counter;
+import edu.upenn.cit594.logging.Logger;
+import edu.upenn.cit594.logging.MetricsRegistry;
+import edu.upenn.cit594.logging.Timer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * An HTTP server on the loopback interface that answers the same queries as the
+ * console menu (actions 2 to 7) with JSON. Only GET is supported:
+ * <pre>
+ *   /population
+ *   /vaccinations?type=partial|full&amp;date=YYYY-MM-DD
+ *   /marketvalue?zip=ZIP
+ *   /livablearea?zip=ZIP
+ *   /marketvaluepercapita?zip=ZIP
+ *   /clusters?date=YYYY-MM-DD&amp;minRate=R&amp;minArea=A&amp;minPopulation=P
+ * </pre>
+ * Invalid parameters get a 400 response with an {@code error} member.
+ *
+ * The DataManager is loaded before the server starts and only read afterwards, so
+ * every request runs directly on its own thread against the shared indexes and
+ * caches. On a JDK with virtual threads each request gets a virtual thread; on
+ * older JDKs a cached pool of platform threads is used. Every response has a fixed
+ * content length, so clients can keep connections alive between requests. On kept-alive
+ * connections the JDK server only answers without delay if the process-wide
+ * {@code sun.net.httpserver.nodelay} property was set before the first server started
+ * (see {@code Main}).
+ */
+public class QueryServer {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final int BACKLOG = 256;
+    private static final int STOP_DELAY_SECONDS = 1;
+
+    private final Logger logger;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Timer requestTimer = MetricsRegistry.getInstance().timer("http.request");
+    private final Counter errorCount = MetricsRegistry.getInstance().counter("http.errors");
+
+    /**
+     * Binds the server to the loopback interface. Call {@link #start} to accept requests.
+     *
+     * @param dataManager the loaded data to serve
+     * @param logger      logger for status and error reporting
+     * @param port        port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public QueryServer(DataManager dataManager, Logger logger, int port) throws IOException {
+        this.logger = logger;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        route("/population", params -> {
+            StringBuilder sb = new StringBuilder("{\"population\":");
+            return sb.append(dataManager.getTotalPopulation()).append('}');
+        });
+        route("/vaccinations", params -> {
+            String type = param(params, "type").toLowerCase();
+            if (!type.equals("partial") && !type.equals("full")) {
+                throw new IllegalArgumentException("type must be partial or full");
+            }
+            LocalDate date = dateParam(params, "date");
+            StringBuilder sb = new StringBuilder("{\"type\":\"").append(type).append("\",\"date\":\"").append(date)
+                    .append("\",\"rates\":");
+            Json.appendRates(sb, dataManager.getVaccinationsPerCapita(type, date));
+            return sb.append('}');
+        });
+        route("/marketvalue", params -> zipResult(params, "averageMarketValue", dataManager::getAverageMarketValue));
+        route("/livablearea", params -> zipResult(params, "averageLivableArea", dataManager::getAverageLivableArea));
+        route("/marketvaluepercapita", params -> zipResult(params, "marketValuePerCapita", dataManager::getMarketValuePerCapita));
+        route("/clusters", params -> {
+            LocalDate date = dateParam(params, "date");
+            double minRate = Double.parseDouble(param(params, "minRate"));
+            int minArea = Integer.parseInt(param(params, "minArea"));
+            int minPopulation = Integer.parseInt(param(params, "minPopulation"));
+            StringBuilder sb = new StringBuilder("{\"date\":\"").append(date).append("\",\"clusters\":");
+            Json.appendClusters(sb, dataManager.getWellnessClusters(date, minRate, minArea, minPopulation));
+            return sb.append('}');
+        });
+    }
+
+    /**
+     * Starts accepting requests on a background thread.
+     */
+    public void start() {
+        server.start();
+        logger.log("Query server listening on http://localhost:" + getPort());
+    }
+
+    /**
+     * Stops accepting requests, waits briefly for the ones in progress and releases
+     * the request threads.
+     */
+    public void stop() {
+        server.stop(STOP_DELAY_SECONDS);
+        executor.shutdown();
+        logger.log("Query server stopped");
+    }
+
+    /**
+     * @return the port the server is bound to
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() needs Java 21; look it up so the
+    // code still compiles and runs on the Java 17 baseline.
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "query-server");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    // Computes the JSON body of a response from the query parameters.
+    private interface Endpoint {
+        CharSequence respond(Map<String, String> params);
+    }
+
+    private interface ZipQuery {
+        int apply(String zip);
+    }
+
+    private void route(String path, Endpoint endpoint) {
+        server.createContext(path, exchange -> handle(exchange, path, endpoint));
+    }
+
+    private void handle(HttpExchange exchange, String path, Endpoint endpoint) throws IOException {
+        long start = System.nanoTime();
+        try (InputStream body = exchange.getRequestBody()) {
+            // the request body must be consumed for the connection to be reused
+            body.transferTo(OutputStream.nullOutputStream());
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                sendError(exchange, 405, "method not allowed");
+            } else if (!path.equals(exchange.getRequestURI().getPath())) {
+                sendError(exchange, 404, "not found");
+            } else {
+                CharSequence json;
+                try {
+                    json = endpoint.respond(parseQuery(exchange.getRequestURI().getRawQuery()));
+                } catch (DateTimeParseException e) {
+                    sendError(exchange, 400, "invalid date, expected YYYY-MM-DD");
+                    return;
+                } catch (NumberFormatException e) {
+                    sendError(exchange, 400, "invalid number: " + e.getMessage());
+                    return;
+                } catch (IllegalArgumentException e) {
+                    sendError(exchange, 400, e.getMessage());
+                    return;
+                }
+                send(exchange, 200, json);
+            }
+        } catch (RuntimeException e) {
+            logger.log("Error handling " + exchange.getRequestURI() + ": " + e);
+            // once the headers are out, the exchange can only be closed
+            if (exchange.getResponseCode() == -1) sendError(exchange, 500, "internal error");
+        } finally {
+            exchange.close();
+            requestTimer.recordSince(start);
+        }
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        errorCount.increment();
+        StringBuilder sb = new StringBuilder("{\"error\":");
+        Json.appendString(sb, message);
+        send(exchange, status, sb.append('}'));
+    }
+
+    private static void send(HttpExchange exchange, int status, CharSequence json) throws IOException {
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static CharSequence zipResult(Map<String, String> params, String name, ZipQuery query) {
+        String zip = param(params, "zip");
+        StringBuilder sb = new StringBuilder("{\"zip\":");
+        Json.appendString(sb, zip);
+        return sb.append(",\"").append(name).append("\":").append(query.apply(zip)).append('}');
+    }
+
+    private static String param(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null) throw new IllegalArgumentException("missing parameter " + name);
+        return value;
+    }
+
+    private static LocalDate dateParam(Map<String, String> params, String name) {
+        return LocalDate.parse(param(params, name), DATE_FORMAT);
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return params;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+}
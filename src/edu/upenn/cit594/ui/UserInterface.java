@@ -1,7 +1,12 @@
 package edu.upenn.cit594.ui;
 
 import edu.upenn.cit594.datamanagement.DataManager;
+import edu.upenn.cit594.datamanagement.DataManager.Ranking;
 import edu.upenn.cit594.logging.Logger;
+import edu.upenn.cit594.logging.MetricsRegistry;
+import edu.upenn.cit594.processor.CovidTimeSeries.Metric;
+import edu.upenn.cit594.processor.PropertyIndex;
+import edu.upenn.cit594.processor.QuantilePropertyAverageStrategy;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
@@ -16,6 +21,7 @@ public class UserInterface {
     private final DataManager dataManager;
     private final Logger logger;
     private final Scanner scanner;
+    private final boolean warmup;
     private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
     /**
@@ -25,18 +31,36 @@ public class UserInterface {
      * @param logger The Logger instance for logging user actions
      */
     public UserInterface(DataManager dataManager, Logger logger) {
+        this(dataManager, logger, false);
+    }
+
+    /**
+     * Constructs a new UserInterface that may warm up the DataManager.
+     *
+     * @param dataManager The DataManager instance to handle data operations
+     * @param logger The Logger instance for logging user actions
+     * @param warmup Whether to load the data sets that are still pending in the
+     *               background once the menu has been shown
+     */
+    public UserInterface(DataManager dataManager, Logger logger, boolean warmup) {
         this.dataManager = dataManager;
         this.logger = logger;
         this.scanner = new Scanner(System.in);
+        this.warmup = warmup;
     }
 
     /**
      * Starts the user interface and begins processing user commands.
-     * Displays the main menu and handles user input in a continuous loop
-     * until the user chooses to exit (option 0).
+     * Displays the main menu, starts the warm-up if one was asked for, and handles
+     * user input in a continuous loop until the user chooses to exit (option 0).
      */
     public void start() {
         displayMainMenu();
+        if (warmup) {
+            dataManager.loadAll().whenComplete((ignored, e) -> {
+                if (e != null) logger.log("Error loading data: " + e.getCause());
+            });
+        }
         while (true) {
             System.out.print("> ");
             String input = scanner.nextLine().trim();
@@ -53,6 +77,10 @@ public class UserInterface {
                     case 5: showAverageLivableArea(); break;
                     case 6: showMarketValuePerCapita(); break;
                     case 7: showWellnessClusters(); break;
+                    case 8: showMetrics(); break;
+                    case 9: showCovidTrends(); break;
+                    case 10: showTopZipCodes(); break;
+                    case 11: showPropertyDistribution(); break;
                     default: System.out.println("Invalid action");
                 }
             } catch (NumberFormatException e) {
@@ -75,18 +103,35 @@ public class UserInterface {
         System.out.println("5. Show average livable area");
         System.out.println("6. Show market value per capita");
         System.out.println("7. Show wellness clusters");
+        System.out.println("8. Show metrics");
+        System.out.println("9. Show COVID trends");
+        System.out.println("10. Show top ZIP codes");
+        System.out.println("11. Show property value distribution");
     }
 
     /**
-     * Displays the available actions based on currently loaded data.
-     * Currently shows all actions; could be enhanced to show only actions
-     * available based on loaded data sets.
+     * Displays the available actions along with the state of each data set.
+     * Data sets that are loaded on first use are reported as pending until an
+     * action needs them, and as loading while they are being read; the actions
+     * that need them stay available and wait for the data.
      */
     private void displayAvailableActions() {
         System.out.println("Available actions based on loaded data:");
+        dataManager.getDatasetStatus().forEach((name, status) ->
+                System.out.println("  " + name + ": " + status.name().toLowerCase()));
         displayMainMenu();
     }
 
+    /**
+     * Displays every metric recorded so far: reader row counts and timings, query
+     * latencies and result cache counters. Times are in milliseconds.
+     */
+    private void showMetrics() {
+        for (String line : MetricsRegistry.getInstance().dump()) {
+            System.out.println(line);
+        }
+    }
+
     /**
      * Displays the total population across all ZIP codes.
      * Retrieves data from the DataManager and formats the output.
@@ -214,4 +259,136 @@ public class UserInterface {
             }
         }
     }
+
+    /**
+     * Displays how a ZIP code's COVID figures developed over a range of days.
+     * Prompts the user for a ZIP code and a start and end date, then shows the change
+     * in partial, full and booster vaccinations over the range, followed by one line
+     * per day with a record: the vaccination counts and the 7-day rolling averages of
+     * positive tests, hospitalizations and deaths.
+     */
+    private void showCovidTrends() {
+        System.out.print("Enter ZIP code: ");
+        String zip = scanner.nextLine().trim();
+        LocalDate from = promptDate("Enter start date (YYYY-MM-DD): ");
+        LocalDate to;
+        while (true) {
+            to = promptDate("Enter end date (YYYY-MM-DD): ");
+            if (!to.isBefore(from)) break;
+            System.out.println("Invalid date, please enter a date on or after " + from + ".");
+        }
+
+        Map<Metric, Integer> changes = dataManager.getDeltas(zip, from, to);
+        if (changes.isEmpty()) {
+            System.out.println("No COVID data for " + zip + " up to " + to);
+            return;
+        }
+        System.out.printf("Change from %s to %s: partial %+d, full %+d, boosters %+d%n", from, to,
+                changes.get(Metric.PARTIAL), changes.get(Metric.FULL), changes.get(Metric.BOOSTERS));
+
+        SortedMap<LocalDate, Integer> partial = dataManager.getTrajectory(zip, Metric.PARTIAL, from, to);
+        SortedMap<LocalDate, Integer> full = dataManager.getTrajectory(zip, Metric.FULL, from, to);
+        SortedMap<LocalDate, Integer> boosters = dataManager.getTrajectory(zip, Metric.BOOSTERS, from, to);
+        SortedMap<LocalDate, Double> pos = dataManager.getRollingAverages(zip, Metric.POS, from, to);
+        SortedMap<LocalDate, Double> hospitalized = dataManager.getRollingAverages(zip, Metric.HOSPITALIZED, from, to);
+        SortedMap<LocalDate, Double> deaths = dataManager.getRollingAverages(zip, Metric.DEATHS, from, to);
+        System.out.printf("%-10s %10s %10s %10s %10s %10s %10s%n",
+                "Date", "Partial", "Full", "Boosters", "Pos 7d", "Hosp 7d", "Deaths 7d");
+        for (LocalDate date : partial.keySet()) {
+            System.out.printf("%-10s %10d %10d %10d %10.1f %10.1f %10.1f%n", date, partial.get(date),
+                    full.get(date), boosters.get(date), pos.get(date), hospitalized.get(date), deaths.get(date));
+        }
+    }
+
+    /**
+     * Displays the ZIP codes with the highest or lowest value of a metric.
+     * Prompts the user for the metric (and a date for vaccination rates), the order
+     * and the number of ZIP codes, and lists them best first.
+     */
+    private void showTopZipCodes() {
+        Map<String, Ranking> rankings = new LinkedHashMap<>();
+        rankings.put("marketvalue", Ranking.AVERAGE_MARKET_VALUE);
+        rankings.put("livablearea", Ranking.AVERAGE_LIVABLE_AREA);
+        rankings.put("marketvaluepercapita", Ranking.MARKET_VALUE_PER_CAPITA);
+        rankings.put("partial", Ranking.PARTIAL_VACCINATION_RATE);
+        rankings.put("full", Ranking.FULL_VACCINATION_RATE);
+
+        Ranking ranking;
+        while (true) {
+            System.out.print("Enter metric (" + String.join("/", rankings.keySet()) + "): ");
+            ranking = rankings.get(scanner.nextLine().trim().toLowerCase());
+            if (ranking != null) break;
+            System.out.println("Invalid metric.");
+        }
+        boolean rate = ranking == Ranking.PARTIAL_VACCINATION_RATE || ranking == Ranking.FULL_VACCINATION_RATE;
+        LocalDate date = rate ? promptDate("Enter date (YYYY-MM-DD): ") : null;
+
+        boolean highest;
+        while (true) {
+            System.out.print("Enter order (highest/lowest): ");
+            String order = scanner.nextLine().trim().toLowerCase();
+            if (order.equals("highest") || order.equals("lowest")) {
+                highest = order.equals("highest");
+                break;
+            }
+            System.out.println("Invalid order, please enter highest or lowest.");
+        }
+
+        int k;
+        while (true) {
+            System.out.print("Enter number of ZIP codes: ");
+            String countStr = scanner.nextLine().trim();
+            try {
+                k = Integer.parseInt(countStr);
+                if (k > 0) break;
+            } catch (NumberFormatException ignored) {}
+            System.out.println("Invalid number, please enter a positive integer.");
+        }
+
+        Map<String, Double> top = dataManager.getTopZips(ranking, date, k, highest);
+        if (top.isEmpty()) {
+            System.out.println("No ZIP codes have data for this metric.");
+            return;
+        }
+        int position = 1;
+        for (Map.Entry<String, Double> entry : top.entrySet()) {
+            if (rate) {
+                System.out.printf("%d. %s: %.4f%n", position++, entry.getKey(), entry.getValue());
+            } else {
+                System.out.printf("%d. %s: %d%n", position++, entry.getKey(), entry.getValue().longValue());
+            }
+        }
+    }
+
+    /**
+     * Displays the median, 90th and 99th percentile of the market values and livable
+     * areas in a specified ZIP code. The percentiles are approximate, see
+     * {@link DataManager#getPropertyQuantile}.
+     */
+    private void showPropertyDistribution() {
+        System.out.print("Enter ZIP code: ");
+        String zip = scanner.nextLine().trim();
+        System.out.printf("%-13s %10s %10s %10s%n", "", "Median", "P90", "P99");
+        printPercentiles("Market value", zip, PropertyIndex.Metric.MARKET_VALUE);
+        printPercentiles("Livable area", zip, PropertyIndex.Metric.LIVABLE_AREA);
+    }
+
+    private void printPercentiles(String label, String zip, PropertyIndex.Metric metric) {
+        System.out.printf("%-13s %10d %10d %10d%n", label + ":",
+                dataManager.getPropertyQuantile(zip, metric, QuantilePropertyAverageStrategy.MEDIAN),
+                dataManager.getPropertyQuantile(zip, metric, QuantilePropertyAverageStrategy.P90),
+                dataManager.getPropertyQuantile(zip, metric, QuantilePropertyAverageStrategy.P99));
+    }
+
+    private LocalDate promptDate(String prompt) {
+        while (true) {
+            System.out.print(prompt);
+            String dateStr = scanner.nextLine().trim();
+            try {
+                return LocalDate.parse(dateStr, dateFormatter);
+            } catch (DateTimeParseException e) {
+                System.out.println("Invalid date, please use YYYY-MM-DD.");
+            }
+        }
+    }
 }
\ No newline at end of file
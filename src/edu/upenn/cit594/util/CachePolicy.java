@@ -0,0 +1,43 @@
+package edu.upenn.cit594.util;
+
+import java.time.Duration;
+
+/**
+ * Decides which {@link ResultCache} a component memoizes its query results in.
+ */
+public class CachePolicy {
+    private final int maxEntries;
+    private final Duration ttl;
+
+    private CachePolicy(int maxEntries, Duration ttl) {
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+    }
+
+    /**
+     * @return a policy whose caches keep every result
+     */
+    public static CachePolicy unbounded() {
+        return new CachePolicy(0, null);
+    }
+
+    /**
+     * @param maxEntries maximum number of entries per cache
+     * @param ttl        lifetime of an entry, or null for no expiry
+     * @return a policy whose caches evict the least recently used entry when full
+     */
+    public static CachePolicy lru(int maxEntries, Duration ttl) {
+        if (maxEntries < 1) throw new IllegalArgumentException("maxEntries must be at least 1");
+        return new CachePolicy(maxEntries, ttl);
+    }
+
+    public <K, V> ResultCache<K, V> newCache() {
+        return maxEntries == 0 ? new UnboundedResultCache<>() : new LruResultCache<>(maxEntries, ttl);
+    }
+
+    @Override
+    public String toString() {
+        if (maxEntries == 0) return "unbounded";
+        return "lru(" + maxEntries + (ttl == null ? "" : ", ttl=" + ttl) + ")";
+    }
+}
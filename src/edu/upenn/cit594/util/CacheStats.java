@@ -0,0 +1,35 @@
+package edu.upenn.cit594.util;
+
+/**
+ * Immutable snapshot of a {@link ResultCache}'s counters.
+ */
+public class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final int size;
+
+    public CacheStats(long hits, long misses, long evictions, int size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+    }
+
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+    /** Entries dropped because the cache was full or the entry had expired. */
+    public long getEvictions() { return evictions; }
+    public int getSize() { return size; }
+
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0.0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d misses=%d evictions=%d size=%d hitRate=%.2f",
+                hits, misses, evictions, size, getHitRate());
+    }
+}
@@ -0,0 +1,179 @@
+package edu.upenn.cit594.util;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Column-oriented store for COVID records. Each field lives in its own primitive
+ * array: ZIP codes as int codes (see {@link ZipCodes}), timestamps as epoch
+ * seconds (the local timestamp read as UTC) and the counts as ints. This avoids
+ * one object graph per record and keeps scans over a single field cache friendly.
+ */
+public class CovidColumns {
+    private static final int SECONDS_PER_DAY = 86_400;
+
+    private int size;
+    private int[] zipCodes;
+    private long[] timestamps;
+    private int[] partialVaccinated;
+    private int[] fullVaccinated;
+    private int[] pos;
+    private int[] neg;
+    private int[] boosters;
+    private int[] hospitalized;
+    private int[] deaths;
+
+    public CovidColumns() {
+        this(1024);
+    }
+
+    public CovidColumns(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 16);
+        zipCodes = new int[capacity];
+        timestamps = new long[capacity];
+        partialVaccinated = new int[capacity];
+        fullVaccinated = new int[capacity];
+        pos = new int[capacity];
+        neg = new int[capacity];
+        boosters = new int[capacity];
+        hospitalized = new int[capacity];
+        deaths = new int[capacity];
+    }
+
+    /**
+     * Copies a list of records into a new columnar store.
+     *
+     * @param records the records to copy
+     * @return the populated columns
+     */
+    public static CovidColumns from(List<CovidRecord> records) {
+        CovidColumns columns = new CovidColumns(records.size());
+        for (CovidRecord record : records) {
+            columns.add(record);
+        }
+        return columns;
+    }
+
+    /**
+     * Appends a row.
+     *
+     * @param zipCode     int code of the ZIP
+     * @param epochSecond timestamp in epoch seconds
+     */
+    public void add(int zipCode, long epochSecond, int partialVaccinated, int fullVaccinated,
+                    int pos, int neg, int boosters, int hospitalized, int deaths) {
+        if (size == zipCodes.length) grow();
+        this.zipCodes[size] = zipCode;
+        this.timestamps[size] = epochSecond;
+        this.partialVaccinated[size] = partialVaccinated;
+        this.fullVaccinated[size] = fullVaccinated;
+        this.pos[size] = pos;
+        this.neg[size] = neg;
+        this.boosters[size] = boosters;
+        this.hospitalized[size] = hospitalized;
+        this.deaths[size] = deaths;
+        size++;
+    }
+
+    public void add(CovidRecord record) {
+        add(ZipCodes.toCode(record.getZipCode()), toEpochSecond(record.getTimestamp()),
+                record.getPartialVaccinated(), record.getFullVaccinated(), record.getPos(), record.getNeg(),
+                record.getBoosters(), record.getHospitalized(), record.getDeaths());
+    }
+
+    /**
+     * Appends every row of another store.
+     */
+    public void addAll(CovidColumns other) {
+        for (int row = 0; row < other.size; row++) {
+            add(other.zipCodes[row], other.timestamps[row], other.partialVaccinated[row], other.fullVaccinated[row],
+                    other.pos[row], other.neg[row], other.boosters[row], other.hospitalized[row], other.deaths[row]);
+        }
+    }
+
+    /**
+     * @return the number of rows that can be added before the arrays are reallocated
+     */
+    public int capacity() {
+        return zipCodes.length;
+    }
+
+    /**
+     * Returns a copy of these columns with room for at least {@code minCapacity} rows.
+     */
+    public CovidColumns copy(int minCapacity) {
+        CovidColumns copy = new CovidColumns(Math.max(minCapacity, size));
+        System.arraycopy(zipCodes, 0, copy.zipCodes, 0, size);
+        System.arraycopy(timestamps, 0, copy.timestamps, 0, size);
+        System.arraycopy(partialVaccinated, 0, copy.partialVaccinated, 0, size);
+        System.arraycopy(fullVaccinated, 0, copy.fullVaccinated, 0, size);
+        System.arraycopy(pos, 0, copy.pos, 0, size);
+        System.arraycopy(neg, 0, copy.neg, 0, size);
+        System.arraycopy(boosters, 0, copy.boosters, 0, size);
+        System.arraycopy(hospitalized, 0, copy.hospitalized, 0, size);
+        System.arraycopy(deaths, 0, copy.deaths, 0, size);
+        copy.size = size;
+        return copy;
+    }
+
+    private void grow() {
+        int capacity = zipCodes.length * 2;
+        zipCodes = Arrays.copyOf(zipCodes, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        partialVaccinated = Arrays.copyOf(partialVaccinated, capacity);
+        fullVaccinated = Arrays.copyOf(fullVaccinated, capacity);
+        pos = Arrays.copyOf(pos, capacity);
+        neg = Arrays.copyOf(neg, capacity);
+        boosters = Arrays.copyOf(boosters, capacity);
+        hospitalized = Arrays.copyOf(hospitalized, capacity);
+        deaths = Arrays.copyOf(deaths, capacity);
+    }
+
+    public static long toEpochSecond(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    public static LocalDateTime toLocalDateTime(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+
+    public int size() { return size; }
+    public int getZipCode(int row) { return zipCodes[row]; }
+    public long getEpochSecond(int row) { return timestamps[row]; }
+    public long getEpochDay(int row) { return Math.floorDiv(timestamps[row], SECONDS_PER_DAY); }
+    public int getPartialVaccinated(int row) { return partialVaccinated[row]; }
+    public int getFullVaccinated(int row) { return fullVaccinated[row]; }
+    public int getPos(int row) { return pos[row]; }
+    public int getNeg(int row) { return neg[row]; }
+    public int getBoosters(int row) { return boosters[row]; }
+    public int getHospitalized(int row) { return hospitalized[row]; }
+    public int getDeaths(int row) { return deaths[row]; }
+
+    /**
+     * Materializes one row as a {@link CovidRecord}.
+     */
+    public CovidRecord getRecord(int row) {
+        return new CovidRecord(ZipCodes.format(zipCodes[row]), toLocalDateTime(timestamps[row]),
+                partialVaccinated[row], fullVaccinated[row], pos[row], neg[row],
+                boosters[row], hospitalized[row], deaths[row]);
+    }
+
+    /**
+     * Returns a read-only list view that materializes each record on access.
+     */
+    public List<CovidRecord> asRecords() {
+        return new AbstractList<CovidRecord>() {
+            @Override
+            public CovidRecord get(int index) {
+                Objects.checkIndex(index, size);
+                return getRecord(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
@@ -0,0 +1,126 @@
+package edu.upenn.cit594.util;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A cache holding at most a fixed number of entries, dropping the least recently
+ * used one when it is full, and optionally expiring entries a fixed time after they
+ * were computed.
+ *
+ * The lock only guards the bookkeeping; values are computed outside it, so a slow
+ * query does not hold up hits on other keys. Threads that miss on the same key wait
+ * for the one computation instead of repeating it.
+ */
+public class LruResultCache<K, V> implements ResultCache<K, V> {
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxEntries maximum number of cached entries, at least 1
+     * @param ttl        how long an entry stays valid after it is computed, or null to
+     *                   keep entries until they are evicted
+     */
+    public LruResultCache(int maxEntries, Duration ttl) {
+        if (maxEntries < 1) throw new IllegalArgumentException("maxEntries must be at least 1");
+        if (ttl != null && (ttl.isNegative() || ttl.isZero())) throw new IllegalArgumentException("ttl must be positive");
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl == null ? 0 : ttl.toNanos();
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() <= LruResultCache.this.maxEntries) return false;
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    public LruResultCache(int maxEntries) {
+        this(maxEntries, null);
+    }
+
+    @Override
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        Entry<V> entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && ttlNanos > 0 && entry.isExpired(System.nanoTime())) {
+                entries.remove(key);
+                evictions.increment();
+                entry = null;
+            }
+            if (entry != null) {
+                hits.increment();
+            } else {
+                misses.increment();
+                entry = new Entry<>();
+                entries.put(key, entry);
+            }
+        }
+
+        try {
+            return entry.getValue(key, loader, ttlNanos);
+        } catch (RuntimeException | Error e) {
+            // do not cache failures; the next caller tries again
+            synchronized (entries) {
+                if (entries.get(key) == entry) entries.remove(key);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void invalidate(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    @Override
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size());
+    }
+
+    // A value computed on first access; later readers block until it is ready.
+    private static class Entry<V> {
+        private V value;
+        // 0 until the value has been computed
+        private volatile long expiresAt;
+
+        synchronized <K> V getValue(K key, Function<? super K, ? extends V> loader, long ttlNanos) {
+            if (value == null) {
+                value = loader.apply(key);
+                expiresAt = System.nanoTime() + ttlNanos;
+            }
+            return value;
+        }
+
+        // An entry still being computed has not expired.
+        boolean isExpired(long now) {
+            long deadline = expiresAt;
+            return deadline != 0 && now - deadline >= 0;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package edu.upenn.cit594.util;
+
+import java.util.*;
+
+/**
+ * Column-oriented store for property records: ZIP codes as int codes
+ * (see {@link ZipCodes}) and the two metrics as doubles, each in its own array.
+ */
+public class PropertyColumns {
+    private int size;
+    private int[] zipCodes;
+    private double[] marketValues;
+    private double[] livableAreas;
+
+    public PropertyColumns() {
+        this(1024);
+    }
+
+    public PropertyColumns(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 16);
+        zipCodes = new int[capacity];
+        marketValues = new double[capacity];
+        livableAreas = new double[capacity];
+    }
+
+    /**
+     * Copies a list of records into a new columnar store.
+     *
+     * @param records the records to copy
+     * @return the populated columns
+     */
+    public static PropertyColumns from(List<PropertyRecord> records) {
+        PropertyColumns columns = new PropertyColumns(records.size());
+        for (PropertyRecord record : records) {
+            columns.add(ZipCodes.toCode(record.getZipCode()), record.getMarketValue(), record.getTotalLivableArea());
+        }
+        return columns;
+    }
+
+    public void add(int zipCode, double marketValue, double livableArea) {
+        if (size == zipCodes.length) {
+            int capacity = size * 2;
+            zipCodes = Arrays.copyOf(zipCodes, capacity);
+            marketValues = Arrays.copyOf(marketValues, capacity);
+            livableAreas = Arrays.copyOf(livableAreas, capacity);
+        }
+        zipCodes[size] = zipCode;
+        marketValues[size] = marketValue;
+        livableAreas[size] = livableArea;
+        size++;
+    }
+
+    /**
+     * Appends every row of another store, in order.
+     */
+    public void append(PropertyColumns other) {
+        int required = size + other.size;
+        if (required > zipCodes.length) {
+            int capacity = Math.max(required, zipCodes.length * 2);
+            zipCodes = Arrays.copyOf(zipCodes, capacity);
+            marketValues = Arrays.copyOf(marketValues, capacity);
+            livableAreas = Arrays.copyOf(livableAreas, capacity);
+        }
+        System.arraycopy(other.zipCodes, 0, zipCodes, size, other.size);
+        System.arraycopy(other.marketValues, 0, marketValues, size, other.size);
+        System.arraycopy(other.livableAreas, 0, livableAreas, size, other.size);
+        size = required;
+    }
+
+    public int size() { return size; }
+    public int getZipCode(int row) { return zipCodes[row]; }
+    public double getMarketValue(int row) { return marketValues[row]; }
+    public double getLivableArea(int row) { return livableAreas[row]; }
+
+    /**
+     * Materializes one row as a {@link PropertyRecord}.
+     */
+    public PropertyRecord getRecord(int row) {
+        return new PropertyRecord(ZipCodes.format(zipCodes[row]), marketValues[row], livableAreas[row]);
+    }
+
+    /**
+     * Returns a read-only list view that materializes each record on access.
+     */
+    public List<PropertyRecord> asRecords() {
+        return new AbstractList<PropertyRecord>() {
+            @Override
+            public PropertyRecord get(int index) {
+                Objects.checkIndex(index, size);
+                return getRecord(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
@@ -0,0 +1,46 @@
+package edu.upenn.cit594.util;
+
+import java.util.function.Function;
+
+/**
+ * A memoizing cache for query results. Implementations are safe to share between
+ * threads, and a value is computed at most once while its entry stays cached, even
+ * when several threads ask for it at the same time.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public interface ResultCache<K, V> {
+
+    /**
+     * Returns the cached value for the key, computing and caching it on a miss.
+     *
+     * @param key    the key
+     * @param loader computes the value; it must not return null
+     * @return the value
+     */
+    V get(K key, Function<? super K, ? extends V> loader);
+
+    /**
+     * Removes the entry for the key, if any. A value that is being computed when the
+     * entry is removed is returned to the callers waiting for it but not kept.
+     *
+     * @param key the key
+     */
+    void invalidate(K key);
+
+    /**
+     * Removes every entry.
+     */
+    void clear();
+
+    /**
+     * @return the number of cached entries
+     */
+    int size();
+
+    /**
+     * @return a snapshot of the hit, miss and eviction counters
+     */
+    CacheStats getStats();
+}
@@ -0,0 +1,47 @@
+package edu.upenn.cit594.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A cache that keeps every value until it is cleared.
+ */
+public class UnboundedResultCache<K, V> implements ResultCache<K, V> {
+    private final ConcurrentHashMap<K, V> values = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Override
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = values.get(key);
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+        return values.computeIfAbsent(key, k -> {
+            misses.increment();
+            return loader.apply(k);
+        });
+    }
+
+    @Override
+    public void invalidate(K key) {
+        values.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        values.clear();
+    }
+
+    @Override
+    public int size() {
+        return values.size();
+    }
+
+    @Override
+    public CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), 0, values.size());
+    }
+}
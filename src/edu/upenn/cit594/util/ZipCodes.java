@@ -0,0 +1,43 @@
+package edu.upenn.cit594.util;
+
+/**
+ * Conversions between 5-digit ZIP code strings and the int codes used by the
+ * columnar stores. The int code of a ZIP is simply its numeric value, so codes
+ * lie in [0, 99999] and sort in the same order as the strings.
+ */
+public final class ZipCodes {
+
+    /** Number of distinct 5-digit ZIP codes; every valid code is below this. */
+    public static final int CODE_SPACE = 100_000;
+
+    private ZipCodes() {
+    }
+
+    /**
+     * @param zip a ZIP code string
+     * @return the int code of the ZIP, or -1 if it is not exactly five digits
+     */
+    public static int toCode(String zip) {
+        if (zip == null || zip.length() != 5) return -1;
+        int code = 0;
+        for (int i = 0; i < 5; i++) {
+            char c = zip.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            code = code * 10 + (c - '0');
+        }
+        return code;
+    }
+
+    /**
+     * @param code an int code in [0, 99999]
+     * @return the zero-padded 5-digit ZIP string for the code
+     */
+    public static String format(int code) {
+        char[] digits = new char[5];
+        for (int i = 4; i >= 0; i--) {
+            digits[i] = (char) ('0' + code % 10);
+            code /= 10;
+        }
+        return new String(digits);
+    }
+}
@@ -0,0 +1,197 @@
+package edu.upenn.cit594.util;
+
+import java.util.Arrays;
+
+/**
+ * Dense int IDs for the ZIP codes that occur in the data. The readers already turn
+ * each ZIP into its int code (see {@link ZipCodes}) while parsing; the dictionary
+ * numbers the distinct codes 0, 1, 2, ... so per-ZIP data can be kept in small
+ * arrays indexed by ID instead of in maps keyed by String. Each ZIP's String is
+ * created once, here, and shared by every result that outputs it.
+ *
+ * A dictionary is immutable. IDs are assigned in ascending ZIP order when it is
+ * built; a dictionary built with {@link #toBuilder} keeps every existing ID and
+ * numbers the new ZIPs after them. Codes are looked up in a table that spans only
+ * the smallest to the largest code of the dictionary, which for a city's ZIPs is a
+ * few hundred entries rather than the whole code space.
+ */
+public final class ZipDictionary {
+    /** ID returned for a ZIP code that is not in the dictionary. */
+    public static final int NO_ID = -1;
+
+    private static final ZipDictionary EMPTY = new ZipDictionary(new int[0], new String[0], new int[0]);
+
+    // smallest code of the dictionary, at index 0 of idOfCode
+    private final int minCode;
+    // [code - minCode]: ID of the code, or NO_ID; spans the smallest to the largest code
+    private final int[] idOfCode;
+    private final int[] codes;
+    private final String[] zips;
+    private final int[] idsInZipOrder;
+
+    // The existing IDs keep their codes; the new (ascending) codes get the following IDs.
+    private ZipDictionary(int[] oldCodes, String[] oldZips, int[] newCodes) {
+        int size = oldCodes.length + newCodes.length;
+        codes = Arrays.copyOf(oldCodes, size);
+        zips = Arrays.copyOf(oldZips, size);
+        for (int i = 0; i < newCodes.length; i++) {
+            int id = oldCodes.length + i;
+            codes[id] = newCodes[i];
+            zips[id] = ZipCodes.format(newCodes[i]);
+        }
+        int min = Integer.MAX_VALUE;
+        int max = -1;
+        for (int code : codes) {
+            min = Math.min(min, code);
+            max = Math.max(max, code);
+        }
+        minCode = size == 0 ? 0 : min;
+        idOfCode = new int[size == 0 ? 0 : max - min + 1];
+        Arrays.fill(idOfCode, NO_ID);
+        for (int id = 0; id < size; id++) {
+            idOfCode[codes[id] - minCode] = id;
+        }
+        idsInZipOrder = new int[size];
+        int n = 0;
+        for (int id : idOfCode) {
+            if (id != NO_ID) idsInZipOrder[n++] = id;
+        }
+    }
+
+    /**
+     * @return a dictionary without any ZIP codes
+     */
+    public static ZipDictionary empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @return a builder for a new dictionary
+     */
+    public static Builder builder() {
+        return EMPTY.toBuilder();
+    }
+
+    /**
+     * @return a builder for a dictionary with the ZIP codes of this one, under the
+     *         same IDs, plus the codes added to the builder
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    /**
+     * @return the number of ZIP codes; IDs are 0 to size() - 1
+     */
+    public int size() {
+        return codes.length;
+    }
+
+    /**
+     * @return the ID of an int code, or {@link #NO_ID}
+     */
+    public int idOf(int code) {
+        int index = code - minCode;
+        return index < 0 || index >= idOfCode.length ? NO_ID : idOfCode[index];
+    }
+
+    /**
+     * Looks a ZIP string up without hashing it.
+     *
+     * @return the ID of the ZIP, or {@link #NO_ID} if it is unknown or not 5 digits
+     */
+    public int idOf(String zip) {
+        return idOf(ZipCodes.toCode(zip));
+    }
+
+    /**
+     * @return the int code of an ID
+     */
+    public int getCode(int id) {
+        return codes[id];
+    }
+
+    /**
+     * @return the ZIP string of an ID; the same instance on every call
+     */
+    public String getZip(int id) {
+        return zips[id];
+    }
+
+    /**
+     * @return the ID at the given position when the IDs are sorted by ZIP code
+     */
+    public int getIdInZipOrder(int position) {
+        return idsInZipOrder[position];
+    }
+
+    /**
+     * Collects ZIP codes for a dictionary. Codes that are already known or outside
+     * [0, 99999] are ignored, so every code of a dataset can simply be added.
+     */
+    public static final class Builder {
+        private final ZipDictionary base;
+        // smallest code covered by added, at index 0
+        private int lowCode;
+        // [code - lowCode]: whether the code was added; grows to cover the codes added
+        private boolean[] added = new boolean[0];
+        private int count;
+
+        private Builder(ZipDictionary base) {
+            this.base = base;
+        }
+
+        public Builder add(int code) {
+            // most calls repeat a code that was already added
+            int index = code - lowCode;
+            if (index >= 0 && index < added.length && added[index]) return this;
+            if (code < 0 || code >= ZipCodes.CODE_SPACE || base.idOf(code) != NO_ID) return this;
+            if (index < 0 || index >= added.length) {
+                cover(code);
+                index = code - lowCode;
+            }
+            added[index] = true;
+            count++;
+            return this;
+        }
+
+        // Widens the table to the code, by at least half its length so that adding
+        // codes in ascending or descending order only copies it a few times.
+        private void cover(int code) {
+            if (added.length == 0) {
+                lowCode = code;
+                added = new boolean[1];
+                return;
+            }
+            int low = lowCode;
+            int high = lowCode + added.length - 1;
+            int extra = added.length / 2;
+            if (code < low) {
+                low = Math.max(0, Math.min(code, low - extra));
+            } else {
+                high = Math.min(ZipCodes.CODE_SPACE - 1, Math.max(code, high + extra));
+            }
+            boolean[] grown = new boolean[high - low + 1];
+            System.arraycopy(added, 0, grown, lowCode - low, added.length);
+            added = grown;
+            lowCode = low;
+        }
+
+        public Builder add(String zip) {
+            return add(ZipCodes.toCode(zip));
+        }
+
+        /**
+         * @return the dictionary; the builder's base dictionary if no new codes were added
+         */
+        public ZipDictionary build() {
+            if (count == 0) return base;
+            int[] newCodes = new int[count];
+            int n = 0;
+            for (int i = 0; i < added.length; i++) {
+                if (added[i]) newCodes[n++] = lowCode + i;
+            }
+            return new ZipDictionary(base.codes, base.zips, newCodes);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package edu.upenn.cit594.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An unmodifiable map from ZIP code to a double, stored as one double per
+ * {@link ZipDictionary} ID. ZIPs whose value is NaN are not in the map. A lookup is
+ * an array access, and the map iterates in ascending ZIP order using the
+ * dictionary's Strings, so no key String or boxed value is kept per entry.
+ */
+public final class ZipValueMap extends AbstractMap<String, Double> {
+    private final ZipDictionary dictionary;
+    private final double[] values;
+    private final int size;
+
+    /**
+     * @param dictionary the IDs of the ZIP codes
+     * @param values     the value of each ID, or NaN for no value; IDs past the end of
+     *                   the array have no value. The array is not copied and must not be
+     *                   modified afterwards.
+     */
+    public ZipValueMap(ZipDictionary dictionary, double[] values) {
+        this.dictionary = dictionary;
+        this.values = values;
+        int count = 0;
+        for (double value : values) {
+            if (!Double.isNaN(value)) count++;
+        }
+        this.size = count;
+    }
+
+    /**
+     * @return the dictionary whose IDs {@link #getValue} takes
+     */
+    public ZipDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return the value of a ZIP ID, or NaN if the ZIP has none
+     */
+    public double getValue(int id) {
+        return id < 0 || id >= values.length ? Double.NaN : values[id];
+    }
+
+    private double valueOf(Object key) {
+        return key instanceof String ? getValue(dictionary.idOf((String) key)) : Double.NaN;
+    }
+
+    @Override
+    public Double get(Object key) {
+        double value = valueOf(key);
+        return Double.isNaN(value) ? null : value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return !Double.isNaN(valueOf(key));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<String, Double>> entrySet() {
+        return new AbstractSet<Entry<String, Double>>() {
+            @Override
+            public Iterator<Entry<String, Double>> iterator() {
+                return new Iterator<Entry<String, Double>>() {
+                    private int position = advance(0);
+
+                    // the next position in ZIP order, at or after the given one, with a value
+                    private int advance(int from) {
+                        while (from < dictionary.size()) {
+                            int id = dictionary.getIdInZipOrder(from);
+                            if (id < values.length && !Double.isNaN(values[id])) break;
+                            from++;
+                        }
+                        return from;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return position < dictionary.size();
+                    }
+
+                    @Override
+                    public Entry<String, Double> next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+                        int id = dictionary.getIdInZipOrder(position);
+                        position = advance(position + 1);
+                        return new SimpleImmutableEntry<>(dictionary.getZip(id), values[id]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}